@@ -10,6 +10,19 @@ repositories {
     mavenCentral()
 }
 
+// JMH benchmarks live in src/jmh/java and see the main classes
+sourceSets {
+    create("jmh") {
+        compileClasspath += sourceSets["main"].output
+        runtimeClasspath += sourceSets["main"].output
+    }
+}
+
+configurations {
+    named("jmhImplementation") { extendsFrom(configurations.implementation.get()) }
+    named("jmhRuntimeOnly") { extendsFrom(configurations.runtimeOnly.get()) }
+}
+
 dependencies {
     // Input handling for controllers - JInput
     implementation("net.java.jinput:jinput:2.0.10")
@@ -27,6 +40,11 @@ dependencies {
     // Testing
     testImplementation(platform("org.junit:junit-bom:5.10.0"))
     testImplementation("org.junit.jupiter:junit-jupiter")
+    testRuntimeOnly("org.junit.platform:junit-platform-launcher")
+
+    // Benchmarks
+    "jmhImplementation"("org.openjdk.jmh:jmh-core:1.37")
+    "jmhAnnotationProcessor"("org.openjdk.jmh:jmh-generator-annprocess:1.37")
 }
 
 // Extract JInput native DLLs/SOs from the jinput jar (they are bundled inside it)
@@ -69,3 +87,29 @@ tasks.register<org.gradle.api.tasks.JavaExec>("runPiClient") {
     val port = (project.findProperty("serverPort") as String?) ?: "5555"
     args(host, port)
 }
+
+tasks.register<org.gradle.api.tasks.JavaExec>("runFleetLoad") {
+    group = "application"
+    description = "Runs the simulated robot fleet load generator (options via -PfleetArgs=\"--robots 1000 --rate 100\")"
+    classpath = sourceSets["main"].runtimeClasspath
+    mainClass.set("org.example.FleetLoadGenerator")
+
+    val fleetArgs = (project.findProperty("fleetArgs") as String?) ?: ""
+    args(fleetArgs.split(" ").filter { it.isNotBlank() })
+}
+
+tasks.register<org.gradle.api.tasks.JavaExec>("jmh") {
+    group = "verification"
+    description = "Runs the JMH benchmarks with the GC profiler (override with -PjmhArgs=\"<jmh options>\")"
+    classpath = sourceSets["jmh"].runtimeClasspath
+    mainClass.set("org.openjdk.jmh.Main")
+
+    val resultFile = layout.buildDirectory.file("reports/jmh/results.json").get().asFile
+    val jmhArgs = (project.findProperty("jmhArgs") as String?)
+    if (jmhArgs != null) {
+        args(jmhArgs.split(" ").filter { it.isNotBlank() })
+    } else {
+        args("-prof", "gc", "-rf", "json", "-rff", resultFile.absolutePath)
+    }
+    doFirst { resultFile.parentFile.mkdirs() }
+}
@@ -0,0 +1,101 @@
+package org.example;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Helpers shared by the benchmarks: free loopback ports and robots that read and
+ * discard everything the server sends.
+ */
+final class BenchmarkSupport {
+    private BenchmarkSupport() {
+    }
+
+    /**
+     * A port that was free a moment ago
+     */
+    static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Wait until the server has accepted the given number of clients
+     */
+    static void awaitClients(RobotNetworkServer server, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (server.getConnectedClientCount() < count) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IllegalStateException("Only " + server.getConnectedClientCount()
+                    + " of " + count + " clients connected");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * Loopback robots drained by one selector thread, so the server never sees
+     * a slow consumer
+     */
+    static final class DrainingClients implements AutoCloseable {
+        private final Selector selector;
+        private final List<SocketChannel> channels = new ArrayList<>();
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        DrainingClients(int port, int count) throws IOException {
+            selector = Selector.open();
+            for (int i = 0; i < count; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress("127.0.0.1", port));
+                channel.configureBlocking(false);
+                channel.register(selector, SelectionKey.OP_READ);
+                channels.add(channel);
+            }
+            thread = new Thread(this::drain, "Benchmark-Drain");
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        private void drain() {
+            ByteBuffer buffer = ByteBuffer.allocateDirect(64 * 1024);
+            try {
+                while (running) {
+                    selector.select(100);
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        SocketChannel channel = (SocketChannel) key.channel();
+                        buffer.clear();
+                        while (channel.read(buffer) > 0) {
+                            buffer.clear();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                // closed
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            running = false;
+            selector.wakeup();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SocketChannel channel : channels) {
+                channel.close();
+            }
+            selector.close();
+        }
+    }
+}
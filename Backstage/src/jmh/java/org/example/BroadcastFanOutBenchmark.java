@@ -0,0 +1,97 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Broadcast cost as the number of connected robots grows.
+ *
+ * Besides the caller's time per broadcast, each iteration prints the CPU time the
+ * caller and the server's event loops spent per broadcast, since most of the
+ * per-client work happens on the event loops after broadcastMotorCommand returns.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BroadcastFanOutBenchmark {
+    private static final String IO_THREAD_PREFIX = "RobotNetworkServer-IO-";
+
+    @Param({"1", "10", "100", "500"})
+    public int clients;
+
+    private final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+    private RobotNetworkServer server;
+    private BenchmarkSupport.DrainingClients robots;
+    private int step;
+    private long broadcasts;
+
+    private long iterationStartCpuNanos;
+    private long iterationStartBroadcasts;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException, InterruptedException {
+        int port = BenchmarkSupport.freePort();
+        server = new RobotNetworkServer(port);
+        server.start();
+        robots = new BenchmarkSupport.DrainingClients(port, clients);
+        BenchmarkSupport.awaitClients(server, clients);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        robots.close();
+        server.stop();
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        iterationStartCpuNanos = serverCpuNanos();
+        iterationStartBroadcasts = broadcasts;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long count = broadcasts - iterationStartBroadcasts;
+        if (count > 0) {
+            long cpuNanos = serverCpuNanos() - iterationStartCpuNanos;
+            System.out.printf("%n  %d clients: %.0f ns CPU per broadcast, %d evicted%n",
+                clients, (double) cpuNanos / count, server.getEvictedClientCount());
+        }
+    }
+
+    @Benchmark
+    public void broadcast() {
+        step = (step + 1) & 255;
+        float value = step / 127.5f - 1.0f;
+        server.broadcastMotorCommand(value, -value, System.nanoTime());
+        broadcasts++;
+    }
+
+    /**
+     * CPU time of the event loop threads plus the benchmark threads
+     */
+    private long serverCpuNanos() {
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info == null) {
+                continue;
+            }
+            String name = info.getThreadName();
+            if (name.startsWith(IO_THREAD_PREFIX) || name.contains("jmh-worker")) {
+                long cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu > 0) {
+                    total += cpu;
+                }
+            }
+        }
+        return total;
+    }
+}
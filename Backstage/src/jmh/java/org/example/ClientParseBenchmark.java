@@ -0,0 +1,78 @@
+package org.example;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of reading one motor command on the Pi and publishing it to the
+ * actuator mailbox, fed from memory instead of a socket. The client is not
+ * connected, so the actuator thread does not run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClientParseBenchmark {
+    // More than SequenceTracker.MAX_MISORDER, so starting over reads as a server
+    // restart and every command is applied
+    private static final int MESSAGES = 4096;
+
+    @Param({"BINARY", "JSON"})
+    public RobotNetworkServer.WireFormat wireFormat;
+
+    private RaspberryPiMotorClient client;
+    private ByteArrayInputStream bytes;
+    private DataInputStream input;
+    private int remaining;
+
+    @Setup
+    public void setUp() {
+        client = new RaspberryPiMotorClient("localhost", 0, null);
+
+        Gson gson = new Gson();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ByteBuffer frame = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        long timestampMicros = MotorCommandCodec.currentTimeMicros();
+        for (int seq = 0; seq < MESSAGES; seq++) {
+            float value = (seq & 255) / 127.5f - 1.0f;
+            if (wireFormat == RobotNetworkServer.WireFormat.BINARY) {
+                frame.clear();
+                MotorCommandCodec.encode(frame, MotorCommandCodec.TYPE_MOTOR, seq, timestampMicros, value, -value);
+                out.write(frame.array(), 0, frame.position());
+            } else {
+                // Same fields and order as RobotNetworkServer writes
+                JsonObject command = new JsonObject();
+                command.addProperty("type", "motor");
+                command.addProperty("seq", seq);
+                command.addProperty("ts", timestampMicros);
+                command.addProperty("left", value);
+                command.addProperty("right", -value);
+                byte[] lineBytes = (gson.toJson(command) + "\n").getBytes(StandardCharsets.UTF_8);
+                out.write(lineBytes, 0, lineBytes.length);
+            }
+        }
+        bytes = new ByteArrayInputStream(out.toByteArray());
+        input = new DataInputStream(bytes);
+    }
+
+    @Benchmark
+    public boolean readCommand() throws IOException {
+        if (remaining == 0) {
+            bytes.reset();
+            remaining = MESSAGES;
+        }
+        remaining--;
+        return client.readCommand(input);
+    }
+}
@@ -0,0 +1,46 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of one axis event: shaping a raw int16 value through the ResponseCurve
+ * table, as the input backends do, and the update of the held motor state in
+ * RobotController. The control loop is not started, so nothing is sent.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ControllerInputBenchmark {
+    private RobotController controller;
+    private final ResponseCurve curve = ResponseCurve.DEFAULT;
+    private int step;
+
+    @Setup
+    public void setUp() {
+        controller = RobotController.withoutController(new RobotImpl(), ControlConfig.CONTROL_RATE_HZ);
+    }
+
+    @Benchmark
+    public float shapeOnly() {
+        step = (step + 1) & 255;
+        return curve.shape((step - 128) << 8);
+    }
+
+    @Benchmark
+    public void leftStickY() {
+        // Sweep the stick so the dead zone is both hit and missed
+        step = (step + 1) & 255;
+        controller.onAxisMotion(PS4Controller.AXIS_LEFT_STICK_Y, curve.shape((step - 128) << 8), System.nanoTime());
+    }
+
+    @Benchmark
+    public void leftStickX() {
+        step = (step + 1) & 255;
+        controller.onAxisMotion(PS4Controller.AXIS_LEFT_STICK_X, curve.shape((step - 128) << 8), System.nanoTime());
+    }
+}
@@ -0,0 +1,182 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Replays a joystick event stream through LinuxPS4Controller, one event per read
+ * (how the reader used to work) against batched reads.
+ *
+ * The stream is synthetic by default: a DS4 report every 4 ms moving all six
+ * axes, with a button press now and then, and reportsPerWakeup reports queued
+ * per read. A real recording, e.g. from
+ * `cat /dev/input/js0 > sticks.bin`, can be used with -Djs.recording=sticks.bin;
+ * it is then replayed in 64-event bursts. Each iteration prints the reads and
+ * listener callbacks per replay.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class JoystickReaderBenchmark {
+    private static final int EVENT_SIZE = 8;
+    private static final int REPORTS = 1000;
+    private static final int EVENTS_PER_RECORDED_BURST = 64;
+
+    @Param({"1", "64"})
+    public int batchEvents;
+
+    // DS4 reports queued by the time the reader wakes; above 1 the reader is behind
+    @Param({"1", "4"})
+    public int reportsPerWakeup;
+
+    private LinuxPS4Controller reader;
+    private ReplayChannel replay;
+    private long replays;
+    private long readsAtStart;
+    private long callbacksAtStart;
+    private long replaysAtStart;
+
+    @Setup
+    public void setUp() throws IOException {
+        String recording = System.getProperty("js.recording");
+        if (recording != null) {
+            byte[] events = Files.readAllBytes(Paths.get(recording));
+            replay = new ReplayChannel(events, EVENTS_PER_RECORDED_BURST * EVENT_SIZE);
+        } else {
+            replay = synthesize(reportsPerWakeup);
+        }
+        reader = new LinuxPS4Controller("replay", new CountingListener(), batchEvents);
+    }
+
+    @Setup(Level.Iteration)
+    public void startIteration() {
+        readsAtStart = reader.getReadCalls();
+        callbacksAtStart = reader.getCallbacks();
+        replaysAtStart = replays;
+    }
+
+    @TearDown(Level.Iteration)
+    public void endIteration() {
+        long count = replays - replaysAtStart;
+        if (count > 0) {
+            System.out.printf("%n  batch %d: %d reads, %d callbacks per replay%n", batchEvents,
+                (reader.getReadCalls() - readsAtStart) / count,
+                (reader.getCallbacks() - callbacksAtStart) / count);
+        }
+    }
+
+    @Benchmark
+    public long replay() throws IOException {
+        replay.rewind();
+        while (reader.readBatch(replay)) {
+            // dispatches to the listener
+        }
+        replays++;
+        return reader.getEventsRead();
+    }
+
+    /**
+     * A DS4 at 250 Hz reports all axes at once; the driver turns each report into
+     * one js_event per changed axis
+     */
+    private static ReplayChannel synthesize(int reportsPerWakeup) {
+        int[] axes = {0, 1, 2, 3, 4, 5};
+        int eventsPerReport = axes.length;
+        ByteBuffer events = ByteBuffer.allocate(REPORTS * (eventsPerReport + 1) * EVENT_SIZE)
+            .order(ByteOrder.LITTLE_ENDIAN);
+        for (int report = 0; report < REPORTS; report++) {
+            int timestampMs = report * 4;
+            for (int axis : axes) {
+                double phase = report / 50.0 + axis;
+                events.putInt(timestampMs).putShort((short) (Math.sin(phase) * 32767))
+                    .put((byte) 0x02).put((byte) axis);
+            }
+            // Cross pressed for 100 ms every second; buttons only report changes
+            if (report % 250 == 0 || report % 250 == 25) {
+                boolean pressed = report % 250 == 0;
+                events.putInt(timestampMs).putShort((short) (pressed ? 1 : 0)).put((byte) 0x01).put((byte) 0);
+            }
+        }
+        byte[] recorded = Arrays.copyOf(events.array(), events.position());
+        return new ReplayChannel(recorded, reportsPerWakeup * eventsPerReport * EVENT_SIZE);
+    }
+
+    /**
+     * In-memory device: each read returns at most one burst, the events queued
+     * since the reader last woke up
+     */
+    private static final class ReplayChannel implements ReadableByteChannel {
+        private final byte[] events;
+        private final int burstBytes;
+        private int position;
+
+        ReplayChannel(byte[] events, int burstBytes) {
+            this.events = events;
+            this.burstBytes = burstBytes;
+        }
+
+        void rewind() {
+            position = 0;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (position == events.length) {
+                return -1;
+            }
+            int burstEnd = Math.min(events.length, (position / burstBytes + 1) * burstBytes);
+            int n = Math.min(dst.remaining(), burstEnd - position);
+            dst.put(events, position, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static final class CountingListener implements ControllerListener {
+        private long events;
+
+        @Override
+        public void onButtonPressed(int buttonId) {
+            events++;
+        }
+
+        @Override
+        public void onButtonReleased(int buttonId) {
+            events++;
+        }
+
+        @Override
+        public void onAxisMotion(int axisId, float value) {
+            events++;
+        }
+
+        @Override
+        public void onAxisMotion(int axisId, float value, long timestampNanos) {
+            events++;
+        }
+
+        @Override
+        public void onControllerDisconnected() {
+        }
+    }
+}
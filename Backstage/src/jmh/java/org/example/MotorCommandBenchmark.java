@@ -0,0 +1,71 @@
+package org.example;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of sending a motor command from the Backstage host: encoding and queueing
+ * in RobotNetworkServer.broadcastMotorCommand, and NetworkRobotImpl.move with
+ * its change suppression. One loopback robot is connected.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MotorCommandBenchmark {
+    @Param({"BINARY", "JSON"})
+    public RobotNetworkServer.WireFormat wireFormat;
+
+    private RobotNetworkServer server;
+    private NetworkRobotImpl robot;
+    private BenchmarkSupport.DrainingClients serverClients;
+    private BenchmarkSupport.DrainingClients robotClients;
+    private int step;
+
+    @Setup
+    public void setUp() throws IOException, InterruptedException {
+        int serverPort = BenchmarkSupport.freePort();
+        server = new RobotNetworkServer(serverPort);
+        server.setWireFormat(wireFormat);
+        server.start();
+        serverClients = new BenchmarkSupport.DrainingClients(serverPort, 1);
+        BenchmarkSupport.awaitClients(server, 1);
+
+        int robotPort = BenchmarkSupport.freePort();
+        robot = new NetworkRobotImpl(robotPort);
+        robotClients = new BenchmarkSupport.DrainingClients(robotPort, 1);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        robotClients.close();
+        robot.shutdown();
+        serverClients.close();
+        server.stop();
+    }
+
+    @Benchmark
+    public void broadcastMotorCommand() {
+        step = (step + 1) & 255;
+        float value = step / 127.5f - 1.0f;
+        server.broadcastMotorCommand(value, -value, System.nanoTime());
+    }
+
+    @Benchmark
+    public void moveChanging() {
+        // Every call changes the command, so every call is sent
+        step = (step + 1) & 255;
+        double value = step / 127.5 - 1.0;
+        robot.move(value, -value, System.nanoTime());
+    }
+
+    @Benchmark
+    public void moveUnchanged() {
+        // Same command every time: measures the suppression path
+        robot.move(0.5, -0.5, System.nanoTime());
+    }
+}
@@ -0,0 +1,125 @@
+package org.example;
+
+/**
+ * Drops motor commands that would not change what the robot is doing.
+ *
+ * Velocities are quantized to a fixed resolution and a command is sent only when
+ * the quantized pair differs from the last one sent. So that the robot can still
+ * tell the link is alive, the last command is repeated as a keepalive once the
+ * keepalive interval passes without a send. Not thread-safe; callers synchronize.
+ */
+public class CommandSuppressor {
+    private float resolution;
+    private long keepaliveNanos;
+
+    private boolean hasSent = false;
+    private int lastLeftStep;
+    private int lastRightStep;
+    private long lastSentNanos;
+
+    private long sentCount = 0;
+    private long suppressedCount = 0;
+    private long keepaliveCount = 0;
+
+    /**
+     * @param resolution Velocity step; changes smaller than this are not sent
+     * @param keepaliveMillis Maximum time between commands
+     */
+    public CommandSuppressor(float resolution, long keepaliveMillis) {
+        configure(resolution, keepaliveMillis);
+    }
+
+    /**
+     * Change the resolution and keepalive interval. The next offered command is
+     * sent, since it cannot be compared with one quantized differently.
+     */
+    public void configure(float resolution, long keepaliveMillis) {
+        if (resolution <= 0) {
+            throw new IllegalArgumentException("Resolution must be positive: " + resolution);
+        }
+        if (resolution != this.resolution) {
+            hasSent = false;
+        }
+        this.resolution = resolution;
+        this.keepaliveNanos = keepaliveMillis * 1_000_000L;
+    }
+
+    /**
+     * Round a velocity to the configured resolution
+     */
+    public float quantize(float velocity) {
+        return step(velocity) * resolution;
+    }
+
+    /**
+     * Decide whether a command must be sent. Records it as sent if so.
+     * @return true if the quantized velocities changed
+     */
+    public boolean offer(float left, float right, long nowNanos) {
+        int leftStep = step(left);
+        int rightStep = step(right);
+        if (hasSent && leftStep == lastLeftStep && rightStep == lastRightStep) {
+            suppressedCount++;
+            return false;
+        }
+        record(leftStep, rightStep, nowNanos);
+        return true;
+    }
+
+    /**
+     * Record a command that is sent unconditionally, such as a stop
+     */
+    public void force(float left, float right, long nowNanos) {
+        record(step(left), step(right), nowNanos);
+    }
+
+    /**
+     * @return true if nothing has been sent for the keepalive interval; the
+     * keepalive is then recorded as sent
+     */
+    public boolean keepaliveDue(long nowNanos) {
+        if (!hasSent || nowNanos - lastSentNanos < keepaliveNanos) {
+            return false;
+        }
+        lastSentNanos = nowNanos;
+        sentCount++;
+        keepaliveCount++;
+        return true;
+    }
+
+    /** Last sent left velocity, quantized */
+    public float getLastLeft() {
+        return lastLeftStep * resolution;
+    }
+
+    /** Last sent right velocity, quantized */
+    public float getLastRight() {
+        return lastRightStep * resolution;
+    }
+
+    /** Commands sent, including keepalives */
+    public long getSentCount() {
+        return sentCount;
+    }
+
+    /** Commands dropped because nothing changed */
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public long getKeepaliveCount() {
+        return keepaliveCount;
+    }
+
+    private int step(float velocity) {
+        return Math.round(velocity / resolution);
+    }
+
+    private void record(int leftStep, int rightStep, long nowNanos) {
+        hasSent = true;
+        lastLeftStep = leftStep;
+        lastRightStep = rightStep;
+        lastSentNanos = nowNanos;
+        sentCount++;
+    }
+}
@@ -1,13 +1,39 @@
 package org.example;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Consumer;
+
 /**
  * Configuration settings for PS4 controller and robot control
+ *
+ * The constants below are the defaults. The tuning values can also be loaded
+ * from a properties file (keys are the constant names, e.g. DEAD_ZONE=0.2) into
+ * an immutable Snapshot. The hot path reads current() with a single volatile
+ * load, and ControlConfigWatcher swaps in a new snapshot when the file changes,
+ * so settings can be retuned on a running system.
  */
 public class ControlConfig {
-    // Controller polling settings
-    public static final int POLL_RATE_MS = 16;           // ~60 Hz
+    private static final Logger logger = LoggerFactory.getLogger(ControlConfig.class);
+
+    // Control loop: motor commands sent per second (0 = send on every stick event)
+    public static final int CONTROL_RATE_HZ = 100;       // 50-500 Hz is typical
+    // Rate at which the Raspberry Pi applies the latest command to the motors
+    public static final int ACTUATOR_RATE_HZ = CONTROL_RATE_HZ;
+
+    // Controller settings, compiled into ResponseCurve.DEFAULT
     public static final float DEAD_ZONE = 0.15f;         // 15% dead zone
     public static final float SENSITIVITY = 1.0f;        // 1.0 = normal sensitivity
+    public static final float EXPO = 0.0f;               // 0.0 = linear, 1.0 = cubic
 
     // Movement settings
     public static final float MAX_FORWARD_SPEED = 1.0f;  // 100% speed
@@ -17,6 +43,11 @@ public class ControlConfig {
     // Trigger sensitivity (0.0 to 1.0)
     public static final float TRIGGER_SENSITIVITY = 0.5f;
 
+    // Outbound motor command suppression: only changes of at least this much are sent
+    public static final float COMMAND_RESOLUTION = 0.01f;
+    // Repeat the last command after this long without a send, so the robot sees a live link
+    public static final long KEEPALIVE_INTERVAL_MS = 250;
+
     // Enable debug logging
     public static final boolean DEBUG_LOGGING = false;
 
@@ -29,22 +60,62 @@ public class ControlConfig {
     public static final float ACCELERATION_RATE = 1.0f;  // Immediate acceleration
     public static final float DECELERATION_RATE = 0.9f;  // Gradual deceleration
 
+    private static volatile Snapshot current = new Snapshot(new Properties());
+    private static final List<Consumer<Snapshot>> listeners = new CopyOnWriteArrayList<>();
+
     /**
-     * Get the actual motor speed based on joystick input
-     * @param joystickValue Raw joystick value (-1.0 to 1.0)
-     * @return Clamped motor speed (-1.0 to 1.0)
+     * The settings in effect. Read it once per event or tick and use that
+     * snapshot throughout, so one event never mixes old and new values.
      */
-    public static float getMotorSpeed(float joystickValue) {
-        // Apply dead zone
-        if (Math.abs(joystickValue) < DEAD_ZONE) {
-            return 0.0f;
+    public static Snapshot current() {
+        return current;
+    }
+
+    /**
+     * Make a snapshot current and notify the listeners, on the calling thread
+     */
+    public static void install(Snapshot snapshot) {
+        current = snapshot;
+        for (Consumer<Snapshot> listener : listeners) {
+            try {
+                listener.accept(snapshot);
+            } catch (RuntimeException e) {
+                logger.error("Configuration listener failed", e);
+            }
         }
+    }
 
-        // Apply sensitivity
-        float adjusted = joystickValue * SENSITIVITY;
+    /**
+     * Be told about every snapshot installed from now on. For components that
+     * hold settings outside the snapshot, such as a control loop's rate.
+     */
+    public static void addListener(Consumer<Snapshot> listener) {
+        listeners.add(listener);
+    }
 
-        // Clamp to valid range
-        return Math.max(-1.0f, Math.min(1.0f, adjusted));
+    public static void removeListener(Consumer<Snapshot> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Read a properties file into a snapshot. Missing keys take the defaults.
+     * @throws IllegalArgumentException if a value is malformed or out of range
+     */
+    public static Snapshot load(Path path) throws IOException {
+        Properties properties = new Properties();
+        try (Reader reader = Files.newBufferedReader(path, StandardCharsets.UTF_8)) {
+            properties.load(reader);
+        }
+        return new Snapshot(properties);
+    }
+
+    /**
+     * Get the actual motor speed based on joystick input
+     * @param joystickValue Raw joystick value (-1.0 to 1.0)
+     * @return Motor speed shaped by the current response curve (-1.0 to 1.0)
+     */
+    public static float getMotorSpeed(float joystickValue) {
+        return current.getResponseCurve().shape(joystickValue);
     }
 
     /**
@@ -53,7 +124,7 @@ public class ControlConfig {
      * @return Rotation speed
      */
     public static float getTriggerSpeed(float triggerValue) {
-        return triggerValue * TRIGGER_SENSITIVITY;
+        return triggerValue * current.getTriggerSensitivity();
     }
 
     /**
@@ -70,5 +141,172 @@ public class ControlConfig {
             return forward - turn;
         }
     }
-}
 
+    /**
+     * One immutable set of tuning values, with the response curve compiled from them
+     */
+    public static final class Snapshot {
+        private final int controlRateHz;
+        private final int actuatorRateHz;
+        private final float deadZone;
+        private final float sensitivity;
+        private final float expo;
+        private final float maxForwardSpeed;
+        private final float maxRotationSpeed;
+        private final float maxStrafeSpeed;
+        private final float triggerSensitivity;
+        private final float commandResolution;
+        private final long keepaliveIntervalMs;
+        private final float accelerationRate;
+        private final float decelerationRate;
+        private final ResponseCurve responseCurve;
+
+        private Snapshot(Properties properties) {
+            controlRateHz = intValue(properties, "CONTROL_RATE_HZ", CONTROL_RATE_HZ, 0, 10_000);
+            actuatorRateHz = intValue(properties, "ACTUATOR_RATE_HZ", ACTUATOR_RATE_HZ, 1, 10_000);
+            deadZone = floatValue(properties, "DEAD_ZONE", DEAD_ZONE, 0.0f, 0.99f);
+            sensitivity = floatValue(properties, "SENSITIVITY", SENSITIVITY, 0.0f, 10.0f);
+            expo = floatValue(properties, "EXPO", EXPO, 0.0f, 1.0f);
+            maxForwardSpeed = floatValue(properties, "MAX_FORWARD_SPEED", MAX_FORWARD_SPEED, 0.0f, 1.0f);
+            maxRotationSpeed = floatValue(properties, "MAX_ROTATION_SPEED", MAX_ROTATION_SPEED, 0.0f, 1.0f);
+            maxStrafeSpeed = floatValue(properties, "MAX_STRAFE_SPEED", MAX_STRAFE_SPEED, 0.0f, 1.0f);
+            triggerSensitivity = floatValue(properties, "TRIGGER_SENSITIVITY", TRIGGER_SENSITIVITY, 0.0f, 1.0f);
+            commandResolution = floatValue(properties, "COMMAND_RESOLUTION", COMMAND_RESOLUTION, 0.0001f, 1.0f);
+            keepaliveIntervalMs = intValue(properties, "KEEPALIVE_INTERVAL_MS", (int) KEEPALIVE_INTERVAL_MS, 1, 60_000);
+            accelerationRate = floatValue(properties, "ACCELERATION_RATE", ACCELERATION_RATE, 0.0f, 1.0f);
+            decelerationRate = floatValue(properties, "DECELERATION_RATE", DECELERATION_RATE, 0.0f, 1.0f);
+
+            for (String key : properties.stringPropertyNames()) {
+                if (!isKnownKey(key)) {
+                    logger.warn("Ignoring unknown configuration key {}", key);
+                }
+            }
+
+            // Reuse the default table when the curve settings are unchanged
+            if (deadZone == DEAD_ZONE && sensitivity == SENSITIVITY && expo == EXPO
+                    && maxForwardSpeed == MAX_FORWARD_SPEED) {
+                responseCurve = ResponseCurve.DEFAULT;
+            } else {
+                responseCurve = new ResponseCurve(deadZone, sensitivity, expo, maxForwardSpeed);
+            }
+        }
+
+        private static boolean isKnownKey(String key) {
+            switch (key) {
+                case "CONTROL_RATE_HZ":
+                case "ACTUATOR_RATE_HZ":
+                case "DEAD_ZONE":
+                case "SENSITIVITY":
+                case "EXPO":
+                case "MAX_FORWARD_SPEED":
+                case "MAX_ROTATION_SPEED":
+                case "MAX_STRAFE_SPEED":
+                case "TRIGGER_SENSITIVITY":
+                case "COMMAND_RESOLUTION":
+                case "KEEPALIVE_INTERVAL_MS":
+                case "ACCELERATION_RATE":
+                case "DECELERATION_RATE":
+                    return true;
+                default:
+                    return false;
+            }
+        }
+
+        private static int intValue(Properties properties, String key, int defaultValue, int min, int max) {
+            String text = properties.getProperty(key);
+            if (text == null) {
+                return defaultValue;
+            }
+            int value;
+            try {
+                value = Integer.parseInt(text.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " is not a whole number: " + text);
+            }
+            if (value < min || value > max) {
+                throw new IllegalArgumentException(key + " must be between " + min + " and " + max + ": " + value);
+            }
+            return value;
+        }
+
+        private static float floatValue(Properties properties, String key, float defaultValue, float min, float max) {
+            String text = properties.getProperty(key);
+            if (text == null) {
+                return defaultValue;
+            }
+            float value;
+            try {
+                value = Float.parseFloat(text.trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException(key + " is not a number: " + text);
+            }
+            if (!(value >= min && value <= max)) {
+                throw new IllegalArgumentException(key + " must be between " + min + " and " + max + ": " + value);
+            }
+            return value;
+        }
+
+        public int getControlRateHz() {
+            return controlRateHz;
+        }
+
+        public int getActuatorRateHz() {
+            return actuatorRateHz;
+        }
+
+        public float getDeadZone() {
+            return deadZone;
+        }
+
+        public float getSensitivity() {
+            return sensitivity;
+        }
+
+        public float getExpo() {
+            return expo;
+        }
+
+        public float getMaxForwardSpeed() {
+            return maxForwardSpeed;
+        }
+
+        public float getMaxRotationSpeed() {
+            return maxRotationSpeed;
+        }
+
+        public float getMaxStrafeSpeed() {
+            return maxStrafeSpeed;
+        }
+
+        public float getTriggerSensitivity() {
+            return triggerSensitivity;
+        }
+
+        public float getCommandResolution() {
+            return commandResolution;
+        }
+
+        public long getKeepaliveIntervalMs() {
+            return keepaliveIntervalMs;
+        }
+
+        public float getAccelerationRate() {
+            return accelerationRate;
+        }
+
+        public float getDecelerationRate() {
+            return decelerationRate;
+        }
+
+        /** Stick shaping compiled from the dead zone, sensitivity, expo and max forward speed */
+        public ResponseCurve getResponseCurve() {
+            return responseCurve;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("control %d Hz, actuator %d Hz, %s, command resolution %.3f, keepalive %d ms",
+                controlRateHz, actuatorRateHz, responseCurve, commandResolution, keepaliveIntervalMs);
+        }
+    }
+}
@@ -0,0 +1,134 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.FileSystems;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Loads a ControlConfig properties file and reloads it whenever it changes.
+ *
+ * The file's directory is watched, so editors that save by writing a new file
+ * and renaming it over the old one are picked up too. Each change is parsed
+ * into a complete Snapshot before it is installed; a file that does not parse
+ * or holds an out-of-range value is reported and the previous settings stay in
+ * effect.
+ */
+public class ControlConfigWatcher implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ControlConfigWatcher.class);
+
+    // Editors often write a file in several steps; wait for them to finish
+    private static final long SETTLE_MS = 100;
+
+    private final Path path;
+    private final WatchService watchService;
+    private final Thread watcherThread;
+    private volatile boolean running = true;
+    private volatile long reloadCount = 0;
+    private volatile long failedReloadCount = 0;
+
+    /**
+     * Load the file, install it as the current configuration and start watching it
+     * @throws IOException if the file cannot be read
+     * @throws IllegalArgumentException if it holds an invalid value
+     */
+    public ControlConfigWatcher(Path path) throws IOException {
+        this.path = path.toAbsolutePath();
+        ControlConfig.Snapshot snapshot = ControlConfig.load(this.path);
+        ControlConfig.install(snapshot);
+        logger.info("Loaded configuration from {}: {}", this.path, snapshot);
+
+        this.watchService = FileSystems.getDefault().newWatchService();
+        this.path.getParent().register(watchService,
+            StandardWatchEventKinds.ENTRY_CREATE, StandardWatchEventKinds.ENTRY_MODIFY);
+        this.watcherThread = new Thread(this::run, "ControlConfig-Watcher");
+        watcherThread.setDaemon(true);
+        watcherThread.start();
+    }
+
+    private void run() {
+        Path fileName = path.getFileName();
+        while (running) {
+            WatchKey key;
+            try {
+                key = watchService.take();
+            } catch (InterruptedException | ClosedWatchServiceException e) {
+                return;
+            }
+            boolean changed = false;
+            for (WatchEvent<?> event : key.pollEvents()) {
+                if (fileName.equals(event.context())) {
+                    changed = true;
+                }
+            }
+            key.reset();
+            if (!changed) {
+                continue;
+            }
+
+            // Let the write finish, and fold its follow-up events into this reload
+            try {
+                TimeUnit.MILLISECONDS.sleep(SETTLE_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            try {
+                WatchKey pending;
+                while ((pending = watchService.poll()) != null) {
+                    pending.pollEvents();
+                    pending.reset();
+                }
+            } catch (ClosedWatchServiceException e) {
+                return;
+            }
+            reload();
+        }
+    }
+
+    /**
+     * Read the file again and install it if it is valid
+     * @return true if the new settings are now in effect
+     */
+    public synchronized boolean reload() {
+        try {
+            ControlConfig.Snapshot snapshot = ControlConfig.load(path);
+            ControlConfig.install(snapshot);
+            reloadCount++;
+            logger.info("Reloaded configuration from {}: {}", path, snapshot);
+            return true;
+        } catch (IOException | IllegalArgumentException e) {
+            failedReloadCount++;
+            logger.error("Keeping previous configuration, {} could not be loaded: {}", path, e.getMessage());
+            return false;
+        }
+    }
+
+    /** Successful reloads since the file was first loaded */
+    public long getReloadCount() {
+        return reloadCount;
+    }
+
+    /** Changes that were rejected because the file could not be read or was invalid */
+    public long getFailedReloadCount() {
+        return failedReloadCount;
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        try {
+            watchService.close();
+        } catch (IOException e) {
+            logger.warn("Error closing configuration watcher", e);
+        }
+        watcherThread.interrupt();
+    }
+}
@@ -0,0 +1,191 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a task at a fixed rate on a dedicated thread.
+ *
+ * Tick deadlines are computed from the start time (start + n * period), so small
+ * delays never accumulate into drift. The thread parks until shortly before each
+ * deadline and spins for the remainder, which keeps jitter far below what
+ * Thread.sleep or a ScheduledExecutorService deliver. If a tick overruns by more
+ * than a whole period, the missed ticks are skipped rather than run back to back.
+ * The rate can be changed while running; the new period starts from the next
+ * deadline.
+ */
+public class ControlLoop {
+    private static final Logger logger = LoggerFactory.getLogger(ControlLoop.class);
+
+    // Park until this long before the deadline, then spin
+    private static final long SPIN_THRESHOLD_NANOS = 100_000;
+
+    // Window over which the achieved rate and max jitter are reported
+    private static final long STATS_WINDOW_NANOS = 1_000_000_000L;
+
+    private final String name;
+    private volatile long periodNanos;
+    private final Runnable task;
+    private volatile boolean running = false;
+    private Thread thread;
+
+    // Statistics, written by the loop thread only
+    private volatile double achievedRateHz = 0;
+    private volatile long maxJitterNanos = 0;
+    private volatile double meanJitterNanos = 0;
+    private volatile long missedTicks = 0;
+    private volatile long tickCount = 0;
+
+    /**
+     * @param name Thread name
+     * @param rateHz Ticks per second
+     * @param task Work to run on every tick
+     */
+    public ControlLoop(String name, int rateHz, Runnable task) {
+        this.name = name;
+        this.periodNanos = toPeriodNanos(rateHz);
+        this.task = task;
+    }
+
+    private static long toPeriodNanos(int rateHz) {
+        if (rateHz <= 0) {
+            throw new IllegalArgumentException("Control rate must be positive: " + rateHz);
+        }
+        return 1_000_000_000L / rateHz;
+    }
+
+    /**
+     * Change the tick rate, taking effect from the next tick
+     */
+    public void setRateHz(int rateHz) {
+        long period = toPeriodNanos(rateHz);
+        if (period != periodNanos) {
+            periodNanos = period;
+            logger.info("{} rate changed to {} Hz", name, rateHz);
+        }
+    }
+
+    /**
+     * Configured ticks per second
+     */
+    public int getRateHz() {
+        return (int) (1_000_000_000L / periodNanos);
+    }
+
+    public void start() {
+        if (running) return;
+        running = true;
+        thread = new Thread(this::run);
+        thread.setName(name);
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MAX_PRIORITY);
+        thread.start();
+        logger.info("{} started at {} Hz", name, 1_000_000_000L / periodNanos);
+    }
+
+    public void stop() {
+        running = false;
+        if (thread != null) {
+            LockSupport.unpark(thread);
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void run() {
+        long start = System.nanoTime();
+        long tick = 0;
+        long windowStart = start;
+        long windowTicks = 0;
+        long windowMaxJitter = 0;
+        long period = periodNanos;
+
+        while (running) {
+            if (periodNanos != period) {
+                // Keep the next deadline, then tick at the new period from there
+                start += tick * period;
+                tick = 0;
+                period = periodNanos;
+            }
+            long deadline = start + tick * period;
+
+            // Coarse wait, then spin to the deadline
+            long remaining;
+            while ((remaining = deadline - System.nanoTime()) > SPIN_THRESHOLD_NANOS && running) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            }
+            while (System.nanoTime() - deadline < 0 && running) {
+                Thread.onSpinWait();
+            }
+            if (!running) {
+                break;
+            }
+
+            long now = System.nanoTime();
+            long jitter = now - deadline;
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                logger.error("Control loop task failed", e);
+            }
+
+            // Statistics
+            tickCount++;
+            windowTicks++;
+            windowMaxJitter = Math.max(windowMaxJitter, jitter);
+            meanJitterNanos += (jitter - meanJitterNanos) * 0.01;
+            if (now - windowStart >= STATS_WINDOW_NANOS) {
+                achievedRateHz = windowTicks * 1e9 / (now - windowStart);
+                maxJitterNanos = windowMaxJitter;
+                windowStart = now;
+                windowTicks = 0;
+                windowMaxJitter = 0;
+            }
+
+            // Skip ticks we are already too late for instead of bursting to catch up
+            tick++;
+            long behind = (System.nanoTime() - (start + tick * period)) / period;
+            if (behind > 0) {
+                tick += behind;
+                missedTicks += behind;
+            }
+        }
+    }
+
+    /**
+     * Ticks per second achieved over the last full statistics window
+     */
+    public double getAchievedRateHz() {
+        return achievedRateHz;
+    }
+
+    /**
+     * Largest tick start delay over the last full statistics window, in microseconds
+     */
+    public double getMaxJitterMicros() {
+        return maxJitterNanos / 1000.0;
+    }
+
+    /**
+     * Moving average of tick start delay, in microseconds
+     */
+    public double getMeanJitterMicros() {
+        return meanJitterNanos / 1000.0;
+    }
+
+    /**
+     * Ticks skipped because the loop fell more than a period behind
+     */
+    public long getMissedTicks() {
+        return missedTicks;
+    }
+
+    public long getTickCount() {
+        return tickCount;
+    }
+}
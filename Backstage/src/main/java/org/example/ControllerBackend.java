@@ -0,0 +1,30 @@
+package org.example;
+
+/**
+ * A source of controller events that reports to a ControllerListener.
+ * Implemented by the JInput, Linux joystick and Linux evdev readers.
+ */
+public interface ControllerBackend {
+    /**
+     * Raw events read from controller devices, across all backends; its rate is the event rate
+     */
+    Metrics.Counter EVENTS_READ =
+        Metrics.counter("controller_events_total", "Input events read from controller devices");
+
+    /**
+     * Start delivering events on a background thread
+     */
+    void start();
+
+    /**
+     * Stop delivering events. Returns once the reader has stopped or a short timeout passes.
+     */
+    void stop();
+
+    /**
+     * Shape analog axes with this curve from now on. Backends that do not read
+     * raw device values (such as a replay) ignore it.
+     */
+    default void setResponseCurve(ResponseCurve curve) {
+    }
+}
@@ -17,12 +17,51 @@ public interface ControllerListener {
     void onButtonReleased(int buttonId);
 
     /**
-     * Called when an analog axis changes (sticks, triggers)
+     * Called when an analog axis changes (sticks, triggers, D-pad)
      * @param axisId Axis ID constant from PS4Controller
      * @param value Axis value from -1.0 to 1.0
      */
     void onAxisMotion(int axisId, float value);
 
+    /**
+     * Called when an analog axis changes, with the time the input happened
+     * @param axisId Axis ID constant from PS4Controller
+     * @param value Axis value from -1.0 to 1.0
+     * @param timestampNanos When the event occurred, on the System.nanoTime() scale
+     */
+    default void onAxisMotion(int axisId, float value, long timestampNanos) {
+        onAxisMotion(axisId, value);
+    }
+
+    /**
+     * Called once per input report with every axis that changed in it, so that
+     * related axes (e.g. both sticks) can be applied together. Backends that
+     * see reports, such as evdev, call this; the default passes each axis to
+     * onAxisMotion.
+     * @param changedAxes Bit mask of changed axes, bit n set for axis ID n
+     * @param values Axis values indexed by axis ID; only changed entries are valid
+     * @param timestampNanos When the report was generated, on the System.nanoTime() scale
+     */
+    default void onAxisFrame(int changedAxes, float[] values, long timestampNanos) {
+        for (int axis = 0; axis < values.length; axis++) {
+            if ((changedAxes & (1 << axis)) != 0) {
+                onAxisMotion(axis, values[axis], timestampNanos);
+            }
+        }
+    }
+
+    /**
+     * Called once per input report with the motion sensors, by backends that
+     * read them (LinuxHidrawController). This can be up to 1000 times a second,
+     * so implementations should only update state here. The arrays are reused
+     * for the next report.
+     * @param gyro Angular rate about the X, Y and Z axes in degrees per second
+     * @param accel Acceleration along the X, Y and Z axes in g; about (0, 1, 0) lying flat
+     * @param timestampNanos When the sample was taken, on the System.nanoTime() scale
+     */
+    default void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+    }
+
     /**
      * Called when controller is disconnected
      */
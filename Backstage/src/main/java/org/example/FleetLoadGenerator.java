@@ -0,0 +1,770 @@
+package org.example;
+
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import com.google.gson.JsonSyntaxException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryUsage;
+import java.lang.management.ThreadInfo;
+import java.lang.management.ThreadMXBean;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Headless load generator for RobotNetworkServer.
+ *
+ * Starts a local server (or targets a running one with --connect), connects a
+ * fleet of simulated robots to it and broadcasts synthetic stick traffic at a
+ * fixed rate. With --replay, the traffic instead comes from an InputRecorder log
+ * played through RobotController, as a real session would drive it. Reports achieved throughput, delivery latency percentiles,
+ * commands lost or coalesced, evictions, and the server's CPU and heap use.
+ *
+ * Robots come in two kinds:
+ * - nio (default): lightweight robots multiplexed on a few selector threads,
+ *   which scale to thousands of connections
+ * - client: real RaspberryPiMotorClient instances, one thread each
+ *
+ * With --standby a second local server sends the same command stream and the
+ * client robots connect to both. --kill-primary-after then stops the primary
+ * server mid-run, and the report shows the longest gap in applied commands.
+ * --restart-server-after replaces the server with a new one on the same port;
+ * the client robots reconnect on their own and the report shows how long each
+ * took to get commands again. Client robots apply commands at --actuator-rate,
+ * and the report counts those that a newer command replaced before the motors
+ * saw them.
+ *
+ * Usage: FleetLoadGenerator [--robots N] [--rate HZ] [--duration SECONDS]
+ *        [--format binary|json] [--mode nio|client] [--loops N]
+ *        [--readers N] [--connect host:port] [--replay FILE] [--replay-speed X]
+ *        [--standby] [--kill-primary-after SECONDS] [--restart-server-after SECONDS]
+ *        [--actuator-rate HZ]
+ */
+public class FleetLoadGenerator {
+    private static final Logger logger = LoggerFactory.getLogger(FleetLoadGenerator.class);
+
+    private static final String IO_THREAD_PREFIX = "RobotNetworkServer-IO-";
+    private static final long PROGRESS_INTERVAL_MS = 1000;
+
+    // Settings
+    private int robotCount = 100;
+    private int rateHz = ControlConfig.CONTROL_RATE_HZ;
+    private int durationSeconds = 10;
+    private RobotNetworkServer.WireFormat wireFormat = RobotNetworkServer.WireFormat.BINARY;
+    private boolean clientMode = false;
+    private int eventLoopCount = 0;
+    private int readerCount = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() / 2));
+    private String connectHost;
+    private int connectPort;
+    private String replayFile;
+    private double replaySpeed = 1.0;
+    private boolean standby = false;
+    private int killPrimaryAfterSeconds = -1;
+    private int restartServerAfterSeconds = -1;
+    private int actuatorRateHz = ControlConfig.CONTROL_RATE_HZ;
+
+    // Results, shared by every robot
+    private final LatencyHistogram deliveryLatency = new LatencyHistogram("delivery");
+    private final AtomicLong delivered = new AtomicLong();
+    private final AtomicLong lost = new AtomicLong();
+
+    private volatile RobotNetworkServer server;
+    private RobotNetworkServer standbyServer;
+    private int nextSequence = 0;
+    private long driverStoppedNanos;
+    private ControlLoop driver;
+    private RobotController replayController;
+    private final List<RobotReader> readers = new ArrayList<>();
+    private final List<RaspberryPiMotorClient> clients = new ArrayList<>();
+    private final List<DiscardingMotorController> motors = new ArrayList<>();
+    private long broadcasts = 0;
+
+    /**
+     * Run the whole test: start, connect, drive, report, shut down
+     */
+    public void run() throws IOException, InterruptedException {
+        String host = connectHost != null ? connectHost : "127.0.0.1";
+        int port = connectHost != null ? connectPort : freePort();
+
+        int standbyPort = 0;
+        if (connectHost == null) {
+            server = startServer(port);
+            if (standby) {
+                standbyPort = freePort();
+                standbyServer = startServer(standbyPort);
+            }
+        }
+
+        long connectStart = System.nanoTime();
+        connectRobots(host, port, standbyPort);
+        logger.info("Connected {} {} robot(s) in {} ms", robotCount, clientMode ? "client" : "nio",
+            (System.nanoTime() - connectStart) / 1_000_000);
+
+        ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+        long cpuStart = serverCpuNanos(threads);
+        long gcCountStart = gcCount();
+        long gcTimeStart = gcTimeMillis();
+        long runStart = System.nanoTime();
+
+        if (server != null && replayFile != null) {
+            replayController = RobotController.withoutController(new ServerRobot(), rateHz);
+            InputReplay replay = new InputReplay(Paths.get(replayFile), replayController, replaySpeed);
+            replay.setRepeat(true);
+            replayController.setControllerBackend(replay);
+            driver = replayController.getControlLoop();
+            replayController.start();
+        } else if (server != null) {
+            driver = new ControlLoop("FleetLoadGenerator-Driver", rateHz, this::broadcast);
+            driver.start();
+        }
+
+        long start = System.currentTimeMillis();
+        long end = start + durationSeconds * 1000L;
+        long killAt = killPrimaryAfterSeconds >= 0 && server != null
+            ? start + killPrimaryAfterSeconds * 1000L : Long.MAX_VALUE;
+        long restartAt = restartServerAfterSeconds >= 0 && server != null
+            ? start + restartServerAfterSeconds * 1000L : Long.MAX_VALUE;
+        long lastDelivered = 0;
+        while (System.currentTimeMillis() < end) {
+            long nextEvent = Math.min(killAt, restartAt) - System.currentTimeMillis();
+            Thread.sleep(Math.max(1, Math.min(PROGRESS_INTERVAL_MS, nextEvent)));
+            if (System.currentTimeMillis() >= killAt) {
+                killAt = Long.MAX_VALUE;
+                logger.info("Stopping the primary server");
+                server.stop();
+                continue;
+            }
+            if (System.currentTimeMillis() >= restartAt) {
+                restartAt = Long.MAX_VALUE;
+                logger.info("Restarting the server");
+                server.stop();
+                server = startServer(port);
+                continue;
+            }
+            long now = delivered();
+            logger.info("delivered {}/s, p99 {} us, lost {}",
+                now - lastDelivered, deliveryLatencyNanos(0.99) / 1000, lost());
+            lastDelivered = now;
+        }
+
+        if (replayController != null) {
+            replayController.stop();
+        } else if (driver != null) {
+            driver.stop();
+        }
+        driverStoppedNanos = System.nanoTime();
+        // Let in-flight commands arrive before counting
+        Thread.sleep(200);
+
+        double elapsedSeconds = (System.nanoTime() - runStart) / 1e9;
+        long cpuNanos = serverCpuNanos(threads) - cpuStart;
+        report(elapsedSeconds, cpuNanos, gcCount() - gcCountStart, gcTimeMillis() - gcTimeStart);
+        shutdown();
+    }
+
+    private RobotNetworkServer startServer(int port) {
+        RobotNetworkServer started = new RobotNetworkServer(port);
+        started.setWireFormat(wireFormat);
+        if (eventLoopCount > 0) {
+            started.setEventLoopCount(eventLoopCount);
+        }
+        started.start();
+        return started;
+    }
+
+    private void connectRobots(String host, int port, int standbyPort) throws IOException, InterruptedException {
+        if (clientMode) {
+            for (int i = 0; i < robotCount; i++) {
+                DiscardingMotorController motor = new DiscardingMotorController();
+                RaspberryPiMotorClient client = new RaspberryPiMotorClient(host, port, motor);
+                if (standbyServer != null) {
+                    client.addStandbyServer(host, standbyPort);
+                }
+                client.setAutoReconnect(restartServerAfterSeconds >= 0);
+                client.setActuatorRateHz(actuatorRateHz);
+                client.connect();
+                if (!client.isConnected()) {
+                    throw new IOException("Robot " + i + " could not connect to " + host + ":" + port);
+                }
+                clients.add(client);
+                motors.add(motor);
+            }
+        } else {
+            for (int i = 0; i < readerCount; i++) {
+                readers.add(new RobotReader("FleetLoadGenerator-Reader-" + i));
+            }
+            for (int i = 0; i < robotCount; i++) {
+                SocketChannel channel = SocketChannel.open(new InetSocketAddress(host, port));
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                channel.configureBlocking(false);
+                readers.get(i % readerCount).add(channel);
+            }
+            for (RobotReader reader : readers) {
+                reader.start();
+            }
+        }
+
+        if (server != null) {
+            awaitClients(server);
+        }
+        if (standbyServer != null) {
+            awaitClients(standbyServer);
+        }
+    }
+
+    private void awaitClients(RobotNetworkServer target) throws IOException, InterruptedException {
+        long deadline = System.currentTimeMillis() + 10_000;
+        while (target.getConnectedClientCount() < robotCount) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new IOException("Server accepted only " + target.getConnectedClientCount()
+                    + " of " + robotCount + " robots");
+            }
+            Thread.sleep(10);
+        }
+    }
+
+    /**
+     * One control tick: both sticks follow slow sine waves, so every command differs
+     */
+    private void broadcast() {
+        double t = broadcasts++ / (double) rateHz;
+        float left = (float) Math.sin(2 * Math.PI * 0.5 * t);
+        float right = (float) Math.cos(2 * Math.PI * 0.3 * t);
+        send(left, right, System.nanoTime());
+    }
+
+    /**
+     * Broadcast through the server and the standby, with the same sequence number
+     */
+    private void send(float left, float right, long originNanos) {
+        int sequence = nextSequence++;
+        server.broadcastMotorCommand(sequence, left, right, originNanos);
+        if (standbyServer != null) {
+            standbyServer.broadcastMotorCommand(sequence, left, right, originNanos);
+        }
+    }
+
+    private long delivered() {
+        if (clientMode) {
+            return PipelineLatency.TRANSIT.getCount();
+        }
+        return delivered.get();
+    }
+
+    /**
+     * Sequence gaps seen by nio robots, or stale commands discarded by client robots
+     */
+    private long lost() {
+        long total = lost.get();
+        if (standbyServer != null) {
+            // Client discards are mostly the standby's duplicate copies
+            return total;
+        }
+        for (RaspberryPiMotorClient client : clients) {
+            total += client.getDiscardedCommandCount();
+        }
+        return total;
+    }
+
+    private long deliveryLatencyNanos(double quantile) {
+        // Client robots record into the pipeline histograms like a real Pi does
+        LatencyHistogram histogram = clientMode ? PipelineLatency.TRANSIT : deliveryLatency;
+        return histogram.getValueAtQuantile(quantile);
+    }
+
+    private void report(double elapsedSeconds, long cpuNanos, long gcCount, long gcTimeMillis) {
+        LatencyHistogram histogram = clientMode ? PipelineLatency.TRANSIT : deliveryLatency;
+        long deliveredCount = delivered();
+
+        logger.info("=== Fleet load: {} robot(s), {} Hz, {} ===", robotCount, rateHz, wireFormat);
+        if (driver != null) {
+            long expected = broadcasts * robotCount;
+            logger.info("Broadcasts: {} ({} Hz achieved, {} missed ticks, max jitter {} us)",
+                broadcasts, String.format("%.1f", driver.getAchievedRateHz()),
+                driver.getMissedTicks(), String.format("%.0f", driver.getMaxJitterMicros()));
+            logger.info("Delivered: {} of {} ({}%), {} commands/s",
+                deliveredCount, expected,
+                String.format("%.2f", expected == 0 ? 0.0 : 100.0 * deliveredCount / expected),
+                String.format("%.0f", deliveredCount / elapsedSeconds));
+        } else {
+            logger.info("Delivered: {}, {} commands/s",
+                deliveredCount, String.format("%.0f", deliveredCount / elapsedSeconds));
+        }
+        logger.info("Delivery latency: p50={} us p99={} us p999={} us max={} us",
+            histogram.getValueAtQuantile(0.50) / 1000, histogram.getValueAtQuantile(0.99) / 1000,
+            histogram.getValueAtQuantile(0.999) / 1000, histogram.getMaxNanos() / 1000);
+        logger.info("Lost or coalesced (sequence gaps): {}", lost());
+        if (!clients.isEmpty()) {
+            long applied = 0;
+            long overwritten = 0;
+            for (RaspberryPiMotorClient client : clients) {
+                applied += client.getAppliedCommandCount();
+                overwritten += client.getOverwrittenCommandCount();
+            }
+            logger.info("Actuators: {} commands applied at {} Hz, {} overwritten before they were applied",
+                applied, actuatorRateHz, overwritten);
+        }
+
+        if (server != null) {
+            long coalesced = 0;
+            long rttSum = 0;
+            long rttMax = 0;
+            int measured = 0;
+            int limited = 0;
+            for (RobotNetworkServer.ClientHandler client : server.getClients()) {
+                coalesced += client.getCoalescedCommandCount();
+                long rtt = client.getSmoothedRttMicros();
+                if (rtt >= 0) {
+                    rttSum += rtt;
+                    rttMax = Math.max(rttMax, rtt);
+                    measured++;
+                }
+                if (client.getCommandIntervalMillis() > 0) {
+                    limited++;
+                }
+            }
+            logger.info("Server: {} coalesced, {} evicted, {} still connected",
+                coalesced, server.getEvictedClientCount(), server.getConnectedClientCount());
+            logger.info("Links: smoothed RTT mean {} us, max {} us; {} robot(s) at a reduced command rate",
+                measured == 0 ? 0 : rttSum / measured, rttMax, limited);
+            logger.info("Server CPU: {}% of one core, {} us per broadcast",
+                String.format("%.1f", 100.0 * cpuNanos / (elapsedSeconds * 1e9)),
+                String.format("%.1f", broadcasts == 0 ? 0.0 : cpuNanos / 1000.0 / broadcasts));
+        }
+
+        if (standbyServer != null || killPrimaryAfterSeconds >= 0) {
+            reportFailover();
+        }
+        if (restartServerAfterSeconds >= 0) {
+            reportRecovery();
+        }
+
+        MemoryUsage heap = ManagementFactory.getMemoryMXBean().getHeapMemoryUsage();
+        logger.info("Heap: {} MB used of {} MB; {} GC(s) taking {} ms",
+            heap.getUsed() >> 20, heap.getMax() >> 20, gcCount, gcTimeMillis);
+    }
+
+    /**
+     * Longest gap between applied commands per client robot, counting a robot
+     * that stopped receiving until the driver stopped
+     */
+    private void reportFailover() {
+        long[] gaps = new long[motors.size()];
+        for (int i = 0; i < gaps.length; i++) {
+            gaps[i] = motors.get(i).maxGapNanos(driverStoppedNanos);
+        }
+        Arrays.sort(gaps);
+        if (gaps.length > 0) {
+            logger.info("Largest gap in applied commands: median robot {} ms, worst robot {} ms (interval {} ms)",
+                String.format("%.1f", gaps[gaps.length / 2] / 1e6), String.format("%.1f", gaps[gaps.length - 1] / 1e6),
+                String.format("%.1f", 1000.0 / rateHz));
+        }
+
+        long[] firstArrivals = new long[2];
+        long discarded = 0;
+        for (RaspberryPiMotorClient client : clients) {
+            long[] counts = client.getFirstArrivalCounts();
+            for (int i = 0; i < Math.min(counts.length, firstArrivals.length); i++) {
+                firstArrivals[i] += counts[i];
+            }
+            discarded += client.getDiscardedCommandCount();
+        }
+        logger.info("First arrivals: primary {}, standby {}; {} later copies discarded",
+            firstArrivals[0], firstArrivals[1], discarded);
+    }
+
+    /**
+     * Time each client robot took from losing the server to applying a command again
+     */
+    private void reportRecovery() {
+        long[] recovery = new long[clients.size()];
+        int recovered = 0;
+        long reconnects = 0;
+        for (RaspberryPiMotorClient client : clients) {
+            long millis = client.getLastRecoveryMillis();
+            if (millis >= 0) {
+                recovery[recovered++] = millis;
+            }
+            reconnects += client.getReconnectCount();
+        }
+        Arrays.sort(recovery, 0, recovered);
+        if (recovered == 0) {
+            logger.info("Recovery: no robot received commands again after the restart");
+            return;
+        }
+        logger.info("Recovery after restart: {} of {} robots, {} reconnects; median {} ms, p90 {} ms, worst {} ms",
+            recovered, clients.size(), reconnects, recovery[recovered / 2],
+            recovery[(int) (recovered * 0.9)], recovery[recovered - 1]);
+    }
+
+    private void shutdown() throws IOException {
+        for (RobotReader reader : readers) {
+            reader.close();
+        }
+        for (RaspberryPiMotorClient client : clients) {
+            client.disconnect();
+        }
+        if (server != null) {
+            server.stop();
+        }
+        if (standbyServer != null) {
+            standbyServer.stop();
+        }
+    }
+
+    /**
+     * CPU time of the server's event loops and the driver threads. In --connect
+     * mode the server is in another process and this stays 0.
+     */
+    private static long serverCpuNanos(ThreadMXBean threads) {
+        long total = 0;
+        for (ThreadInfo info : threads.getThreadInfo(threads.getAllThreadIds())) {
+            if (info == null) {
+                continue;
+            }
+            String name = info.getThreadName();
+            if (name.startsWith(IO_THREAD_PREFIX) || name.equals("FleetLoadGenerator-Driver")
+                    || name.equals("RobotController-Tick") || name.equals("InputReplay")) {
+                long cpu = threads.getThreadCpuTime(info.getThreadId());
+                if (cpu > 0) {
+                    total += cpu;
+                }
+            }
+        }
+        return total;
+    }
+
+    private static long gcCount() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionCount());
+        }
+        return total;
+    }
+
+    private static long gcTimeMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Reads the streams of many simulated robots on one selector thread
+     */
+    private class RobotReader implements Runnable {
+        private final Selector selector;
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        RobotReader(String name) throws IOException {
+            this.selector = Selector.open();
+            this.thread = new Thread(this, name);
+            this.thread.setDaemon(true);
+        }
+
+        void add(SocketChannel channel) throws IOException {
+            channel.register(selector, SelectionKey.OP_READ, new SimulatedRobot());
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (running) {
+                    selector.select(100);
+                    for (SelectionKey key : selector.selectedKeys()) {
+                        SimulatedRobot robot = (SimulatedRobot) key.attachment();
+                        if (!robot.read((SocketChannel) key.channel())) {
+                            key.cancel();
+                            key.channel().close();
+                        }
+                    }
+                    selector.selectedKeys().clear();
+                }
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Robot reader failed", e);
+                }
+            }
+        }
+
+        void close() throws IOException {
+            running = false;
+            selector.wakeup();
+            try {
+                thread.join(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            for (SelectionKey key : selector.keys()) {
+                key.channel().close();
+            }
+            selector.close();
+        }
+    }
+
+    /**
+     * Decodes one robot's stream (binary frames and JSON lines, like
+     * RaspberryPiMotorClient) and records delivery latency and sequence gaps
+     */
+    private class SimulatedRobot {
+        private final ByteBuffer buffer = ByteBuffer.allocate(4096);
+        private final ByteBuffer pong = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        private final MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        private boolean hasSequence = false;
+        private int lastSequence;
+
+        /**
+         * @return false once the server has closed the connection
+         */
+        boolean read(SocketChannel channel) throws IOException {
+            int n;
+            while ((n = channel.read(buffer)) > 0) {
+                buffer.flip();
+                parse(channel);
+                buffer.compact();
+            }
+            return n != -1;
+        }
+
+        private void parse(SocketChannel channel) throws IOException {
+            while (buffer.hasRemaining()) {
+                if (buffer.get(buffer.position()) == '{') {
+                    int end = -1;
+                    for (int i = buffer.position(); i < buffer.limit(); i++) {
+                        if (buffer.get(i) == '\n') {
+                            end = i;
+                            break;
+                        }
+                    }
+                    if (end < 0) {
+                        return;
+                    }
+                    byte[] line = new byte[end - buffer.position()];
+                    buffer.get(line);
+                    buffer.get(); // newline
+                    parseJson(channel, new String(line, StandardCharsets.UTF_8));
+                } else {
+                    if (!MotorCommandCodec.decode(buffer, frame)) {
+                        return;
+                    }
+                    if (frame.type == MotorCommandCodec.TYPE_MOTOR || frame.type == MotorCommandCodec.TYPE_STOP) {
+                        received(frame.sequence, frame.timestampMicros);
+                    } else if (frame.type == MotorCommandCodec.TYPE_PING) {
+                        pong.clear();
+                        MotorCommandCodec.encode(pong, MotorCommandCodec.TYPE_PONG,
+                            frame.sequence, frame.timestampMicros, 0.0f, 0.0f);
+                        pong.flip();
+                        answer(channel, pong);
+                    }
+                }
+            }
+        }
+
+        private void parseJson(SocketChannel channel, String line) throws IOException {
+            try {
+                JsonObject message = JsonParser.parseString(line).getAsJsonObject();
+                if (message.has("type") && "ping".equals(message.get("type").getAsString())) {
+                    message.addProperty("type", "pong");
+                    answer(channel, ByteBuffer.wrap((message + "\n").getBytes(StandardCharsets.UTF_8)));
+                } else if (message.has("type") && "motor".equals(message.get("type").getAsString())
+                        && message.has("seq") && message.has("ts")) {
+                    received(message.get("seq").getAsInt(), message.get("ts").getAsLong());
+                }
+            } catch (JsonSyntaxException | IllegalStateException e) {
+                logger.warn("Invalid JSON received: {}", line);
+            }
+        }
+
+        /**
+         * Send a pong; one that does not fit in the socket buffer is dropped, which
+         * the server counts as heartbeat loss
+         */
+        private void answer(SocketChannel channel, ByteBuffer reply) throws IOException {
+            channel.write(reply);
+        }
+
+        private void received(int sequence, long timestampMicros) {
+            long nowMicros = MotorCommandCodec.toTimestampMicros(System.nanoTime());
+            deliveryLatency.record((nowMicros - timestampMicros) * 1000L);
+            delivered.incrementAndGet();
+            if (hasSequence && sequence - lastSequence > 1) {
+                lost.addAndGet(sequence - lastSequence - 1);
+            }
+            hasSequence = true;
+            lastSequence = sequence;
+        }
+    }
+
+    /**
+     * Sends RobotController's commands straight to the local server
+     */
+    private class ServerRobot implements Robot {
+        @Override
+        public void move(double leftVelocity, double rightVelocity) {
+            move(leftVelocity, rightVelocity, System.nanoTime());
+        }
+
+        @Override
+        public void move(double leftVelocity, double rightVelocity, long originNanos) {
+            broadcasts++;
+            send((float) leftVelocity, (float) rightVelocity, originNanos);
+        }
+
+        @Override
+        public void rotate(double angularVelocity) {
+        }
+
+        @Override
+        public void stop() {
+            int sequence = nextSequence++;
+            server.broadcastStop(sequence);
+            if (standbyServer != null) {
+                standbyServer.broadcastStop(sequence);
+            }
+        }
+
+        @Override
+        public void performAction(String action) {
+        }
+
+        @Override
+        public boolean isConnected() {
+            return true;
+        }
+    }
+
+    /**
+     * Motor controller for client robots; discards the speeds without logging
+     * them, noting only the longest gap between commands
+     */
+    private static class DiscardingMotorController implements RaspberryPiMotorClient.MotorController {
+        private volatile long lastAppliedNanos = 0;
+        private volatile long maxGapNanos = 0;
+
+        @Override
+        public void setMotorSpeed(int motorId, float speed) {
+            if (motorId != LEFT_MOTOR) {
+                return;
+            }
+            long now = System.nanoTime();
+            if (lastAppliedNanos != 0) {
+                maxGapNanos = Math.max(maxGapNanos, now - lastAppliedNanos);
+            }
+            lastAppliedNanos = now;
+        }
+
+        long maxGapNanos(long endNanos) {
+            long last = lastAppliedNanos;
+            return last == 0 ? 0 : Math.max(maxGapNanos, endNanos - last);
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        FleetLoadGenerator generator = new FleetLoadGenerator();
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            String value = i + 1 < args.length ? args[i + 1] : null;
+            switch (arg) {
+                case "--robots":
+                    generator.robotCount = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--rate":
+                    generator.rateHz = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--duration":
+                    generator.durationSeconds = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--format":
+                    generator.wireFormat = RobotNetworkServer.WireFormat.valueOf(value.toUpperCase());
+                    i++;
+                    break;
+                case "--mode":
+                    generator.clientMode = "client".equalsIgnoreCase(value);
+                    i++;
+                    break;
+                case "--loops":
+                    generator.eventLoopCount = Integer.parseInt(value);
+                    i++;
+                    break;
+                case "--readers":
+                    generator.readerCount = Math.max(1, Integer.parseInt(value));
+                    i++;
+                    break;
+                case "--replay":
+                    generator.replayFile = value;
+                    i++;
+                    break;
+                case "--replay-speed":
+                    generator.replaySpeed = Double.parseDouble(value);
+                    i++;
+                    break;
+                case "--standby":
+                    generator.standby = true;
+                    generator.clientMode = true;
+                    break;
+                case "--kill-primary-after":
+                    generator.killPrimaryAfterSeconds = Integer.parseInt(value);
+                    generator.clientMode = true;
+                    i++;
+                    break;
+                case "--restart-server-after":
+                    generator.restartServerAfterSeconds = Integer.parseInt(value);
+                    generator.clientMode = true;
+                    i++;
+                    break;
+                case "--actuator-rate":
+                    generator.actuatorRateHz = Integer.parseInt(value);
+                    generator.clientMode = true;
+                    i++;
+                    break;
+                case "--connect":
+                    String[] hostPort = value.split(":");
+                    generator.connectHost = hostPort[0];
+                    generator.connectPort = Integer.parseInt(hostPort[1]);
+                    i++;
+                    break;
+                default:
+                    logger.error("Unknown option: {}", arg);
+                    logger.info("Usage: FleetLoadGenerator [--robots N] [--rate HZ] [--duration SECONDS] "
+                        + "[--format binary|json] [--mode nio|client] [--loops N] [--readers N] "
+                        + "[--connect host:port] [--replay FILE] [--replay-speed X] "
+                        + "[--standby] [--kill-primary-after SECONDS] [--restart-server-after SECONDS] "
+                        + "[--actuator-rate HZ]");
+                    System.exit(2);
+            }
+        }
+
+        generator.run();
+        System.exit(0);
+    }
+}
@@ -0,0 +1,230 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drives one robot per attached gamepad, for several operators on one host.
+ *
+ * Every gamepad found by the chosen Linux backend is opened with its own reader
+ * thread, RobotController and robot. A device's events go from its reader
+ * straight to its controller through a Device, which counts them and records
+ * how long after the input they were dispatched; nothing on that path is shared
+ * with another device, so operators never wait on each other. When the robots
+ * share one server (RobotNetworkServer targets), each sends to its own target,
+ * which takes no lock shared with the others.
+ *
+ * Per-device stats are published as metrics (input_<device>_events_total and
+ * input_<device>_latency_p99_micros, e.g. input_js0_events_total) and logged by
+ * report().
+ */
+public class InputHub {
+    private static final Logger logger = LoggerFactory.getLogger(InputHub.class);
+
+    /**
+     * Creates the robot an operator's gamepad drives
+     */
+    public interface RobotFactory {
+        /**
+         * @param index Position of the device among those found, from 0
+         * @param devicePath The gamepad's device
+         */
+        Robot create(int index, String devicePath) throws IOException;
+    }
+
+    /**
+     * One gamepad and the controller it drives. Sits between the device's reader
+     * and its RobotController; only that reader's thread calls it.
+     */
+    public static final class Device implements ControllerListener {
+        private final String name;
+        private final String devicePath;
+        private final Robot robot;
+        private final RobotController controller;
+        private final Metrics.Counter events;
+        private final LatencyHistogram latency;
+
+        private Device(String devicePath, Robot robot, int controlRateHz) {
+            this.name = Paths.get(devicePath).getFileName().toString();
+            this.devicePath = devicePath;
+            this.robot = robot;
+            this.controller = RobotController.withoutController(robot, controlRateHz);
+            this.events = Metrics.counter("input_" + name + "_events_total",
+                "Input events dispatched from " + devicePath);
+            this.latency = new LatencyHistogram(name);
+            Metrics.gauge("input_" + name + "_latency_p99_micros",
+                "99th percentile input-to-dispatch latency on " + devicePath + " in microseconds",
+                () -> latency.getValueAtQuantile(0.99) / 1000);
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        public String getDevicePath() {
+            return devicePath;
+        }
+
+        public Robot getRobot() {
+            return robot;
+        }
+
+        public RobotController getController() {
+            return controller;
+        }
+
+        /** Events dispatched from this device */
+        public long getEventCount() {
+            return events.getValue();
+        }
+
+        /** Time from each axis input to its dispatch, since the last report() */
+        public LatencyHistogram getLatency() {
+            return latency;
+        }
+
+        @Override
+        public void onButtonPressed(int buttonId) {
+            events.increment();
+            controller.onButtonPressed(buttonId);
+        }
+
+        @Override
+        public void onButtonReleased(int buttonId) {
+            events.increment();
+            controller.onButtonReleased(buttonId);
+        }
+
+        @Override
+        public void onAxisMotion(int axisId, float value) {
+            onAxisMotion(axisId, value, System.nanoTime());
+        }
+
+        @Override
+        public void onAxisMotion(int axisId, float value, long timestampNanos) {
+            events.increment();
+            latency.record(System.nanoTime() - timestampNanos);
+            controller.onAxisMotion(axisId, value, timestampNanos);
+        }
+
+        @Override
+        public void onAxisFrame(int changedAxes, float[] values, long timestampNanos) {
+            events.add(Integer.bitCount(changedAxes));
+            latency.record(System.nanoTime() - timestampNanos);
+            controller.onAxisFrame(changedAxes, values, timestampNanos);
+        }
+
+        @Override
+        public void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+            events.increment();
+            controller.onMotion(gyro, accel, timestampNanos);
+        }
+
+        @Override
+        public void onControllerDisconnected() {
+            logger.warn("Gamepad {} disconnected", name);
+            controller.onControllerDisconnected();
+        }
+    }
+
+    private final List<Device> devices = new ArrayList<>();
+    private ScheduledExecutorService reporter;
+
+    /**
+     * Open every attached gamepad
+     * @param backend EVDEV, JOYSTICK, HIDRAW, or AUTO for evdev devices if there are any, else js
+     * @param controlRateHz Motor commands per second for each robot, or 0 to send on every event
+     * @param robots Creates each device's robot
+     */
+    public InputHub(RobotController.InputBackend backend, int controlRateHz, RobotFactory robots)
+            throws ControllerException, IOException {
+        List<String> paths;
+        switch (backend) {
+            case EVDEV:
+                paths = LinuxEvdevController.findDevices();
+                break;
+            case JOYSTICK:
+                paths = LinuxPS4Controller.findDevices();
+                break;
+            case HIDRAW:
+                paths = LinuxHidrawController.findDevices();
+                break;
+            case AUTO:
+                paths = LinuxEvdevController.findDevices();
+                if (paths.isEmpty()) {
+                    backend = RobotController.InputBackend.JOYSTICK;
+                    paths = LinuxPS4Controller.findDevices();
+                } else {
+                    backend = RobotController.InputBackend.EVDEV;
+                }
+                break;
+            default:
+                throw new ControllerException("The input hub needs the evdev, joystick or hidraw backend");
+        }
+        if (paths.isEmpty()) {
+            throw new ControllerException("No gamepads found. Connect at least one PS4 controller.");
+        }
+
+        for (int i = 0; i < paths.size(); i++) {
+            String path = paths.get(i);
+            Device device = new Device(path, robots.create(i, path), controlRateHz);
+            device.controller.setControllerBackend(RobotController.openBackend(backend, path, device));
+            devices.add(device);
+        }
+        logger.info("Input hub opened {} gamepad(s)", devices.size());
+    }
+
+    /**
+     * The opened gamepads, in device order
+     */
+    public List<Device> getDevices() {
+        return Collections.unmodifiableList(devices);
+    }
+
+    public void start() {
+        for (Device device : devices) {
+            device.controller.start();
+        }
+    }
+
+    public void stop() {
+        if (reporter != null) {
+            reporter.shutdownNow();
+        }
+        for (Device device : devices) {
+            device.controller.stop();
+        }
+    }
+
+    /**
+     * Log each device's event count and latency percentiles, then start a fresh latency window
+     */
+    public void report() {
+        for (Device device : devices) {
+            logger.info("Gamepad {} ({} events) latency {}",
+                device.name, device.getEventCount(), device.latency.summary());
+            device.latency.reset();
+        }
+    }
+
+    /**
+     * Report on a daemon thread every periodSeconds
+     */
+    public void startReporter(long periodSeconds) {
+        reporter = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "InputHub-Reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        reporter.scheduleAtFixedRate(this::report, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+    }
+}
@@ -0,0 +1,178 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * Records controller events to an append-only, memory-mapped log while passing
+ * them on to another listener. The log can be played back with InputReplay.
+ * Axis values are recorded as the backend reported them, already shaped by its
+ * ResponseCurve.
+ *
+ * File layout (big-endian):
+ *   Header, 32 bytes:
+ *     4 bytes: magic "PS4R"
+ *     2 bytes: format version (1)
+ *     2 bytes: reserved
+ *     8 bytes: wall-clock time of the first event, epoch microseconds
+ *     16 bytes: reserved
+ *   Records, 16 bytes each:
+ *     8 bytes: nanoseconds since the first event
+ *     1 byte:  kind (KIND_* constants)
+ *     1 byte:  button or axis ID from PS4Controller
+ *     2 bytes: reserved
+ *     4 bytes: axis value (float)
+ *
+ * The file grows in mapped regions and is trimmed to its content on close. A
+ * log cut short by a crash is still readable: it ends at the first zeroed record.
+ */
+public class InputRecorder implements ControllerListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InputRecorder.class);
+
+    static final int MAGIC = 0x50533452;  // "PS4R"
+    static final short VERSION = 1;
+    static final int HEADER_SIZE = 32;
+    static final int RECORD_SIZE = 16;
+
+    static final byte KIND_BUTTON_PRESSED  = 1;
+    static final byte KIND_BUTTON_RELEASED = 2;
+    static final byte KIND_AXIS            = 3;
+    /** Axis belonging to a frame; the frame is dispatched at KIND_FRAME_END */
+    static final byte KIND_FRAME_AXIS      = 4;
+    static final byte KIND_FRAME_END       = 5;
+    static final byte KIND_DISCONNECTED    = 6;
+
+    // The file is mapped and extended this much at a time (65536 records)
+    private static final long REGION_SIZE = 1 << 20;
+
+    private final Path path;
+    private final ControllerListener delegate;
+    private final FileChannel channel;
+    private MappedByteBuffer region;
+    private long regionStart;
+    private long startNanos = Long.MIN_VALUE;
+    private long recordCount = 0;
+    private boolean closed = false;
+
+    /**
+     * Create (or overwrite) a log file
+     * @param path Log file
+     * @param delegate Listener that receives every event after it is recorded; may be null
+     */
+    public InputRecorder(Path path, ControllerListener delegate) throws IOException {
+        this.path = path;
+        this.delegate = delegate;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+            StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        this.regionStart = 0;
+        this.region = channel.map(FileChannel.MapMode.READ_WRITE, 0, REGION_SIZE);
+        region.putInt(MAGIC).putShort(VERSION).putShort((short) 0).putLong(0L);
+        region.position(HEADER_SIZE);
+        logger.info("Recording controller input to {}", path);
+    }
+
+    @Override
+    public void onButtonPressed(int buttonId) {
+        append(System.nanoTime(), KIND_BUTTON_PRESSED, buttonId, 0.0f);
+        if (delegate != null) delegate.onButtonPressed(buttonId);
+    }
+
+    @Override
+    public void onButtonReleased(int buttonId) {
+        append(System.nanoTime(), KIND_BUTTON_RELEASED, buttonId, 0.0f);
+        if (delegate != null) delegate.onButtonReleased(buttonId);
+    }
+
+    @Override
+    public void onAxisMotion(int axisId, float value) {
+        onAxisMotion(axisId, value, System.nanoTime());
+    }
+
+    @Override
+    public void onAxisMotion(int axisId, float value, long timestampNanos) {
+        append(timestampNanos, KIND_AXIS, axisId, value);
+        if (delegate != null) delegate.onAxisMotion(axisId, value, timestampNanos);
+    }
+
+    @Override
+    public void onAxisFrame(int changedAxes, float[] values, long timestampNanos) {
+        synchronized (this) {
+            for (int axis = 0; axis < values.length; axis++) {
+                if ((changedAxes & (1 << axis)) != 0) {
+                    append(timestampNanos, KIND_FRAME_AXIS, axis, values[axis]);
+                }
+            }
+            append(timestampNanos, KIND_FRAME_END, 0, 0.0f);
+        }
+        if (delegate != null) delegate.onAxisFrame(changedAxes, values, timestampNanos);
+    }
+
+    /**
+     * Motion samples are passed on but not recorded
+     */
+    @Override
+    public void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+        if (delegate != null) delegate.onMotion(gyro, accel, timestampNanos);
+    }
+
+    @Override
+    public void onControllerDisconnected() {
+        append(System.nanoTime(), KIND_DISCONNECTED, 0, 0.0f);
+        if (delegate != null) delegate.onControllerDisconnected();
+    }
+
+    /**
+     * Number of records written
+     */
+    public synchronized long getRecordCount() {
+        return recordCount;
+    }
+
+    private synchronized void append(long timestampNanos, byte kind, int id, float value) {
+        if (closed) {
+            return;
+        }
+        if (startNanos == Long.MIN_VALUE) {
+            startNanos = timestampNanos;
+            region.putLong(8, MotorCommandCodec.toTimestampMicros(timestampNanos));
+        }
+        try {
+            if (region.remaining() < RECORD_SIZE) {
+                regionStart += region.position();
+                region = channel.map(FileChannel.MapMode.READ_WRITE, regionStart, REGION_SIZE);
+            }
+        } catch (IOException e) {
+            logger.error("Could not extend {}, recording stopped: {}", path, e.getMessage());
+            closed = true;
+            return;
+        }
+        region.putLong(timestampNanos - startNanos)
+            .put(kind)
+            .put((byte) id)
+            .putShort((short) 0)
+            .putFloat(value);
+        recordCount++;
+    }
+
+    /**
+     * Flush the log and trim the file to the records written
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed && !channel.isOpen()) {
+            return;
+        }
+        closed = true;
+        long length = regionStart + region.position();
+        region.force();
+        channel.truncate(length);
+        channel.close();
+        logger.info("Recorded {} controller events to {}", recordCount, path);
+    }
+}
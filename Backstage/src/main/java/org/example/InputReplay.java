@@ -0,0 +1,205 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Plays a log written by InputRecorder into a ControllerListener, so a driving
+ * session can be reproduced or used as realistic load.
+ *
+ * Events are replayed at the recorded pace scaled by a speed factor (1.0 is real
+ * time, 4.0 four times as fast), or back to back with AS_FAST_AS_POSSIBLE. Each
+ * event carries the time it was due on the System.nanoTime() scale, so the
+ * latency histograms measure the pipeline rather than the recording. When the
+ * log ends the listener sees a disconnect, unless the replay repeats.
+ */
+public class InputReplay implements ControllerBackend {
+    private static final Logger logger = LoggerFactory.getLogger(InputReplay.class);
+
+    /** Speed factor that skips all waiting */
+    public static final double AS_FAST_AS_POSSIBLE = 0.0;
+
+    // Park until this long before an event is due, then spin
+    private static final long SPIN_THRESHOLD_NANOS = 100_000;
+
+    // How long stop() waits for the replay thread to exit
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    private final Path path;
+    private final ControllerListener listener;
+    private final double speed;
+    private final MappedByteBuffer log;
+    private final long recordedStartMicros;
+    private volatile boolean repeat = false;
+    private volatile boolean running = false;
+    private Thread replayThread;
+
+    // Frame being reassembled from KIND_FRAME_AXIS records
+    private final float[] frameValues = new float[PS4Controller.AXIS_COUNT];
+    private int frameAxes = 0;
+
+    private volatile long eventsReplayed = 0;
+
+    /**
+     * @param path Log written by InputRecorder
+     * @param listener Receives the replayed events
+     * @param speed Pace relative to the recording, or AS_FAST_AS_POSSIBLE
+     */
+    public InputReplay(Path path, ControllerListener listener, double speed) throws IOException {
+        if (speed < 0) {
+            throw new IllegalArgumentException("Replay speed must not be negative: " + speed);
+        }
+        this.path = path;
+        this.listener = listener;
+        this.speed = speed;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            this.log = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        }
+        if (log.limit() < InputRecorder.HEADER_SIZE || log.getInt(0) != InputRecorder.MAGIC) {
+            throw new IOException(path + " is not an input recording");
+        }
+        if (log.getShort(4) != InputRecorder.VERSION) {
+            throw new IOException(path + " has unsupported recording version " + log.getShort(4));
+        }
+        this.recordedStartMicros = log.getLong(8);
+    }
+
+    /**
+     * Start over from the beginning when the log ends, instead of reporting a disconnect
+     */
+    public void setRepeat(boolean repeat) {
+        this.repeat = repeat;
+    }
+
+    /** Wall-clock time the recording started, epoch microseconds */
+    public long getRecordedStartMicros() {
+        return recordedStartMicros;
+    }
+
+    /** Events delivered to the listener so far */
+    public long getEventsReplayed() {
+        return eventsReplayed;
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        running = true;
+        logger.info("Replaying {} at {}", path, speed == AS_FAST_AS_POSSIBLE ? "full speed" : speed + "x");
+        replayThread = new Thread(this::run);
+        replayThread.setName("InputReplay");
+        replayThread.setDaemon(true);
+        replayThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (replayThread != null) {
+            LockSupport.unpark(replayThread);
+            try {
+                replayThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("Replay stopped after {} events", eventsReplayed);
+    }
+
+    private void run() {
+        do {
+            replay();
+        } while (running && repeat);
+        if (running) {
+            running = false;
+            listener.onControllerDisconnected();
+        }
+    }
+
+    /**
+     * Replay the whole log once on the calling thread. A recorded disconnect is
+     * passed on; the end of the log is not.
+     * @return Number of events delivered
+     */
+    public long replay() {
+        boolean threaded = Thread.currentThread() == replayThread;
+        long startNanos = System.nanoTime();
+        long delivered = 0;
+        frameAxes = 0;
+
+        for (int offset = InputRecorder.HEADER_SIZE;
+                offset + InputRecorder.RECORD_SIZE <= log.limit();
+                offset += InputRecorder.RECORD_SIZE) {
+            if (threaded && !running) {
+                break;
+            }
+            byte kind = log.get(offset + 8);
+            if (kind == 0) {
+                // Unwritten space at the end of a log that was not closed
+                break;
+            }
+            long recordedNanos = log.getLong(offset);
+            int id = log.get(offset + 9);
+            float value = log.getFloat(offset + 12);
+
+            long timestampNanos = System.nanoTime();
+            if (speed != AS_FAST_AS_POSSIBLE) {
+                timestampNanos = startNanos + (long) (recordedNanos / speed);
+                waitUntil(timestampNanos, threaded);
+            }
+
+            switch (kind) {
+                case InputRecorder.KIND_BUTTON_PRESSED:
+                    listener.onButtonPressed(id);
+                    break;
+                case InputRecorder.KIND_BUTTON_RELEASED:
+                    listener.onButtonReleased(id);
+                    break;
+                case InputRecorder.KIND_AXIS:
+                    listener.onAxisMotion(id, value, timestampNanos);
+                    break;
+                case InputRecorder.KIND_FRAME_AXIS:
+                    if (id >= 0 && id < frameValues.length) {
+                        frameValues[id] = value;
+                        frameAxes |= 1 << id;
+                    }
+                    continue;
+                case InputRecorder.KIND_FRAME_END:
+                    listener.onAxisFrame(frameAxes, frameValues, timestampNanos);
+                    frameAxes = 0;
+                    break;
+                case InputRecorder.KIND_DISCONNECTED:
+                    listener.onControllerDisconnected();
+                    break;
+                default:
+                    logger.warn("Unknown record kind {} at offset {} in {}", kind, offset, path);
+                    continue;
+            }
+            delivered++;
+        }
+
+        eventsReplayed += delivered;
+        return delivered;
+    }
+
+    private void waitUntil(long deadline, boolean threaded) {
+        long remaining;
+        while ((remaining = deadline - System.nanoTime()) > 0) {
+            if (threaded && !running) {
+                return;
+            }
+            if (remaining > SPIN_THRESHOLD_NANOS) {
+                LockSupport.parkNanos(remaining - SPIN_THRESHOLD_NANOS);
+            } else {
+                Thread.onSpinWait();
+            }
+        }
+    }
+}
@@ -0,0 +1,426 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Linux-native PS4 controller reader using /dev/input/event* (evdev interface).
+ *
+ * Each event is a struct input_event, 24 bytes on 64-bit systems:
+ *   8 bytes: tv_sec           - int64
+ *   8 bytes: tv_usec          - int64
+ *   2 bytes: type             - EV_SYN, EV_KEY or EV_ABS
+ *   2 bytes: code             - axis or button code
+ *   4 bytes: value            - int32
+ * (32-bit systems use 4-byte tv_sec/tv_usec, 16 bytes in total.)
+ *
+ * The driver emits one frame per controller report, terminated by SYN_REPORT.
+ * Axis and button changes are collected until the SYN_REPORT and then
+ * dispatched together: all changed axes in one onAxisFrame call, then the
+ * buttons in order. Timestamps have microsecond resolution.
+ *
+ * Compared with LinuxPS4Controller (js interface) this also reports the D-pad
+ * axes. The device path may be a recorded event stream
+ * (cat /dev/input/eventN > ds4.bin), which is read to the end and then
+ * reported as a disconnect.
+ */
+public class LinuxEvdevController implements ControllerBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinuxEvdevController.class);
+
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int EV_ABS = 0x03;
+
+    private static final int SYN_REPORT  = 0;
+    private static final int SYN_DROPPED = 3;  // the kernel buffer overflowed
+
+    // Absolute axis codes reported by the DS4 drivers (hid-sony, hid-playstation)
+    private static final int ABS_X     = 0x00;
+    private static final int ABS_Y     = 0x01;
+    private static final int ABS_Z     = 0x02;  // L2
+    private static final int ABS_RX    = 0x03;
+    private static final int ABS_RY    = 0x04;
+    private static final int ABS_RZ    = 0x05;  // R2
+    private static final int ABS_HAT0X = 0x10;
+    private static final int ABS_HAT0Y = 0x11;
+
+    // Sticks and triggers report 0..255; the hat reports -1..1
+    private static final int ABS_MAX = 255;
+
+    private static final int BTN_SOUTH  = 0x130;
+    private static final int BTN_EAST   = 0x131;
+    private static final int BTN_NORTH  = 0x133;
+    private static final int BTN_WEST   = 0x134;
+    private static final int BTN_TL     = 0x136;
+    private static final int BTN_TR     = 0x137;
+    private static final int BTN_TL2    = 0x138;
+    private static final int BTN_TR2    = 0x139;
+    private static final int BTN_SELECT = 0x13a;
+    private static final int BTN_START  = 0x13b;
+    private static final int BTN_MODE   = 0x13c;
+    private static final int BTN_THUMBL = 0x13d;
+    private static final int BTN_THUMBR = 0x13e;
+
+    private static final int EVENT_SIZE =
+        "32".equals(System.getProperty("sun.arch.data.model")) ? 16 : 24;
+
+    // Events read per syscall at most
+    private static final int BATCH_EVENTS = 64;
+
+    // How long stop() waits for the reader thread to exit
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    // A realtime event timestamp further from now than this is not on the wall clock
+    // (CLOCK_MONOTONIC was selected, or the stream is a recording)
+    private static final long MAX_ABSOLUTE_LATENCY_MICROS = 1_000_000;
+
+    private final String devicePath;
+    private final ControllerListener listener;
+    private volatile boolean running = false;
+    private Thread readerThread;
+    private volatile FileChannel channel;
+    private volatile ResponseCurve responseCurve = ControlConfig.current().getResponseCurve();
+
+    // Reused for every read
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(BATCH_EVENTS * EVENT_SIZE).order(ByteOrder.nativeOrder());
+
+    // The frame being assembled; passed to the listener at SYN_REPORT
+    private final float[] frameValues = new float[PS4Controller.AXIS_COUNT];
+    private int changedAxes = 0;
+    private final int[] frameButtons = new int[32];
+    private final boolean[] framePressed = new boolean[32];
+    private int frameButtonCount = 0;
+    private boolean dropping = false;
+
+    // Fallback clock calibration, as in LinuxPS4Controller
+    private long minClockOffsetNanos = Long.MAX_VALUE;
+    private static final long CLOCK_RESYNC_NANOS = 10_000_000_000L;
+
+    // Counters, written by the reader thread only
+    private volatile long readCalls = 0;
+    private volatile long eventsRead = 0;
+    private volatile long framesDispatched = 0;
+    private volatile long droppedFrames = 0;
+
+    public LinuxEvdevController(String devicePath, ControllerListener listener) {
+        this.devicePath = devicePath;
+        this.listener = listener;
+    }
+
+    @Override
+    public void setResponseCurve(ResponseCurve curve) {
+        this.responseCurve = curve;
+    }
+
+    /**
+     * Find the event device of the first DS4 gamepad (not its touchpad or motion
+     * sensor devices). Returns null if none found.
+     */
+    public static String findDevice() {
+        List<String> devices = findDevices();
+        return devices.isEmpty() ? null : devices.get(0);
+    }
+
+    /**
+     * The event devices of every attached DS4 gamepad, in device order
+     */
+    public static List<String> findDevices() {
+        List<String> found = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(Paths.get("/sys/class/input"))) {
+            List<Path> devices = entries
+                    .filter(p -> p.getFileName().toString().startsWith("event"))
+                    .sorted()
+                    .collect(Collectors.toList());
+            for (Path device : devices) {
+                Path namePath = device.resolve("device/name");
+                if (!Files.isReadable(namePath)) {
+                    continue;
+                }
+                String name = new String(Files.readAllBytes(namePath)).trim();
+                if (isGamepadName(name)) {
+                    logger.info("Found evdev controller '{}' at {}", name, device.getFileName());
+                    found.add("/dev/input/" + device.getFileName());
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list /sys/class/input: {}", e.getMessage());
+        }
+        return found;
+    }
+
+    private static boolean isGamepadName(String name) {
+        String lower = name.toLowerCase();
+        if (lower.contains("motion sensors") || lower.contains("touchpad")) {
+            return false;
+        }
+        return lower.contains("wireless controller") || lower.contains("dualshock")
+            || lower.contains("dualsense");
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        running = true;
+        readerThread = new Thread(this::readLoop);
+        readerThread.setName("LinuxEvdev-Reader-" + Paths.get(devicePath).getFileName());
+        readerThread.setDaemon(true);
+        readerThread.start();
+        logger.info("LinuxEvdevController started on {}", devicePath);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        // Closing the channel wakes a read blocked in the kernel
+        FileChannel ch = channel;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                logger.debug("Error closing {}: {}", devicePath, e.getMessage());
+            }
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("LinuxEvdevController stopped ({} reads, {} events, {} frames, {} dropped)",
+            readCalls, eventsRead, framesDispatched, droppedFrames);
+    }
+
+    private void readLoop() {
+        try (FileChannel ch = FileChannel.open(Paths.get(devicePath), StandardOpenOption.READ)) {
+            channel = ch;
+            while (running) {
+                if (!readBatch(ch)) {
+                    logger.warn("Controller device closed");
+                    running = false;
+                    if (listener != null) listener.onControllerDisconnected();
+                    return;
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // stop() closed the channel
+        } catch (IOException e) {
+            if (running) {
+                logger.error("Error reading from {}: {}", devicePath, e.getMessage());
+                if (listener != null) listener.onControllerDisconnected();
+            }
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Read the events available (up to the buffer size) with one read and
+     * dispatch every frame completed by a SYN_REPORT. An incomplete frame is kept
+     * for the next read.
+     * @return false at end of stream
+     */
+    boolean readBatch(ReadableByteChannel ch) throws IOException {
+        int r = ch.read(buffer);
+        if (r == -1) {
+            return false;
+        }
+        long readNanos = System.nanoTime();
+        buffer.flip();
+
+        int events = 0;
+        int frames = 0;
+        while (buffer.remaining() >= EVENT_SIZE) {
+            long seconds;
+            long micros;
+            if (EVENT_SIZE == 24) {
+                seconds = buffer.getLong();
+                micros = buffer.getLong();
+            } else {
+                seconds = buffer.getInt() & 0xFFFFFFFFL;
+                micros = buffer.getInt() & 0xFFFFFFFFL;
+            }
+            int type  = buffer.getShort() & 0xFFFF;
+            int code  = buffer.getShort() & 0xFFFF;
+            int value = buffer.getInt();
+            events++;
+
+            if (dropping) {
+                // After SYN_DROPPED, everything up to the next SYN_REPORT is incomplete
+                if (type == EV_SYN && code == SYN_REPORT) {
+                    dropping = false;
+                }
+                continue;
+            }
+
+            switch (type) {
+                case EV_ABS:
+                    int axis = mapAxis(code);
+                    if (axis >= 0) {
+                        frameValues[axis] = normalize(axis, value, responseCurve);
+                        changedAxes |= 1 << axis;
+                    }
+                    break;
+                case EV_KEY:
+                    int btn = mapButton(code);
+                    // Value 2 is key auto-repeat; only presses and releases matter
+                    if (btn >= 0 && value != 2 && frameButtonCount < frameButtons.length) {
+                        frameButtons[frameButtonCount] = btn;
+                        framePressed[frameButtonCount] = value != 0;
+                        frameButtonCount++;
+                    }
+                    break;
+                case EV_SYN:
+                    if (code == SYN_REPORT) {
+                        dispatchFrame(seconds * 1_000_000L + micros, readNanos);
+                        frames++;
+                    } else if (code == SYN_DROPPED) {
+                        logger.warn("Input events dropped by the kernel; discarding the partial frame");
+                        clearFrame();
+                        dropping = true;
+                        droppedFrames++;
+                    }
+                    break;
+                default:
+                    // EV_MSC scan codes and others are not used
+                    break;
+            }
+        }
+
+        // A partial event stays in the buffer for the next read
+        buffer.compact();
+
+        readCalls++;
+        eventsRead += events;
+        EVENTS_READ.add(events);
+        framesDispatched += frames;
+        return true;
+    }
+
+    private void dispatchFrame(long eventMicros, long readNanos) {
+        if (changedAxes == 0 && frameButtonCount == 0) {
+            return;
+        }
+        long eventNanos = eventTimeNanos(eventMicros, readNanos);
+        if (listener != null) {
+            if (changedAxes != 0) {
+                listener.onAxisFrame(changedAxes, frameValues, eventNanos);
+            }
+            for (int i = 0; i < frameButtonCount; i++) {
+                if (framePressed[i]) listener.onButtonPressed(frameButtons[i]);
+                else                 listener.onButtonReleased(frameButtons[i]);
+            }
+        }
+        clearFrame();
+    }
+
+    private void clearFrame() {
+        changedAxes = 0;
+        frameButtonCount = 0;
+    }
+
+    /**
+     * Convert an event's microsecond timestamp to the System.nanoTime() scale and
+     * record the input stage latency. evdev stamps events with CLOCK_REALTIME by
+     * default, which is the clock MotorCommandCodec timestamps use, so the
+     * latency is measured directly. Timestamps on another clock fall back to the
+     * minimum-offset estimate used for the js interface.
+     */
+    private long eventTimeNanos(long eventMicros, long readNanos) {
+        long latencyMicros = MotorCommandCodec.toTimestampMicros(readNanos) - eventMicros;
+        long inputLatency;
+        if (latencyMicros >= 0 && latencyMicros < MAX_ABSOLUTE_LATENCY_MICROS) {
+            inputLatency = latencyMicros * 1000L;
+        } else {
+            long offset = readNanos - eventMicros * 1000L;
+            if (offset < minClockOffsetNanos || offset - minClockOffsetNanos > CLOCK_RESYNC_NANOS) {
+                minClockOffsetNanos = offset;
+            }
+            inputLatency = offset - minClockOffsetNanos;
+        }
+        PipelineLatency.INPUT.record(inputLatency);
+        return readNanos - inputLatency;
+    }
+
+    /**
+     * Scale a raw axis value to the int16 range; sticks are shaped, triggers
+     * stay linear (-1 released, 1 fully pressed). The d-pad hat is passed through.
+     */
+    private static float normalize(int axis, int value, ResponseCurve curve) {
+        if (axis == PS4Controller.AXIS_DPAD_X || axis == PS4Controller.AXIS_DPAD_Y) {
+            return value;
+        }
+        int clamped = Math.max(0, Math.min(ABS_MAX, value));
+        return curve.shapeAxis(axis, ((clamped << 1) - ABS_MAX) * ResponseCurve.RAW_MAX / ABS_MAX);
+    }
+
+    /** Number of read calls on the device */
+    public long getReadCalls() {
+        return readCalls;
+    }
+
+    /** Number of input_event records read */
+    public long getEventsRead() {
+        return eventsRead;
+    }
+
+    /** Number of SYN_REPORT frames dispatched */
+    public long getFramesDispatched() {
+        return framesDispatched;
+    }
+
+    /** Number of times the kernel reported dropped events */
+    public long getDroppedFrames() {
+        return droppedFrames;
+    }
+
+    /** Map evdev button code -> PS4Controller button constants */
+    private int mapButton(int code) {
+        switch (code) {
+            case BTN_SOUTH:  return PS4Controller.BUTTON_CROSS;
+            case BTN_EAST:   return PS4Controller.BUTTON_CIRCLE;
+            case BTN_WEST:   return PS4Controller.BUTTON_SQUARE;
+            case BTN_NORTH:  return PS4Controller.BUTTON_TRIANGLE;
+            case BTN_TL:     return PS4Controller.BUTTON_L1;
+            case BTN_TR:     return PS4Controller.BUTTON_R1;
+            case BTN_TL2:    return PS4Controller.BUTTON_L2;
+            case BTN_TR2:    return PS4Controller.BUTTON_R2;
+            case BTN_SELECT: return PS4Controller.BUTTON_SHARE;
+            case BTN_START:  return PS4Controller.BUTTON_OPTIONS;
+            case BTN_THUMBL: return PS4Controller.BUTTON_L3;
+            case BTN_THUMBR: return PS4Controller.BUTTON_R3;
+            case BTN_MODE:   return PS4Controller.BUTTON_PS;
+            default:         return -1;
+        }
+    }
+
+    /** Map evdev axis code -> PS4Controller axis constants */
+    private int mapAxis(int code) {
+        switch (code) {
+            case ABS_X:     return PS4Controller.AXIS_LEFT_STICK_X;
+            case ABS_Y:     return PS4Controller.AXIS_LEFT_STICK_Y;
+            case ABS_RX:    return PS4Controller.AXIS_RIGHT_STICK_X;
+            case ABS_RY:    return PS4Controller.AXIS_RIGHT_STICK_Y;
+            case ABS_Z:     return PS4Controller.AXIS_L2_TRIGGER;
+            case ABS_RZ:    return PS4Controller.AXIS_R2_TRIGGER;
+            case ABS_HAT0X: return PS4Controller.AXIS_DPAD_X;
+            case ABS_HAT0Y: return PS4Controller.AXIS_DPAD_Y;
+            default:        return -1;
+        }
+    }
+}
@@ -0,0 +1,514 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.file.*;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Linux-native PS4 controller reader using /dev/hidraw* (raw HID reports).
+ *
+ * Unlike the js and evdev interfaces this sees the whole DualShock 4 input
+ * report, including the gyro and accelerometer, which are passed to
+ * ControllerListener.onMotion() for every report. USB controllers send report
+ * 0x01 (64 bytes); Bluetooth controllers, once the driver has switched them to
+ * full reports, send report 0x11 (78 bytes) with the same fields two bytes
+ * later. From the first field:
+ *   0-3:   left X, left Y, right X, right Y      - uint8
+ *   4:     D-pad hat (low 4 bits), square, cross, circle, triangle
+ *   5:     L1, R1, L2, R2, share, options, L3, R3
+ *   6:     PS, touchpad click (low 2 bits), report counter
+ *   7-8:   L2, R2 analog                         - uint8
+ *   9-10:  sensor timestamp (5.33 us units)      - uint16
+ *   12-17: gyro X, Y, Z                          - int16 little-endian
+ *   18-23: accelerometer X, Y, Z                 - int16 little-endian
+ *
+ * Sensor values are scaled with the nominal DS4 ranges (+-2000 deg/s and +-4 g)
+ * rather than the per-controller calibration, which is only available through
+ * a feature report.
+ *
+ * Sticks and buttons are passed on only when they change: changed axes in one
+ * onAxisFrame call, then the buttons. hidraw reports carry no kernel timestamp,
+ * so these are stamped with the read time. Motion samples are stamped from the
+ * report's own sensor clock, anchored to the read time, so that their spacing is
+ * right even when several reports arrive in one read.
+ *
+ * A device returns exactly one report per read, so the read length frames it:
+ * a report too short for its ID, such as the 10-byte report 0x01 a Bluetooth
+ * controller sends before it is switched to full reports, is dropped. The
+ * device path may also be a captured report stream (cat /dev/hidraw0 > ds4.bin),
+ * which has no framing and is scanned for report IDs instead; it is read to the
+ * end and then reported as a disconnect. main() decodes one.
+ */
+public class LinuxHidrawController implements ControllerBackend {
+
+    private static final Logger logger = LoggerFactory.getLogger(LinuxHidrawController.class);
+
+    private static final int REPORT_USB = 0x01;
+    private static final int REPORT_BLUETOOTH = 0x11;
+    private static final int REPORT_USB_SIZE = 64;
+    private static final int REPORT_BLUETOOTH_SIZE = 78;
+
+    // Offsets from the first field (left stick X)
+    private static final int FIELD_BUTTONS_1 = 4;
+    private static final int FIELD_BUTTONS_2 = 5;
+    private static final int FIELD_BUTTONS_3 = 6;
+    private static final int FIELD_L2 = 7;
+    private static final int FIELD_R2 = 8;
+    private static final int FIELD_TIMESTAMP = 9;
+    private static final int FIELD_GYRO = 12;
+    private static final int FIELD_ACCEL = 18;
+
+    // Nominal sensor resolution
+    private static final float GYRO_LSB_PER_DEG_S = 32768f / 2000f;
+    private static final float ACCEL_LSB_PER_G = 8192f;
+
+    // D-pad hat positions 0 (up) to 7 (up-left), clockwise; 8 is released
+    private static final int[] HAT_X = {0, 1, 1, 1, 0, -1, -1, -1, 0};
+    private static final int[] HAT_Y = {-1, -1, 0, 1, 1, 1, 0, -1, 0};
+
+    // The sensor clock ticks every 16/3 microseconds and wraps at 16 bits
+    private static final long SENSOR_TICK_NANOS_NUMERATOR = 16_000;
+    private static final long SENSOR_TICK_NANOS_DENOMINATOR = 3;
+    // Sensor time further than this from the read time is re-anchored
+    private static final long MAX_SENSOR_DRIFT_NANOS = 1_000_000_000L;
+
+    // Sticks and triggers report 0..255
+    private static final int AXIS_RAW_MAX = 255;
+
+    // Sony's vendor ID, and the DS4 v1, DS4 v2 and USB wireless adapter product IDs
+    private static final String SONY_VENDOR = "0000054C";
+    private static final String[] DS4_PRODUCTS = {"000005C4", "000009CC", "00000BA0"};
+
+    // Reports read per syscall at most; a device returns one per read
+    private static final int BATCH_REPORTS = 16;
+
+    // How long stop() waits for the reader thread to exit
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    private final String devicePath;
+    private final ControllerListener listener;
+    private volatile boolean running = false;
+    private Thread readerThread;
+    private volatile FileChannel channel;
+    private volatile ResponseCurve responseCurve = ControlConfig.current().getResponseCurve();
+
+    // Reused for every read
+    private final ByteBuffer buffer =
+        ByteBuffer.allocateDirect(BATCH_REPORTS * REPORT_BLUETOOTH_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+
+    // Previous report's raw axes and buttons, to pass on only what changed;
+    // -1 until the first report
+    private final int[] lastRawAxes = new int[PS4Controller.AXIS_COUNT];
+    private int lastButtons = 0;
+
+    // Passed to the listener, refilled for every report
+    private final float[] axisValues = new float[PS4Controller.AXIS_COUNT];
+    private final float[] gyro = new float[3];
+    private final float[] accel = new float[3];
+
+    // Sensor clock of the previous report, -1 before the first, and its time on
+    // the System.nanoTime() scale
+    private int lastSensorTicks = -1;
+    private long sensorNanos = 0;
+
+    // Counters, written by the reader thread only
+    private volatile long readCalls = 0;
+    private volatile long reportsRead = 0;
+    private volatile long skippedBytes = 0;
+    private volatile long shortReports = 0;
+
+    public LinuxHidrawController(String devicePath, ControllerListener listener) {
+        this.devicePath = devicePath;
+        this.listener = listener;
+        Arrays.fill(lastRawAxes, -1);
+    }
+
+    @Override
+    public void setResponseCurve(ResponseCurve curve) {
+        this.responseCurve = curve;
+    }
+
+    /**
+     * Find the hidraw device of the first DS4. Returns null if none found.
+     */
+    public static String findDevice() {
+        List<String> devices = findDevices();
+        return devices.isEmpty() ? null : devices.get(0);
+    }
+
+    /**
+     * The hidraw devices of every attached DS4, in device order
+     */
+    public static List<String> findDevices() {
+        List<String> found = new ArrayList<>();
+        try (Stream<Path> entries = Files.list(Paths.get("/sys/class/hidraw"))) {
+            List<Path> devices = entries.sorted().collect(Collectors.toList());
+            for (Path device : devices) {
+                Path ueventPath = device.resolve("device/uevent");
+                if (!Files.isReadable(ueventPath)) {
+                    continue;
+                }
+                for (String line : Files.readAllLines(ueventPath)) {
+                    // HID_ID=<bus>:<vendor>:<product>
+                    if (line.startsWith("HID_ID=") && isDualShock4(line.substring("HID_ID=".length()))) {
+                        logger.info("Found DS4 hidraw device at {}", device.getFileName());
+                        found.add("/dev/" + device.getFileName());
+                    }
+                }
+            }
+        } catch (IOException e) {
+            logger.warn("Could not list /sys/class/hidraw: {}", e.getMessage());
+        }
+        return found;
+    }
+
+    private static boolean isDualShock4(String hidId) {
+        String[] parts = hidId.toUpperCase().split(":");
+        if (parts.length != 3 || !SONY_VENDOR.equals(parts[1])) {
+            return false;
+        }
+        for (String product : DS4_PRODUCTS) {
+            if (product.equals(parts[2])) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public void start() {
+        if (running) return;
+        running = true;
+        readerThread = new Thread(this::readLoop);
+        readerThread.setName("LinuxHidraw-Reader-" + Paths.get(devicePath).getFileName());
+        readerThread.setDaemon(true);
+        readerThread.start();
+        logger.info("LinuxHidrawController started on {}", devicePath);
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        // Closing the channel wakes a read blocked in the kernel
+        FileChannel ch = channel;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                logger.debug("Error closing {}: {}", devicePath, e.getMessage());
+            }
+        }
+        if (readerThread != null) {
+            readerThread.interrupt();
+            try {
+                readerThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        logger.info("LinuxHidrawController stopped ({} reads, {} reports, {} bytes skipped)",
+            readCalls, reportsRead, skippedBytes);
+    }
+
+    private void readLoop() {
+        Path path = Paths.get(devicePath);
+        boolean capture = Files.isRegularFile(path);
+        try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+            channel = ch;
+            while (running) {
+                if (!(capture ? readBatch(ch) : readReport(ch))) {
+                    logger.warn("Controller device closed");
+                    running = false;
+                    if (listener != null) listener.onControllerDisconnected();
+                    return;
+                }
+            }
+        } catch (ClosedChannelException e) {
+            // stop() closed the channel
+        } catch (IOException e) {
+            if (running) {
+                logger.error("Error reading from {}: {}", devicePath, e.getMessage());
+                if (listener != null) listener.onControllerDisconnected();
+            }
+        } finally {
+            channel = null;
+        }
+    }
+
+    /**
+     * Read one report from a device and dispatch it. The read returns the whole
+     * report, so one shorter than its ID's full size is dropped rather than
+     * joined to the next.
+     * @return false at end of stream
+     */
+    boolean readReport(ReadableByteChannel ch) throws IOException {
+        buffer.clear();
+        int r = ch.read(buffer);
+        if (r == -1) {
+            return false;
+        }
+        long readNanos = System.nanoTime();
+        readCalls++;
+
+        int reportId = r > 0 ? buffer.get(0) & 0xFF : -1;
+        if (reportId == REPORT_USB && r >= REPORT_USB_SIZE) {
+            dispatchReport(1, readNanos);
+        } else if (reportId == REPORT_BLUETOOTH && r >= REPORT_BLUETOOTH_SIZE) {
+            dispatchReport(3, readNanos);
+        } else {
+            if (shortReports++ == 0) {
+                logger.warn("Dropping {}-byte report {} from {}; motion needs full reports (0x11 over Bluetooth)",
+                    r, String.format("0x%02x", reportId), devicePath);
+            }
+            skippedBytes += r;
+            return true;
+        }
+        reportsRead++;
+        EVENTS_READ.increment();
+        return true;
+    }
+
+    /**
+     * Read up to the buffer size from a capture file and dispatch every complete
+     * report. A capture has no read boundaries, so bytes that do not start a
+     * known report are skipped and an incomplete report is kept for the next read.
+     * @return false at end of stream
+     */
+    boolean readBatch(ReadableByteChannel ch) throws IOException {
+        int r = ch.read(buffer);
+        if (r == -1) {
+            return false;
+        }
+        long readNanos = System.nanoTime();
+        buffer.flip();
+
+        int reports = 0;
+        while (buffer.hasRemaining()) {
+            int start = buffer.position();
+            int reportId = buffer.get(start) & 0xFF;
+            int size;
+            int fields;
+            if (reportId == REPORT_USB) {
+                size = REPORT_USB_SIZE;
+                fields = start + 1;
+            } else if (reportId == REPORT_BLUETOOTH) {
+                size = REPORT_BLUETOOTH_SIZE;
+                fields = start + 3;
+            } else {
+                // Not the start of a known report
+                buffer.position(start + 1);
+                skippedBytes++;
+                continue;
+            }
+            if (buffer.remaining() < size) {
+                break;
+            }
+            dispatchReport(fields, readNanos);
+            buffer.position(start + size);
+            reports++;
+        }
+
+        // A partial report stays in the buffer for the next read
+        buffer.compact();
+
+        readCalls++;
+        reportsRead += reports;
+        EVENTS_READ.add(reports);
+        return true;
+    }
+
+    /**
+     * Pass on the changed axes and buttons, then the motion sensors, of the
+     * report whose fields start at this buffer index
+     */
+    private void dispatchReport(int fields, long readNanos) {
+        ResponseCurve curve = responseCurve;
+        int buttons1 = buffer.get(fields + FIELD_BUTTONS_1) & 0xFF;
+        int hat = Math.min(buttons1 & 0x0F, 8);
+
+        int changedAxes = 0;
+        changedAxes |= updateAxis(PS4Controller.AXIS_LEFT_STICK_X, buffer.get(fields) & 0xFF, curve);
+        changedAxes |= updateAxis(PS4Controller.AXIS_LEFT_STICK_Y, buffer.get(fields + 1) & 0xFF, curve);
+        changedAxes |= updateAxis(PS4Controller.AXIS_RIGHT_STICK_X, buffer.get(fields + 2) & 0xFF, curve);
+        changedAxes |= updateAxis(PS4Controller.AXIS_RIGHT_STICK_Y, buffer.get(fields + 3) & 0xFF, curve);
+        changedAxes |= updateAxis(PS4Controller.AXIS_L2_TRIGGER, buffer.get(fields + FIELD_L2) & 0xFF, curve);
+        changedAxes |= updateAxis(PS4Controller.AXIS_R2_TRIGGER, buffer.get(fields + FIELD_R2) & 0xFF, curve);
+        changedAxes |= updateHat(PS4Controller.AXIS_DPAD_X, HAT_X[hat]);
+        changedAxes |= updateHat(PS4Controller.AXIS_DPAD_Y, HAT_Y[hat]);
+
+        int buttons = buttonMask(buttons1, buffer.get(fields + FIELD_BUTTONS_2) & 0xFF,
+            buffer.get(fields + FIELD_BUTTONS_3) & 0xFF);
+        int changedButtons = buttons ^ lastButtons;
+        lastButtons = buttons;
+
+        long motionNanos = sensorTimeNanos(buffer.getShort(fields + FIELD_TIMESTAMP) & 0xFFFF, readNanos);
+        for (int i = 0; i < 3; i++) {
+            gyro[i] = buffer.getShort(fields + FIELD_GYRO + 2 * i) / GYRO_LSB_PER_DEG_S;
+            accel[i] = buffer.getShort(fields + FIELD_ACCEL + 2 * i) / ACCEL_LSB_PER_G;
+        }
+
+        if (listener == null) {
+            return;
+        }
+        if (changedAxes != 0) {
+            listener.onAxisFrame(changedAxes, axisValues, readNanos);
+        }
+        while (changedButtons != 0) {
+            int button = Integer.numberOfTrailingZeros(changedButtons);
+            changedButtons &= changedButtons - 1;
+            if ((buttons & (1 << button)) != 0) listener.onButtonPressed(button);
+            else                                listener.onButtonReleased(button);
+        }
+        listener.onMotion(gyro, accel, motionNanos);
+    }
+
+    /**
+     * Advance the sensor time by the ticks since the previous report. It starts
+     * at the read time and is re-anchored there if it drifts too far, e.g.
+     * after a reconnect or while a capture is read faster than it was recorded.
+     */
+    private long sensorTimeNanos(int ticks, long readNanos) {
+        if (lastSensorTicks < 0) {
+            sensorNanos = readNanos;
+        } else {
+            int elapsedTicks = (ticks - lastSensorTicks) & 0xFFFF;
+            sensorNanos += elapsedTicks * SENSOR_TICK_NANOS_NUMERATOR / SENSOR_TICK_NANOS_DENOMINATOR;
+            if (Math.abs(sensorNanos - readNanos) > MAX_SENSOR_DRIFT_NANOS) {
+                sensorNanos = readNanos;
+            }
+        }
+        lastSensorTicks = ticks;
+        return sensorNanos;
+    }
+
+    /**
+     * Record a stick or trigger value, scaled to the int16 range; sticks are
+     * shaped by the curve, as in LinuxEvdevController
+     * @return the axis bit if the value changed, else 0
+     */
+    private int updateAxis(int axis, int raw, ResponseCurve curve) {
+        if (lastRawAxes[axis] == raw) {
+            return 0;
+        }
+        lastRawAxes[axis] = raw;
+        axisValues[axis] = curve.shapeAxis(axis, ((raw << 1) - AXIS_RAW_MAX) * ResponseCurve.RAW_MAX / AXIS_RAW_MAX);
+        return 1 << axis;
+    }
+
+    private int updateHat(int axis, int value) {
+        if (lastRawAxes[axis] == value) {
+            return 0;
+        }
+        lastRawAxes[axis] = value;
+        axisValues[axis] = value;
+        return 1 << axis;
+    }
+
+    /**
+     * Pressed buttons as a mask with bit n set for PS4Controller button n
+     */
+    private static int buttonMask(int buttons1, int buttons2, int buttons3) {
+        int mask = 0;
+        if ((buttons1 & 0x10) != 0) mask |= 1 << PS4Controller.BUTTON_SQUARE;
+        if ((buttons1 & 0x20) != 0) mask |= 1 << PS4Controller.BUTTON_CROSS;
+        if ((buttons1 & 0x40) != 0) mask |= 1 << PS4Controller.BUTTON_CIRCLE;
+        if ((buttons1 & 0x80) != 0) mask |= 1 << PS4Controller.BUTTON_TRIANGLE;
+        if ((buttons2 & 0x01) != 0) mask |= 1 << PS4Controller.BUTTON_L1;
+        if ((buttons2 & 0x02) != 0) mask |= 1 << PS4Controller.BUTTON_R1;
+        if ((buttons2 & 0x04) != 0) mask |= 1 << PS4Controller.BUTTON_L2;
+        if ((buttons2 & 0x08) != 0) mask |= 1 << PS4Controller.BUTTON_R2;
+        if ((buttons2 & 0x10) != 0) mask |= 1 << PS4Controller.BUTTON_SHARE;
+        if ((buttons2 & 0x20) != 0) mask |= 1 << PS4Controller.BUTTON_OPTIONS;
+        if ((buttons2 & 0x40) != 0) mask |= 1 << PS4Controller.BUTTON_L3;
+        if ((buttons2 & 0x80) != 0) mask |= 1 << PS4Controller.BUTTON_R3;
+        if ((buttons3 & 0x01) != 0) mask |= 1 << PS4Controller.BUTTON_PS;
+        if ((buttons3 & 0x02) != 0) mask |= 1 << PS4Controller.BUTTON_TOUCHPAD;
+        return mask;
+    }
+
+    /** Number of read calls on the device */
+    public long getReadCalls() {
+        return readCalls;
+    }
+
+    /** Number of input reports parsed */
+    public long getReportsRead() {
+        return reportsRead;
+    }
+
+    /** Number of bytes skipped because they did not start a known report */
+    public long getSkippedBytes() {
+        return skippedBytes;
+    }
+
+    /** Number of device reads dropped because the report was too short for its ID */
+    public long getShortReports() {
+        return shortReports;
+    }
+
+    /**
+     * Decode a captured report stream and log what a listener would receive.
+     * Usage: java LinuxHidrawController <capture file> [--motion]
+     * (--motion also logs every sensor sample).
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            logger.error("Usage: LinuxHidrawController <capture file> [--motion]");
+            return;
+        }
+        boolean logMotion = args.length > 1 && "--motion".equals(args[1]);
+        long[] samples = new long[1];
+        ControllerListener decoder = new ControllerListener() {
+            @Override
+            public void onButtonPressed(int buttonId) {
+                logger.info("Report {}: button {} pressed", samples[0], buttonId);
+            }
+
+            @Override
+            public void onButtonReleased(int buttonId) {
+                logger.info("Report {}: button {} released", samples[0], buttonId);
+            }
+
+            @Override
+            public void onAxisMotion(int axisId, float value) {
+                logger.info("Report {}: axis {} = {}", samples[0], axisId, String.format("%.3f", value));
+            }
+
+            @Override
+            public void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+                samples[0]++;
+                if (logMotion) {
+                    logger.info("Report {}: gyro {} {} {} deg/s, accel {} {} {} g", samples[0],
+                        String.format("%.1f", gyro[0]), String.format("%.1f", gyro[1]),
+                        String.format("%.1f", gyro[2]), String.format("%.3f", accel[0]),
+                        String.format("%.3f", accel[1]), String.format("%.3f", accel[2]));
+                }
+            }
+
+            @Override
+            public void onControllerDisconnected() {
+            }
+        };
+
+        LinuxHidrawController controller = new LinuxHidrawController(args[0], decoder);
+        try (FileChannel ch = FileChannel.open(Paths.get(args[0]), StandardOpenOption.READ)) {
+            while (controller.readBatch(ch)) {
+                // Decode to the end of the capture
+            }
+        }
+        logger.info("{} reports, {} motion samples, {} bytes skipped",
+            controller.getReportsRead(), samples[0], controller.getSkippedBytes());
+    }
+}
@@ -3,12 +3,17 @@ package org.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.io.*;
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
 import java.nio.file.*;
+import java.util.Collections;
 import java.util.List;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * Linux-native PS4 controller reader using /dev/input/js* (joystick interface).
@@ -20,8 +25,13 @@ import java.util.stream.Collectors;
  *   1 byte:  number           - button/axis index
  *
  * This avoids JInput entirely and works on ARM64 (Raspberry Pi 5).
+ *
+ * Events are read in batches through a FileChannel: one read returns every
+ * event the driver has queued, and within a batch only the last value of each
+ * axis is passed on. Closing the channel unblocks a pending read, so stop()
+ * returns promptly.
  */
-public class LinuxPS4Controller {
+public class LinuxPS4Controller implements ControllerBackend {
 
     private static final Logger logger = LoggerFactory.getLogger(LinuxPS4Controller.class);
 
@@ -37,101 +47,249 @@ public class LinuxPS4Controller {
     private static final int AXIS_L2      = 2;
     private static final int AXIS_R2      = 5;
 
+    private static final int EVENT_SIZE = 8;
+
+    // Events read per syscall at most; the driver queues up to 64
+    private static final int DEFAULT_BATCH_EVENTS = 64;
+
+    // How long stop() waits for the reader thread to exit
+    private static final long STOP_TIMEOUT_MS = 500;
+
+    private static final int AXIS_COUNT = PS4Controller.AXIS_COUNT;
+
     private final String devicePath;
     private final ControllerListener listener;
     private volatile boolean running = false;
     private Thread readerThread;
+    private volatile FileChannel channel;
+    private volatile ResponseCurve responseCurve = ControlConfig.current().getResponseCurve();
+
+    // Reused for every read; js_event fields are in host (little-endian) order
+    private final ByteBuffer buffer;
+
+    // Latest value of each axis seen in the current batch, not yet dispatched
+    private final boolean[] axisPending = new boolean[AXIS_COUNT];
+    private final short[] axisValues = new short[AXIS_COUNT];
+    private final long[] axisTimestampsMs = new long[AXIS_COUNT];
+
+    // Counters, written by the reader thread only
+    private volatile long readCalls = 0;
+    private volatile long eventsRead = 0;
+    private volatile long callbacks = 0;
+    private volatile long coalescedAxisEvents = 0;
+
+    // Smallest observed (read time - kernel timestamp). The two clocks have different
+    // origins, so this minimum stands in for "zero delay" when estimating input latency.
+    private long minClockOffsetNanos = Long.MAX_VALUE;
+    private static final long CLOCK_RESYNC_NANOS = 10_000_000_000L;
 
     public LinuxPS4Controller(String devicePath, ControllerListener listener) {
+        this(devicePath, listener, DEFAULT_BATCH_EVENTS);
+    }
+
+    /**
+     * @param batchEvents Most events taken per read; 1 reads one event per syscall
+     */
+    LinuxPS4Controller(String devicePath, ControllerListener listener, int batchEvents) {
         this.devicePath = devicePath;
         this.listener = listener;
+        this.buffer = ByteBuffer.allocateDirect(batchEvents * EVENT_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+    }
+
+    @Override
+    public void setResponseCurve(ResponseCurve curve) {
+        this.responseCurve = curve;
     }
 
     /** Find first available /dev/input/js* device. Returns null if none found. */
     public static String findDevice() {
-        try {
-            List<Path> devices = Files.list(Paths.get("/dev/input"))
+        List<String> devices = findDevices();
+        return devices.isEmpty() ? null : devices.get(0);
+    }
+
+    /** Every /dev/input/js* device, in name order */
+    public static List<String> findDevices() {
+        try (Stream<Path> entries = Files.list(Paths.get("/dev/input"))) {
+            return entries
                     .filter(p -> p.getFileName().toString().startsWith("js"))
                     .sorted()
+                    .map(Path::toString)
                     .collect(Collectors.toList());
-            if (!devices.isEmpty()) {
-                return devices.get(0).toString();
-            }
         } catch (IOException e) {
             logger.warn("Could not list /dev/input: {}", e.getMessage());
         }
-        return null;
+        return Collections.emptyList();
     }
 
+    @Override
     public void start() {
         if (running) return;
         running = true;
         readerThread = new Thread(this::readLoop);
-        readerThread.setName("LinuxPS4-Reader");
+        readerThread.setName("LinuxPS4-Reader-" + Paths.get(devicePath).getFileName());
         readerThread.setDaemon(true);
         readerThread.start();
         logger.info("LinuxPS4Controller started on {}", devicePath);
     }
 
+    @Override
     public void stop() {
         running = false;
+        // Closing the channel wakes a read blocked in the kernel
+        FileChannel ch = channel;
+        if (ch != null) {
+            try {
+                ch.close();
+            } catch (IOException e) {
+                logger.debug("Error closing {}: {}", devicePath, e.getMessage());
+            }
+        }
         if (readerThread != null) {
             readerThread.interrupt();
+            try {
+                readerThread.join(STOP_TIMEOUT_MS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
         }
-        logger.info("LinuxPS4Controller stopped");
+        logger.info("LinuxPS4Controller stopped ({} reads, {} events, {} axis updates coalesced)",
+            readCalls, eventsRead, coalescedAxisEvents);
     }
 
     private void readLoop() {
-        try (FileInputStream fis = new FileInputStream(devicePath)) {
-            byte[] buf = new byte[8];
-            ByteBuffer bb = ByteBuffer.wrap(buf).order(ByteOrder.LITTLE_ENDIAN);
-
+        try (FileChannel ch = FileChannel.open(Paths.get(devicePath), StandardOpenOption.READ)) {
+            channel = ch;
             while (running) {
-                int bytesRead = 0;
-                while (bytesRead < 8) {
-                    int r = fis.read(buf, bytesRead, 8 - bytesRead);
-                    if (r == -1) {
-                        logger.warn("Controller device closed");
-                        running = false;
-                        if (listener != null) listener.onControllerDisconnected();
-                        return;
-                    }
-                    bytesRead += r;
+                if (!readBatch(ch)) {
+                    logger.warn("Controller device closed");
+                    running = false;
+                    if (listener != null) listener.onControllerDisconnected();
+                    return;
                 }
+            }
+        } catch (ClosedChannelException e) {
+            // stop() closed the channel
+        } catch (IOException e) {
+            if (running) {
+                logger.error("Error reading from {}: {}", devicePath, e.getMessage());
+                if (listener != null) listener.onControllerDisconnected();
+            }
+        } finally {
+            channel = null;
+        }
+    }
 
-                bb.rewind();
-                /* int timestamp = */ bb.getInt();   // skip timestamp
-                short value  = bb.getShort();
-                byte  type   = bb.get();
-                byte  number = bb.get();
+    /**
+     * Read whatever events the device has (up to the buffer size) with one read
+     * and dispatch them. Axis updates are coalesced so only the last value of each
+     * axis in the batch reaches the listener; buttons are dispatched in order.
+     * @return false at end of stream
+     */
+    boolean readBatch(ReadableByteChannel ch) throws IOException {
+        int r = ch.read(buffer);
+        if (r == -1) {
+            return false;
+        }
+        long readNanos = System.nanoTime();
+        buffer.flip();
 
-                // Strip init flag
-                int eventType = type & ~JS_EVENT_INIT;
+        int events = 0;
+        int coalesced = 0;
+        while (buffer.remaining() >= EVENT_SIZE) {
+            long timestampMs = buffer.getInt() & 0xFFFFFFFFL;
+            short value  = buffer.getShort();
+            byte  type   = buffer.get();
+            byte  number = buffer.get();
+            events++;
 
-                if (eventType == JS_EVENT_BUTTON && listener != null) {
-                    int btn = mapButton(number & 0xFF);
-                    if (btn >= 0) {
-                        if (value != 0) listener.onButtonPressed(btn);
-                        else            listener.onButtonReleased(btn);
-                    }
-                } else if (eventType == JS_EVENT_AXIS && listener != null) {
-                    int axis = mapAxis(number & 0xFF);
-                    if (axis >= 0) {
-                        // Normalise int16 to -1.0 .. 1.0
-                        float norm = value / 32767.0f;
-                        if (Math.abs(norm) < 0.1f) norm = 0.0f; // dead zone
-                        listener.onAxisMotion(axis, norm);
+            // Strip init flag
+            int eventType = type & ~JS_EVENT_INIT;
+
+            if (eventType == JS_EVENT_BUTTON) {
+                int btn = mapButton(number & 0xFF);
+                if (btn >= 0 && listener != null) {
+                    // Keep axis and button callbacks in the order they happened
+                    dispatchAxes(readNanos);
+                    if (value != 0) listener.onButtonPressed(btn);
+                    else            listener.onButtonReleased(btn);
+                    callbacks++;
+                }
+            } else if (eventType == JS_EVENT_AXIS) {
+                int axis = mapAxis(number & 0xFF);
+                if (axis >= 0) {
+                    if (axisPending[axis]) {
+                        coalesced++;
                     }
+                    axisPending[axis] = true;
+                    axisValues[axis] = value;
+                    axisTimestampsMs[axis] = timestampMs;
                 }
             }
-        } catch (IOException e) {
-            if (running) {
-                logger.error("Error reading from {}: {}", devicePath, e.getMessage());
-                if (listener != null) listener.onControllerDisconnected();
+        }
+        dispatchAxes(readNanos);
+
+        // A partial event stays in the buffer for the next read
+        buffer.compact();
+
+        readCalls++;
+        eventsRead += events;
+        EVENTS_READ.add(events);
+        coalescedAxisEvents += coalesced;
+        return true;
+    }
+
+    private void dispatchAxes(long readNanos) {
+        ResponseCurve curve = responseCurve;
+        for (int axis = 0; axis < AXIS_COUNT; axis++) {
+            if (!axisPending[axis]) {
+                continue;
+            }
+            axisPending[axis] = false;
+            // The int16 value indexes the curve directly; triggers stay linear
+            float norm = curve.shapeAxis(axis, axisValues[axis]);
+            long eventNanos = eventTimeNanos(axisTimestampsMs[axis], readNanos);
+            if (listener != null) {
+                listener.onAxisMotion(axis, norm, eventNanos);
+                callbacks++;
             }
         }
     }
 
+    /** Number of read calls on the device */
+    public long getReadCalls() {
+        return readCalls;
+    }
+
+    /** Number of js_event records read */
+    public long getEventsRead() {
+        return eventsRead;
+    }
+
+    /** Number of listener callbacks made */
+    public long getCallbacks() {
+        return callbacks;
+    }
+
+    /** Axis events dropped because a newer value for the same axis was in the same batch */
+    public long getCoalescedAxisEvents() {
+        return coalescedAxisEvents;
+    }
+
+    /**
+     * Estimate when an event happened on the System.nanoTime() scale from its
+     * millisecond kernel timestamp, and record the input stage latency
+     */
+    private long eventTimeNanos(long timestampMs, long readNanos) {
+        long offset = readNanos - timestampMs * 1_000_000L;
+        if (offset < minClockOffsetNanos || offset - minClockOffsetNanos > CLOCK_RESYNC_NANOS) {
+            // First event, a faster read than ever seen, or the 32-bit timestamp wrapped
+            minClockOffsetNanos = offset;
+        }
+        long inputLatency = offset - minClockOffsetNanos;
+        PipelineLatency.INPUT.record(inputLatency);
+        return readNanos - inputLatency;
+    }
+
     /** Map Linux joystick button index -> PS4Controller button constants */
     private int mapButton(int n) {
         switch (n) {
@@ -3,6 +3,14 @@ package org.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
 /**
  * Main entry point for PS4 controller robot control
  */
@@ -12,6 +20,12 @@ public class Main {
     // Default server port for network communication
     private static final int DEFAULT_SERVER_PORT = 5555;
 
+    // How often per-stage latency percentiles are logged
+    private static final long LATENCY_REPORT_SECONDS = 10;
+
+    // Port metrics are served on, unless --no-metrics is given
+    private static final int DEFAULT_METRICS_PORT = 9555;
+
     public static void main(String[] args) {
         logger.info("=== PS4 Controller Robot Control System ===");
         logger.info("Mode: Network-based (Raspberry Pi 5 Compatible)");
@@ -19,7 +33,7 @@ public class Main {
         try {
             // Get server port from arguments or use default
             int serverPort = DEFAULT_SERVER_PORT;
-            if (args.length > 0) {
+            if (args.length > 0 && !args[0].startsWith("--")) {
                 try {
                     serverPort = Integer.parseInt(args[0]);
                     logger.info("Using custom server port: {}", serverPort);
@@ -28,26 +42,159 @@ public class Main {
                 }
             }
 
+            // Send motor commands as UDP datagrams instead of over TCP
+            RobotNetworkServer.MotorTransport motorTransport = RobotNetworkServer.MotorTransport.TCP;
+            // Controller reader, and optionally its device or a recorded event file
+            RobotController.InputBackend inputBackend = RobotController.InputBackend.AUTO;
+            String inputDevice = null;
+            // Record controller input to a log, or drive from a recorded log instead of a controller
+            String recordFile = null;
+            String replayFile = null;
+            double replaySpeed = 1.0;
+            boolean replayRepeat = false;
+            // Extra ports in this process sending the same commands, for robots connected to several
+            List<Integer> standbyPorts = new ArrayList<>();
+            // Tuning values to load, and reload whenever the file changes
+            String configFile = null;
+            // Serve counters for a scraper
+            boolean metricsEnabled = true;
+            int metricsPort = DEFAULT_METRICS_PORT;
+            // One robot per attached gamepad: the robot IDs given, in device order, all
+            // on serverPort; or without IDs, every robot on its own port from serverPort
+            boolean hubMode = false;
+            List<String> hubRobotIds = new ArrayList<>();
+            // Send commands for every robot once to this multicast group
+            InetSocketAddress multicastGroup = null;
+            NetworkInterface multicastInterface = null;
+            // Steer by tilting the controller (needs --input hidraw)
+            boolean tiltSteering = false;
+            for (int i = 0; i < args.length; i++) {
+                if ("--udp".equals(args[i])) {
+                    motorTransport = RobotNetworkServer.MotorTransport.UDP;
+                } else if ("--input".equals(args[i]) && i + 1 < args.length) {
+                    inputBackend = RobotController.InputBackend.valueOf(args[++i].toUpperCase());
+                } else if ("--device".equals(args[i]) && i + 1 < args.length) {
+                    inputDevice = args[++i];
+                } else if ("--record".equals(args[i]) && i + 1 < args.length) {
+                    recordFile = args[++i];
+                } else if ("--replay".equals(args[i]) && i + 1 < args.length) {
+                    replayFile = args[++i];
+                } else if ("--replay-speed".equals(args[i]) && i + 1 < args.length) {
+                    replaySpeed = Double.parseDouble(args[++i]);
+                } else if ("--replay-repeat".equals(args[i])) {
+                    replayRepeat = true;
+                } else if ("--standby-port".equals(args[i]) && i + 1 < args.length) {
+                    standbyPorts.add(Integer.parseInt(args[++i]));
+                } else if ("--config".equals(args[i]) && i + 1 < args.length) {
+                    configFile = args[++i];
+                } else if ("--metrics-port".equals(args[i]) && i + 1 < args.length) {
+                    metricsPort = Integer.parseInt(args[++i]);
+                } else if ("--no-metrics".equals(args[i])) {
+                    metricsEnabled = false;
+                } else if ("--hub".equals(args[i])) {
+                    hubMode = true;
+                } else if ("--robot-ids".equals(args[i]) && i + 1 < args.length) {
+                    hubRobotIds.addAll(Arrays.asList(args[++i].split(",")));
+                } else if ("--multicast".equals(args[i]) && i + 1 < args.length) {
+                    String[] groupPort = args[++i].split(":");
+                    multicastGroup = new InetSocketAddress(groupPort[0], Integer.parseInt(groupPort[1]));
+                } else if ("--multicast-if".equals(args[i]) && i + 1 < args.length) {
+                    multicastInterface = NetworkInterface.getByName(args[++i]);
+                } else if ("--tilt".equals(args[i])) {
+                    tiltSteering = true;
+                }
+            }
+            if (hubMode && (recordFile != null || replayFile != null)) {
+                throw new IllegalArgumentException("--hub cannot be combined with --record or --replay");
+            }
+            if (hubMode && tiltSteering) {
+                throw new IllegalArgumentException("--tilt cannot be combined with --hub");
+            }
+            if (tiltSteering && inputBackend != RobotController.InputBackend.HIDRAW
+                    && (inputDevice == null || !inputDevice.contains("hidraw"))) {
+                logger.warn("Tilt steering needs the motion sensors, which only --input hidraw reads");
+            }
+            if (hubMode && multicastGroup != null) {
+                throw new IllegalArgumentException("--multicast is for commands to every robot, not --hub");
+            }
+
+            ControlConfigWatcher configWatcher = configFile != null
+                ? new ControlConfigWatcher(Paths.get(configFile)) : null;
+            int controlRateHz = ControlConfig.current().getControlRateHz();
+
             logger.info("Initializing...");
 
+            MetricsHttpServer metricsServer = null;
+            if (metricsEnabled) {
+                try {
+                    metricsServer = new MetricsHttpServer(metricsPort);
+                } catch (IOException e) {
+                    logger.warn("Metrics could not be served on port {}: {}", metricsPort, e.getMessage());
+                }
+            }
+
+            if (hubMode) {
+                runHub(serverPort, hubRobotIds, motorTransport, inputBackend, controlRateHz, configWatcher,
+                    metricsServer);
+                return;
+            }
+
             // Create network robot instance (broadcasts to Raspberry Pi)
-            NetworkRobotImpl robot = new NetworkRobotImpl(serverPort);
+            NetworkRobotImpl robot = new NetworkRobotImpl(serverPort, motorTransport);
+            for (int standbyPort : standbyPorts) {
+                robot.addStandbyServer(standbyPort);
+            }
+            if (multicastGroup != null) {
+                robot.getNetworkServer().setMulticastGroup(multicastGroup, multicastInterface);
+            }
             logger.info("Network robot created successfully");
             logger.info("Waiting for Raspberry Pi connections on port {}", serverPort);
 
             // Create robot controller (bridges PS4 controller to robot)
-            RobotController controller = new RobotController(robot);
+            RobotController controller;
+            InputRecorder recorder = null;
+            if (replayFile != null) {
+                controller = RobotController.withoutController(robot, controlRateHz);
+                InputReplay replay = new InputReplay(Paths.get(replayFile), controller, replaySpeed);
+                replay.setRepeat(replayRepeat);
+                controller.setControllerBackend(replay);
+            } else if (recordFile != null) {
+                controller = RobotController.withoutController(robot, controlRateHz);
+                recorder = new InputRecorder(Paths.get(recordFile), controller);
+                controller.setControllerBackend(RobotController.openBackend(inputBackend, inputDevice, recorder));
+            } else {
+                controller = new RobotController(robot, controlRateHz, inputBackend, inputDevice);
+            }
+            if (tiltSteering) {
+                controller.setDriveMode(RobotController.DriveMode.TILT);
+            }
             logger.info("Robot controller created successfully");
 
             // Start the controller
             controller.start();
+            PipelineLatency.startReporter(LATENCY_REPORT_SECONDS);
             logger.info("Controller started - waiting for PS4 controller input");
 
             // Keep the application running
+            InputRecorder openRecorder = recorder;
+            MetricsHttpServer openMetricsServer = metricsServer;
             Runtime.getRuntime().addShutdownHook(new Thread(() -> {
                 logger.info("Shutting down...");
                 controller.stop();
+                if (openRecorder != null) {
+                    try {
+                        openRecorder.close();
+                    } catch (IOException e) {
+                        logger.error("Failed to close input recording", e);
+                    }
+                }
                 robot.shutdown();
+                if (configWatcher != null) {
+                    configWatcher.close();
+                }
+                if (openMetricsServer != null) {
+                    openMetricsServer.stop();
+                }
                 logger.info("Goodbye!");
             }));
 
@@ -58,10 +205,73 @@ public class Main {
             logger.error("Controller initialization failed: {}", e.getMessage());
             logger.info("Make sure your PS4 controller is connected via USB or wireless adapter");
             System.exit(1);
+        } catch (IOException e) {
+            logger.error("Input recording or configuration could not be opened: {}", e.getMessage());
+            System.exit(1);
+        } catch (IllegalArgumentException e) {
+            logger.error("Invalid argument or configuration: {}", e.getMessage());
+            System.exit(1);
         } catch (InterruptedException e) {
             logger.error("Application interrupted", e);
             Thread.currentThread().interrupt();
         }
     }
+
+    /**
+     * Drive one robot from each attached gamepad until the process is stopped.
+     * With robot IDs, the nth gamepad drives the robot registered as the nth ID,
+     * all through one server on firstPort; without, the robot of the nth gamepad
+     * is served on firstPort + n.
+     */
+    private static void runHub(int firstPort, List<String> robotIds,
+                               RobotNetworkServer.MotorTransport motorTransport,
+                               RobotController.InputBackend inputBackend, int controlRateHz,
+                               ControlConfigWatcher configWatcher, MetricsHttpServer metricsServer)
+            throws ControllerException, IOException, InterruptedException {
+        // Robots that own servers are shut down last
+        List<NetworkRobotImpl> robots = new ArrayList<>();
+        NetworkRobotImpl shared = robotIds.isEmpty() ? null : new NetworkRobotImpl(firstPort, motorTransport);
+        InputHub hub = new InputHub(inputBackend, controlRateHz, (index, devicePath) -> {
+            NetworkRobotImpl robot;
+            if (shared == null) {
+                int port = firstPort + index;
+                robot = new NetworkRobotImpl(port, motorTransport);
+                logger.info("Gamepad {} drives the robot on port {}", devicePath, port);
+            } else if (index < robotIds.size()) {
+                robot = shared.forTarget(RobotNetworkServer.Target.robot(robotIds.get(index)));
+                logger.info("Gamepad {} drives robot {}", devicePath, robotIds.get(index));
+            } else {
+                throw new IllegalArgumentException("No robot ID for gamepad " + devicePath);
+            }
+            robots.add(robot);
+            return robot;
+        });
+        if (shared != null) {
+            robots.add(shared);
+        }
+
+        hub.start();
+        PipelineLatency.startReporter(LATENCY_REPORT_SECONDS);
+        hub.startReporter(LATENCY_REPORT_SECONDS);
+        logger.info("Input hub started - waiting for input from {} gamepad(s)", hub.getDevices().size());
+
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            logger.info("Shutting down...");
+            hub.stop();
+            for (NetworkRobotImpl robot : robots) {
+                robot.shutdown();
+            }
+            if (configWatcher != null) {
+                configWatcher.close();
+            }
+            if (metricsServer != null) {
+                metricsServer.stop();
+            }
+            logger.info("Goodbye!");
+        }));
+
+        // Wait indefinitely
+        Thread.currentThread().join();
+    }
 }
 
@@ -0,0 +1,203 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Process-wide registry of counters and gauges.
+ *
+ * Counters and up/down gauges are LongAdders: an update from one thread is a
+ * single uncontended add, and threads that do contend are spread over separate
+ * cells instead of retrying on one. Values are only summed when read. Metrics
+ * are created once, usually in a static field, and looked up by name: asking
+ * for an existing name returns the same metric, so several instances of a class
+ * (a primary and a standby server, say) add to one total.
+ *
+ * Every metric is registered as a JMX MBean named org.example:type=Metrics,name=...
+ * and appears in scrape(), which MetricsHttpServer serves.
+ */
+public final class Metrics {
+    private static final Logger logger = LoggerFactory.getLogger(Metrics.class);
+
+    private static final String JMX_DOMAIN = "org.example";
+
+    // Sorted by name so scrapes list metrics in a stable order
+    private static final Map<String, Metric> metrics = new ConcurrentSkipListMap<>();
+
+    private Metrics() {
+    }
+
+    /**
+     * Attributes every metric exposes over JMX
+     */
+    public interface MetricMBean {
+        long getValue();
+
+        String getType();
+
+        String getHelp();
+    }
+
+    /**
+     * A named value with a help line, as listed in a scrape
+     */
+    public abstract static class Metric implements MetricMBean {
+        private final String name;
+        private final String help;
+
+        Metric(String name, String help) {
+            this.name = name;
+            this.help = help;
+        }
+
+        public String getName() {
+            return name;
+        }
+
+        @Override
+        public String getHelp() {
+            return help;
+        }
+    }
+
+    /**
+     * A value that only goes up
+     */
+    public static final class Counter extends Metric {
+        private final LongAdder value = new LongAdder();
+
+        Counter(String name, String help) {
+            super(name, help);
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        public long getValue() {
+            return value.sum();
+        }
+
+        @Override
+        public String getType() {
+            return "counter";
+        }
+    }
+
+    /**
+     * A value that goes up and down, either kept here or read from a supplier
+     */
+    public static final class Gauge extends Metric {
+        private final LongAdder value = new LongAdder();
+        private final LongSupplier supplier;
+
+        Gauge(String name, String help, LongSupplier supplier) {
+            super(name, help);
+            this.supplier = supplier;
+        }
+
+        public void increment() {
+            value.increment();
+        }
+
+        public void decrement() {
+            value.decrement();
+        }
+
+        public void add(long amount) {
+            value.add(amount);
+        }
+
+        @Override
+        public long getValue() {
+            return supplier != null ? supplier.getAsLong() : value.sum();
+        }
+
+        @Override
+        public String getType() {
+            return "gauge";
+        }
+    }
+
+    /**
+     * The counter with this name, created on first use
+     */
+    public static Counter counter(String name, String help) {
+        return register(name, Counter.class, () -> new Counter(name, help));
+    }
+
+    /**
+     * The up/down gauge with this name, created on first use
+     */
+    public static Gauge gauge(String name, String help) {
+        return register(name, Gauge.class, () -> new Gauge(name, help, null));
+    }
+
+    /**
+     * A gauge read from the supplier at scrape time. The first registration of
+     * a name wins; later ones return it unchanged.
+     */
+    public static Gauge gauge(String name, String help, LongSupplier supplier) {
+        return register(name, Gauge.class, () -> new Gauge(name, help, supplier));
+    }
+
+    /**
+     * All metrics in the text exposition format: a HELP and TYPE line, then the
+     * value, for each metric in name order
+     */
+    public static String scrape() {
+        StringBuilder out = new StringBuilder(metrics.size() * 128);
+        for (Metric metric : metrics.values()) {
+            out.append("# HELP ").append(metric.getName()).append(' ').append(metric.getHelp()).append('\n');
+            out.append("# TYPE ").append(metric.getName()).append(' ').append(metric.getType()).append('\n');
+            out.append(metric.getName()).append(' ').append(metric.getValue()).append('\n');
+        }
+        return out.toString();
+    }
+
+    private static <T extends Metric> T register(String name, Class<T> type, Supplier<T> factory) {
+        Metric existing;
+        synchronized (metrics) {
+            existing = metrics.get(name);
+            if (existing == null) {
+                T created = factory.get();
+                registerMBean(created);
+                metrics.put(name, created);
+                return created;
+            }
+        }
+        if (!type.isInstance(existing)) {
+            throw new IllegalArgumentException("Metric " + name + " is a " + existing.getType());
+        }
+        return type.cast(existing);
+    }
+
+    private static void registerMBean(Metric metric) {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName(JMX_DOMAIN + ":type=Metrics,name=" + metric.getName());
+            if (!server.isRegistered(objectName)) {
+                server.registerMBean(new StandardMBean(metric, MetricMBean.class), objectName);
+            }
+        } catch (JMException e) {
+            // The metric still works and is still scraped; only JMX loses it
+            logger.warn("Could not register metric {} with JMX: {}", metric.getName(), e.getMessage());
+        }
+    }
+}
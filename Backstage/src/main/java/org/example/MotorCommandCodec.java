@@ -0,0 +1,139 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.time.Instant;
+
+/**
+ * Compact binary encoding for motor commands.
+ *
+ * Every frame has the same fixed size and is written in network byte order:
+ *   2 bytes: length of the rest of the frame (always PAYLOAD_SIZE) - uint16
+ *   1 byte:  frame type (TYPE_MOTOR, TYPE_STOP, ...)
+ *   4 bytes: sequence number                                        - int32
+ *   8 bytes: origin timestamp (microseconds since the epoch)        - int64
+ *   2 bytes: left velocity, quantized to -32767 .. 32767            - int16
+ *   2 bytes: right velocity, quantized to -32767 .. 32767           - int16
+ *
+ * The first byte of a frame is always 0x00, so a reader can tell a binary frame
+ * apart from a JSON line (which always starts with '{') by peeking at one byte.
+ */
+public final class MotorCommandCodec {
+
+    public static final byte TYPE_MOTOR = 0x01;
+    /** Stop command; sent reliably (acknowledged) on the UDP transport */
+    public static final byte TYPE_STOP = 0x02;
+    /** Client to server: register or refresh the sender as a UDP peer */
+    public static final byte TYPE_HELLO = 0x03;
+    /** Client to server: acknowledges the reliable frame with the same sequence number */
+    public static final byte TYPE_ACK = 0x04;
+    /** Server to client: heartbeat; the client answers with TYPE_PONG */
+    public static final byte TYPE_PING = 0x05;
+    /** Client to server: echoes the sequence number and timestamp of a TYPE_PING */
+    public static final byte TYPE_PONG = 0x06;
+
+    /** Bytes following the length prefix */
+    public static final int PAYLOAD_SIZE = 1 + 4 + 8 + 2 + 2;
+
+    /** Total bytes on the wire for one frame, including the length prefix */
+    public static final int FRAME_SIZE = 2 + PAYLOAD_SIZE;
+
+    private static final float QUANT_SCALE = 32767.0f;
+
+    // Wall clock (in microseconds) corresponding to System.nanoTime() == 0
+    private static final long EPOCH_MICROS_AT_NANO_ZERO;
+
+    static {
+        Instant now = Instant.now();
+        long nanoTime = System.nanoTime();
+        EPOCH_MICROS_AT_NANO_ZERO = now.getEpochSecond() * 1_000_000L + now.getNano() / 1000 - nanoTime / 1000;
+    }
+
+    private MotorCommandCodec() {
+    }
+
+    /**
+     * Encode one frame at the buffer's current position.
+     * @param dst Destination buffer, needs FRAME_SIZE bytes remaining
+     * @param type Frame type
+     * @param sequence Sequence number
+     * @param timestampMicros Origin timestamp in microseconds since the epoch
+     * @param left Left motor velocity (-1.0 to 1.0)
+     * @param right Right motor velocity (-1.0 to 1.0)
+     */
+    public static void encode(ByteBuffer dst, byte type, int sequence, long timestampMicros,
+                              float left, float right) {
+        dst.putShort((short) PAYLOAD_SIZE);
+        dst.put(type);
+        dst.putInt(sequence);
+        dst.putLong(timestampMicros);
+        dst.putShort(quantize(left));
+        dst.putShort(quantize(right));
+    }
+
+    /**
+     * Decode one frame starting at the buffer's current position into a reusable holder.
+     * @return false (and position unchanged) if the buffer does not yet hold a whole frame
+     * @throws IllegalArgumentException if the length prefix does not describe a known frame
+     */
+    public static boolean decode(ByteBuffer src, Frame frame) {
+        if (src.remaining() < 2) {
+            return false;
+        }
+        int start = src.position();
+        int length = src.getShort(start) & 0xFFFF;
+        if (length != PAYLOAD_SIZE) {
+            throw new IllegalArgumentException("Unexpected frame length " + length);
+        }
+        if (src.remaining() < 2 + length) {
+            return false;
+        }
+        src.position(start + 2);
+        frame.type = src.get();
+        frame.sequence = src.getInt();
+        frame.timestampMicros = src.getLong();
+        frame.left = dequantize(src.getShort());
+        frame.right = dequantize(src.getShort());
+        return true;
+    }
+
+    /**
+     * Convert a velocity to its int16 wire representation, clamping to -1.0 .. 1.0
+     */
+    public static short quantize(float velocity) {
+        float clamped = Math.max(-1.0f, Math.min(1.0f, velocity));
+        return (short) Math.round(clamped * QUANT_SCALE);
+    }
+
+    /**
+     * Convert an int16 wire value back to a velocity
+     */
+    public static float dequantize(short value) {
+        return Math.max(-1.0f, value / QUANT_SCALE);
+    }
+
+    /**
+     * Current wall-clock time in microseconds, used for frame timestamps
+     */
+    public static long currentTimeMicros() {
+        return toTimestampMicros(System.nanoTime());
+    }
+
+    /**
+     * Convert a System.nanoTime() value to a frame timestamp (microseconds since the epoch).
+     * Anchored once at startup, so timestamps are monotonic even if the wall clock steps.
+     */
+    public static long toTimestampMicros(long nanoTime) {
+        return EPOCH_MICROS_AT_NANO_ZERO + nanoTime / 1000;
+    }
+
+    /**
+     * Mutable decode target, reused across frames to avoid allocation
+     */
+    public static final class Frame {
+        public byte type;
+        public int sequence;
+        public long timestampMicros;
+        public float left;
+        public float right;
+    }
+}
@@ -0,0 +1,82 @@
+package org.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Single-slot, lock-free mailbox for the latest left/right velocity pair.
+ *
+ * Both floats are packed into one long (left in the high 32 bits), so a pair is
+ * published and taken as a unit: the motors never get the left speed of one
+ * command with the right speed of another. Publishing replaces a pair that has
+ * not been taken yet, and the taker always gets the newest one. Neither side
+ * ever blocks or allocates.
+ */
+public final class MotorMailbox {
+    /**
+     * Value of an empty slot. Both halves are a NaN with a payload that
+     * Float.floatToIntBits never produces, so no published pair can equal it.
+     */
+    public static final long EMPTY = 0x7fc00001_7fc00001L;
+
+    private final AtomicLong slot = new AtomicLong(EMPTY);
+
+    // Counters
+    private final AtomicLong published = new AtomicLong();
+    private final AtomicLong overwritten = new AtomicLong();
+    private volatile long taken = 0;
+
+    /**
+     * Store a new pair, replacing any pair not yet taken
+     * @return true if an untaken pair was overwritten
+     */
+    public boolean publish(float left, float right) {
+        long previous = slot.getAndSet(pack(left, right));
+        published.incrementAndGet();
+        if (previous != EMPTY) {
+            overwritten.incrementAndGet();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Take the latest pair, leaving the slot empty. Intended for a single taker.
+     * @return The packed pair (see left() and right()), or EMPTY if nothing new was published
+     */
+    public long take() {
+        long value = slot.getAndSet(EMPTY);
+        if (value != EMPTY) {
+            taken++;
+        }
+        return value;
+    }
+
+    static long pack(float left, float right) {
+        return ((long) Float.floatToIntBits(left) << 32) | (Float.floatToIntBits(right) & 0xFFFFFFFFL);
+    }
+
+    /** Left velocity of a packed pair */
+    public static float left(long packed) {
+        return Float.intBitsToFloat((int) (packed >>> 32));
+    }
+
+    /** Right velocity of a packed pair */
+    public static float right(long packed) {
+        return Float.intBitsToFloat((int) packed);
+    }
+
+    public long getPublishedCount() {
+        return published.get();
+    }
+
+    /**
+     * Pairs replaced by a newer one before they were taken
+     */
+    public long getOverwrittenCount() {
+        return overwritten.get();
+    }
+
+    public long getTakenCount() {
+        return taken;
+    }
+}
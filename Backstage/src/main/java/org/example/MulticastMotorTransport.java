@@ -0,0 +1,98 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+
+/**
+ * Sends fleet-wide motor commands once to an IP multicast group instead of once
+ * per robot.
+ *
+ * Each datagram is a 4-byte channel sequence number followed by an ordinary
+ * MotorCommandCodec frame. The channel sequence counts datagrams on this group
+ * only and goes up by one each time, so a robot that sees it jump knows how
+ * many datagrams it missed; the frame's own sequence number orders the command
+ * against those arriving over TCP, as usual. Multicast is fire-and-forget, so
+ * the server still sends stop commands over TCP as well.
+ *
+ * Robots join the group with RaspberryPiMotorClient.setMulticastGroup(). On one
+ * host, use the loopback interface on both sides; loopback delivery is enabled.
+ */
+public class MulticastMotorTransport {
+    private static final Logger logger = LoggerFactory.getLogger(MulticastMotorTransport.class);
+
+    /** Bytes before the frame: the channel sequence number */
+    public static final int HEADER_SIZE = 4;
+    /** Total bytes in one datagram */
+    public static final int DATAGRAM_SIZE = HEADER_SIZE + MotorCommandCodec.FRAME_SIZE;
+
+    // Routers the datagrams may cross; 1 keeps them on the local network
+    private static final int DEFAULT_TTL = 1;
+
+    private static final Metrics.Counter DATAGRAMS_SENT =
+        Metrics.counter("robot_server_multicast_sent_total", "Motor command datagrams sent to the multicast group");
+
+    private final InetSocketAddress group;
+    private final DatagramChannel channel;
+    private final ByteBuffer datagram = ByteBuffer.allocateDirect(DATAGRAM_SIZE);
+    private int channelSequence = 0;
+
+    /**
+     * @param group Multicast address and port to send to
+     * @param networkInterface Interface to send from, or null for the system default
+     */
+    public MulticastMotorTransport(InetSocketAddress group, NetworkInterface networkInterface) throws IOException {
+        if (!group.getAddress().isMulticastAddress()) {
+            throw new IllegalArgumentException(group.getAddress() + " is not a multicast address");
+        }
+        this.group = group;
+        this.channel = DatagramChannel.open(StandardProtocolFamily.INET);
+        if (networkInterface != null) {
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        }
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_TTL, DEFAULT_TTL);
+        channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        logger.info("Sending fleet-wide motor commands to multicast group {}{}", group,
+            networkInterface != null ? " on " + networkInterface.getName() : "");
+    }
+
+    /**
+     * Send one encoded frame to the group. Not thread-safe; the server calls it
+     * under its command lock.
+     * @param frame Frame bytes between position and limit; position is left unchanged
+     */
+    public void send(ByteBuffer frame) {
+        int length = frame.remaining();
+        datagram.clear();
+        datagram.putInt(0, channelSequence++);
+        // Absolute copy: no view of the caller's buffer per command
+        datagram.put(HEADER_SIZE, frame, frame.position(), length);
+        datagram.limit(HEADER_SIZE + length);
+        try {
+            channel.send(datagram, group);
+            DATAGRAMS_SENT.increment();
+        } catch (IOException e) {
+            RobotNetworkServer.SEND_FAILURES.increment();
+            logger.warn("Failed to send to multicast group {}: {}", group, e.getMessage());
+        }
+    }
+
+    public InetSocketAddress getGroup() {
+        return group;
+    }
+
+    public void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            logger.error("Error closing multicast channel", e);
+        }
+    }
+}
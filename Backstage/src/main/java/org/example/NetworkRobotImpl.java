@@ -3,26 +3,180 @@ package org.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
 /**
  * Network-based robot implementation that sends motor commands to Raspberry Pi 5
  * over a TCP network connection
+ *
+ * Commands pass through a CommandSuppressor: velocities are quantized to
+ * COMMAND_RESOLUTION and only changes are sent, with the last command repeated
+ * every KEEPALIVE_INTERVAL_MS while nothing changes. Both follow configuration
+ * reloads.
+ *
+ * Standby servers (addStandbyServer) are extra ports in this process that
+ * receive every command with the same sequence number as the primary, so
+ * robots connected to several of them apply whichever copy arrives first.
+ * This is multi-port fan-out: it rides out a slow or broken connection or
+ * network path to one port, but every port fails together if this process,
+ * its host or a shared interface does.
+ *
+ * A robot sends to a Target: everyone by default, or the robots registered with
+ * one ID or group. forTarget() makes a robot for another target that shares this
+ * one's servers, so many robots can be driven through one port. Sequence numbers
+ * come from one counter for the whole process, so a robot that receives commands
+ * for several targets (itself, its group, everyone) still sees them in order.
  */
 public class NetworkRobotImpl implements Robot {
     private static final Logger logger = LoggerFactory.getLogger(NetworkRobotImpl.class);
 
+    private static final AtomicInteger SEQUENCES = new AtomicInteger();
+
     private RobotNetworkServer networkServer;
+    private final List<RobotNetworkServer> standbyServers;
+    private final RobotNetworkServer.MotorTransport motorTransport;
+    private final RobotNetworkServer.Target target;
+    // False for robots made by forTarget(), which leave the servers to their creator
+    private final boolean ownsServers;
     private boolean connected = false;
     private double currentLeftVelocity = 0;
     private double currentRightVelocity = 0;
 
+    // Guarded by this
+    private final CommandSuppressor suppressor = new CommandSuppressor(
+        ControlConfig.current().getCommandResolution(), ControlConfig.current().getKeepaliveIntervalMs());
+    private final Consumer<ControlConfig.Snapshot> configListener = this::applyConfig;
+    // The robot that started the servers; it runs keepalives for itself and every robot derived from it
+    private final NetworkRobotImpl owner;
+    // Only set on the owner. A timed loop rather than a ScheduledExecutorService, whose
+    // queue allocates a condition node on every wait.
+    private final ControlLoop keepaliveLoop;
+    // Copy-on-write, guarded by this on the owner
+    private volatile NetworkRobotImpl[] keepaliveRobots = new NetworkRobotImpl[0];
+
     /**
      * Create a network robot with server on specified port
      */
     public NetworkRobotImpl(int serverPort) {
+        this(serverPort, RobotNetworkServer.MotorTransport.TCP);
+    }
+
+    /**
+     * Create a network robot with server on specified port, sending motor commands
+     * over the given transport
+     */
+    public NetworkRobotImpl(int serverPort, RobotNetworkServer.MotorTransport motorTransport) {
+        this.motorTransport = motorTransport;
         this.networkServer = new RobotNetworkServer(serverPort);
+        this.networkServer.setMotorTransport(motorTransport);
+        this.standbyServers = new CopyOnWriteArrayList<>();
+        this.target = RobotNetworkServer.Target.ALL;
+        this.ownsServers = true;
         this.connected = true;
-        logger.info("Network Robot initialized on port {}", serverPort);
+        logger.info("Network Robot initialized on port {} ({} motor transport)", serverPort, motorTransport);
         networkServer.start();
+
+        this.owner = this;
+        this.keepaliveLoop = new ControlLoop("NetworkRobot-Keepalive",
+            keepaliveRateHz(ControlConfig.current().getKeepaliveIntervalMs()), this::sendKeepalives);
+        addKeepalive(this);
+        keepaliveLoop.start();
+        ControlConfig.addListener(configListener);
+    }
+
+    private NetworkRobotImpl(NetworkRobotImpl servers, RobotNetworkServer.Target target) {
+        this.motorTransport = servers.motorTransport;
+        this.networkServer = servers.networkServer;
+        this.standbyServers = servers.standbyServers;
+        this.target = target;
+        this.ownsServers = false;
+        this.connected = true;
+        this.owner = servers;
+        this.keepaliveLoop = null;
+        owner.addKeepalive(this);
+        ControlConfig.addListener(configListener);
+        logger.info("Network Robot for {} created", target);
+    }
+
+    /**
+     * A robot that sends to the given target through this robot's primary and
+     * standby servers. It stays usable until this robot is shut down; shutting it
+     * down leaves the servers running.
+     */
+    public NetworkRobotImpl forTarget(RobotNetworkServer.Target target) {
+        return new NetworkRobotImpl(this, target);
+    }
+
+    public RobotNetworkServer.Target getTarget() {
+        return target;
+    }
+
+    /**
+     * The primary server, e.g. to see which robots have registered
+     */
+    public RobotNetworkServer getNetworkServer() {
+        return networkServer;
+    }
+
+    /**
+     * Check four times per keepalive interval, but no more often than every 10 ms
+     */
+    private static int keepaliveRateHz(long keepaliveIntervalMs) {
+        return (int) Math.max(1, 1000 / Math.max(10, keepaliveIntervalMs / 4));
+    }
+
+    private synchronized void addKeepalive(NetworkRobotImpl robot) {
+        NetworkRobotImpl[] robots = Arrays.copyOf(keepaliveRobots, keepaliveRobots.length + 1);
+        robots[robots.length - 1] = robot;
+        keepaliveRobots = robots;
+    }
+
+    private synchronized void removeKeepalive(NetworkRobotImpl robot) {
+        NetworkRobotImpl[] robots = keepaliveRobots;
+        for (int i = 0; i < robots.length; i++) {
+            if (robots[i] == robot) {
+                NetworkRobotImpl[] remaining = new NetworkRobotImpl[robots.length - 1];
+                System.arraycopy(robots, 0, remaining, 0, i);
+                System.arraycopy(robots, i + 1, remaining, i, robots.length - i - 1);
+                keepaliveRobots = remaining;
+                return;
+            }
+        }
+    }
+
+    private void sendKeepalives() {
+        NetworkRobotImpl[] robots = keepaliveRobots;
+        for (int i = 0; i < robots.length; i++) {
+            robots[i].sendKeepalive();
+        }
+    }
+
+    private synchronized void applyConfig(ControlConfig.Snapshot config) {
+        suppressor.configure(config.getCommandResolution(), config.getKeepaliveIntervalMs());
+        if (keepaliveLoop != null) {
+            keepaliveLoop.setRateHz(keepaliveRateHz(config.getKeepaliveIntervalMs()));
+        }
+    }
+
+    /**
+     * Start a standby server on another port of this process that sends the
+     * same commands as the primary. A robot connected to both keeps receiving
+     * commands if its connection to one port fails; it does not survive the
+     * loss of this process or host.
+     */
+    public void addStandbyServer(int serverPort) {
+        if (!ownsServers) {
+            throw new IllegalStateException("Standby servers are added to the robot that owns the servers");
+        }
+        RobotNetworkServer standby = new RobotNetworkServer(serverPort);
+        standby.setMotorTransport(motorTransport);
+        standby.start();
+        standbyServers.add(standby);
+        logger.info("Standby server started on port {}", serverPort);
     }
 
     /**
@@ -34,40 +188,97 @@ public class NetworkRobotImpl implements Robot {
 
     @Override
     public void move(double leftVelocity, double rightVelocity) {
+        move(leftVelocity, rightVelocity, System.nanoTime());
+    }
+
+    @Override
+    public synchronized void move(double leftVelocity, double rightVelocity, long originNanos) {
         currentLeftVelocity = clamp(leftVelocity, -1.0, 1.0);
         currentRightVelocity = clamp(rightVelocity, -1.0, 1.0);
 
-        logger.debug("Move: left={}, right={}",
-            String.format("%.2f", currentLeftVelocity),
-            String.format("%.2f", currentRightVelocity));
+        // Skip the send if the robot already has this command
+        long now = System.nanoTime();
+        if (!suppressor.offer((float) currentLeftVelocity, (float) currentRightVelocity, now)) {
+            return;
+        }
+        PipelineLatency.MAPPING.record(now - originNanos);
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Move: left={}, right={}",
+                String.format("%.2f", currentLeftVelocity),
+                String.format("%.2f", currentRightVelocity));
+        }
 
         // Send motor command over network to Raspberry Pi
+        broadcast(suppressor.getLastLeft(), suppressor.getLastRight(), originNanos);
+    }
+
+    /**
+     * Repeat the last command if nothing has been sent for the keepalive interval
+     */
+    private synchronized void sendKeepalive() {
+        if (suppressor.keepaliveDue(System.nanoTime())) {
+            broadcast(suppressor.getLastLeft(), suppressor.getLastRight(), System.nanoTime());
+        }
+    }
+
+    /**
+     * Send one motor command to the target through the primary and every standby server
+     */
+    private void broadcast(float leftVelocity, float rightVelocity, long originNanos) {
+        int sequence = SEQUENCES.getAndIncrement();
         if (networkServer != null) {
-            networkServer.broadcastMotorCommand(
-                (float) currentLeftVelocity,
-                (float) currentRightVelocity
-            );
+            networkServer.sendMotorCommand(target, sequence, leftVelocity, rightVelocity, originNanos);
+        }
+        // Indexed, so the per-command path allocates no iterator; servers are only ever added
+        for (int i = 0; i < standbyServers.size(); i++) {
+            standbyServers.get(i).sendMotorCommand(target, sequence, leftVelocity, rightVelocity, originNanos);
         }
     }
 
+    /**
+     * Commands sent to the robots, including keepalives
+     */
+    public synchronized long getSentCommandCount() {
+        return suppressor.getSentCount();
+    }
+
+    /**
+     * Commands dropped because the quantized velocities had not changed
+     */
+    public synchronized long getSuppressedCommandCount() {
+        return suppressor.getSuppressedCount();
+    }
+
+    public synchronized long getKeepaliveCount() {
+        return suppressor.getKeepaliveCount();
+    }
+
     @Override
     public void rotate(double angularVelocity) {
         angularVelocity = clamp(angularVelocity, -1.0, 1.0);
-        logger.debug("Rotate: {}", String.format("%.2f", angularVelocity));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Rotate: {}", String.format("%.2f", angularVelocity));
+        }
 
         // Set motors to opposite velocities for rotation
         move(-angularVelocity, angularVelocity);
     }
 
     @Override
-    public void stop() {
+    public synchronized void stop() {
         currentLeftVelocity = 0;
         currentRightVelocity = 0;
+        suppressor.force(0.0f, 0.0f, System.nanoTime());
         logger.info("Robot stopped");
 
         // Send stop command to robot
+        int sequence = SEQUENCES.getAndIncrement();
         if (networkServer != null) {
-            networkServer.broadcastMotorCommand(0.0f, 0.0f);
+            networkServer.sendStop(target, sequence);
+        }
+        for (RobotNetworkServer standby : standbyServers) {
+            standby.sendStop(target, sequence);
         }
     }
 
@@ -102,14 +313,25 @@ public class NetworkRobotImpl implements Robot {
     }
 
     /**
-     * Shutdown the network server
+     * Stop sending, and shut down the network servers if this robot started them
      */
     public void shutdown() {
+        logger.info("Motor commands sent to {}: {}, suppressed: {}, keepalives: {}",
+            target, getSentCommandCount(), getSuppressedCommandCount(), getKeepaliveCount());
+        ControlConfig.removeListener(configListener);
+        connected = false;
+        if (!ownsServers) {
+            owner.removeKeepalive(this);
+            return;
+        }
         logger.info("Shutting down network server");
+        keepaliveLoop.stop();
         if (networkServer != null) {
             networkServer.stop();
         }
-        connected = false;
+        for (RobotNetworkServer standby : standbyServers) {
+            standby.stop();
+        }
     }
 
     /**
@@ -0,0 +1,325 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectableChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+/**
+ * Single-threaded selector loop that services many non-blocking channels.
+ *
+ * Channels are registered with a Handler attachment that is called on this loop's
+ * thread whenever the channel is ready. Other threads hand work to the loop with
+ * execute(); the selector is woken at most once per batch of tasks. Work that
+ * recurs on the hot path uses a ReusableTask, which is queued without allocating,
+ * and a ReusableTimer, which is scheduled without allocating.
+ */
+class NioEventLoop implements Runnable {
+    private static final Logger logger = LoggerFactory.getLogger(NioEventLoop.class);
+
+    // Upper bound on how long the loop sleeps when nothing happens
+    private static final long SELECT_TIMEOUT_MS = 100;
+
+    /**
+     * Callback for a channel registered with the loop
+     */
+    interface Handler {
+        /**
+         * Called on the loop thread when the channel has ready operations
+         */
+        void handleReady(SelectionKey key) throws IOException;
+
+        /**
+         * Called on the loop thread when handleReady throws, with an I/O error
+         * or an unexpected runtime exception
+         */
+        void handleError(Exception e);
+    }
+
+    /**
+     * A task object that is queued again and again without allocating: it links
+     * itself into the loop's queue. It must not be passed to execute() again
+     * until it has started running, which callers ensure with a flag of their own.
+     */
+    abstract static class ReusableTask implements Runnable {
+        private ReusableTask next;
+    }
+
+    /**
+     * A one-shot timer that is scheduled again and again without allocating: it
+     * links itself into the loop's list of timers, which is kept in due order. It
+     * must not be scheduled again until it has started running, which callers
+     * ensure with a flag of their own.
+     */
+    abstract static class ReusableTimer implements Runnable {
+        private ReusableTimer next;
+        private long dueNanos;
+    }
+
+    private final String name;
+    private final Selector selector;
+    private final Queue<Runnable> tasks = new ConcurrentLinkedQueue<>();
+    // Stack of ReusableTasks pushed by other threads, most recent first
+    private final AtomicReference<ReusableTask> reusableTasks = new AtomicReference<>();
+    private final AtomicBoolean wakeupPending = new AtomicBoolean(false);
+    private final List<PeriodicTask> periodicTasks = new ArrayList<>();
+    // One-shot timers, soonest first; only touched on the loop thread
+    private ReusableTimer timers;
+    private volatile boolean running = false;
+    private Thread thread;
+    private final Consumer<SelectionKey> readyAction = this::handleReady;
+
+    NioEventLoop(String name) throws IOException {
+        this.name = name;
+        this.selector = Selector.open();
+    }
+
+    void start() {
+        running = true;
+        thread = new Thread(this);
+        thread.setName(name);
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    /**
+     * Stop the loop and wait for its thread to finish
+     */
+    void stop() {
+        running = false;
+        selector.wakeup();
+        if (thread != null && thread != Thread.currentThread()) {
+            try {
+                thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        try {
+            selector.close();
+        } catch (IOException e) {
+            logger.error("Error closing selector", e);
+        }
+    }
+
+    /**
+     * Run a task on the loop thread
+     */
+    void execute(Runnable task) {
+        tasks.offer(task);
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Run a reusable task on the loop thread, without allocating
+     */
+    void execute(ReusableTask task) {
+        ReusableTask top;
+        do {
+            top = reusableTasks.get();
+            task.next = top;
+        } while (!reusableTasks.compareAndSet(top, task));
+        if (wakeupPending.compareAndSet(false, true)) {
+            selector.wakeup();
+        }
+    }
+
+    /**
+     * Run a task on the loop thread every periodMs milliseconds (best effort, the
+     * loop checks at least every SELECT_TIMEOUT_MS). Must be called before start().
+     */
+    void schedulePeriodic(Runnable task, long periodMs) {
+        periodicTasks.add(new PeriodicTask(task, periodMs));
+    }
+
+    /**
+     * Run a timer once on the loop thread after delayNanos (millisecond precision),
+     * without allocating. Must be called on the loop thread.
+     */
+    void schedule(ReusableTimer timer, long delayNanos) {
+        long due = System.nanoTime() + delayNanos;
+        timer.dueNanos = due;
+        // A loop has a timer per paced client at most, so a linear insert is cheap.
+        // Timers due at the same time run in the order scheduled.
+        if (timers == null || due - timers.dueNanos < 0) {
+            timer.next = timers;
+            timers = timer;
+            return;
+        }
+        ReusableTimer before = timers;
+        while (before.next != null && due - before.next.dueNanos >= 0) {
+            before = before.next;
+        }
+        timer.next = before.next;
+        before.next = timer;
+    }
+
+    /**
+     * True when called from this loop's own thread
+     */
+    boolean inLoop() {
+        return Thread.currentThread() == thread;
+    }
+
+    /**
+     * Register a channel with this loop. Must be called on the loop thread.
+     */
+    SelectionKey register(SelectableChannel channel, int ops, Handler handler) throws IOException {
+        channel.configureBlocking(false);
+        return channel.register(selector, ops, handler);
+    }
+
+    /**
+     * Close a channel registered with this loop and release its socket now. A
+     * registered channel is only really closed when a select pass deregisters
+     * it, so this runs one. Must be called on the loop thread.
+     */
+    void closeNow(SelectableChannel channel) throws IOException {
+        channel.close();
+        selector.selectNow(readyAction);
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            try {
+                // The action form visits ready keys without a selected-key set or iterator
+                selector.select(readyAction, nextSelectTimeout());
+            } catch (IOException e) {
+                logger.error("Selector error in {}", name, e);
+                continue;
+            } catch (ClosedSelectorException e) {
+                break;
+            }
+
+            runTasks();
+            runTimers();
+            runPeriodicTasks();
+        }
+    }
+
+    private void handleReady(SelectionKey key) {
+        Handler handler = (Handler) key.attachment();
+        try {
+            if (key.isValid()) {
+                handler.handleReady(key);
+            }
+        } catch (CancelledKeyException e) {
+            // Channel closed by another thread
+        } catch (IOException e) {
+            handler.handleError(e);
+        } catch (RuntimeException e) {
+            // A bug or bad input in one handler must not end the loop for every channel
+            logger.error("Unexpected error handling a channel in {}", name, e);
+            handler.handleError(e);
+        }
+    }
+
+    private long nextSelectTimeout() {
+        long timeout = SELECT_TIMEOUT_MS;
+        long now = System.nanoTime();
+        // Indexed loops here and below: an iterator per select would be garbage
+        for (int i = 0; i < periodicTasks.size(); i++) {
+            PeriodicTask periodic = periodicTasks.get(i);
+            long untilDue = (periodic.nextRunNanos - now) / 1_000_000L;
+            timeout = Math.min(timeout, Math.max(1, untilDue));
+        }
+        ReusableTimer timer = timers;
+        if (timer != null) {
+            // Round up so the timer is due when the select returns
+            long untilDue = (timer.dueNanos - now + 999_999L) / 1_000_000L;
+            timeout = Math.min(timeout, Math.max(1, untilDue));
+        }
+        return timeout;
+    }
+
+    private void runPeriodicTasks() {
+        long now = System.nanoTime();
+        for (int i = 0; i < periodicTasks.size(); i++) {
+            PeriodicTask periodic = periodicTasks.get(i);
+            if (now - periodic.nextRunNanos >= 0) {
+                periodic.nextRunNanos = now + periodic.periodNanos;
+                try {
+                    periodic.task.run();
+                } catch (RuntimeException e) {
+                    logger.error("Periodic task failed in {}", name, e);
+                }
+            }
+        }
+    }
+
+    private void runTimers() {
+        long now = System.nanoTime();
+        ReusableTimer timer;
+        while ((timer = timers) != null && now - timer.dueNanos >= 0) {
+            // Unlink first: once running, the timer may be scheduled again
+            timers = timer.next;
+            timer.next = null;
+            try {
+                timer.run();
+            } catch (RuntimeException e) {
+                logger.error("Timer failed in {}", name, e);
+            }
+        }
+    }
+
+    private void runTasks() {
+        wakeupPending.set(false);
+
+        // Take the whole stack and reverse it, so tasks run in the order queued
+        ReusableTask batch = reusableTasks.getAndSet(null);
+        ReusableTask ordered = null;
+        while (batch != null) {
+            ReusableTask following = batch.next;
+            batch.next = ordered;
+            ordered = batch;
+            batch = following;
+        }
+        while (ordered != null) {
+            // Read the link first: once running, the task may be queued again
+            ReusableTask following = ordered.next;
+            ordered.next = null;
+            runTask(ordered);
+            ordered = following;
+        }
+
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            runTask(task);
+        }
+    }
+
+    private void runTask(Runnable task) {
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.error("Task failed in {}", name, e);
+        }
+    }
+
+    private static class PeriodicTask {
+        final Runnable task;
+        final long periodNanos;
+        long nextRunNanos;
+
+        PeriodicTask(Runnable task, long periodMs) {
+            this.task = task;
+            this.periodNanos = periodMs * 1_000_000L;
+            this.nextRunNanos = System.nanoTime() + periodNanos;
+        }
+    }
+}
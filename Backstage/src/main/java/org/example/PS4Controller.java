@@ -4,16 +4,24 @@ import net.java.games.input.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.IdentityHashMap;
+import java.util.Map;
+
 /**
  * PS4 Controller interface for robot control.
  * Maps PS4 controller inputs to robot commands.
  */
-public class PS4Controller {
+public class PS4Controller implements ControllerBackend {
     private static final Logger logger = LoggerFactory.getLogger(PS4Controller.class);
     
     private Controller controller;
     private ControllerListener listener;
     private boolean running = false;
+    private volatile ResponseCurve responseCurve = ControlConfig.current().getResponseCurve();
+    // Reused for every poll; only touched on the polling thread
+    private final Event event = new Event();
+    // Button or axis ID of each component, -1 for unmapped ones
+    private final Map<Component, Integer> componentIds = new IdentityHashMap<>();
     
     // PS4 Button mappings
     public static final int BUTTON_CROSS = 0;      // X
@@ -38,11 +46,19 @@ public class PS4Controller {
     public static final int AXIS_RIGHT_STICK_Y = 3;
     public static final int AXIS_L2_TRIGGER = 4;
     public static final int AXIS_R2_TRIGGER = 5;
+    public static final int AXIS_DPAD_X = 6;       // -1 left, 1 right
+    public static final int AXIS_DPAD_Y = 7;       // -1 up, 1 down
+    public static final int AXIS_COUNT = 8;
     
     public PS4Controller(ControllerListener listener) throws ControllerException {
         this.listener = listener;
         initializeController();
     }
+
+    @Override
+    public void setResponseCurve(ResponseCurve curve) {
+        this.responseCurve = curve;
+    }
     
     /**
      * Initialize and find a PS4 controller
@@ -62,6 +78,7 @@ public class PS4Controller {
                 ctrl.getName().toLowerCase().contains("wireless")) {
                 this.controller = ctrl;
                 logger.info("Found PS4 Controller: " + ctrl.getName());
+                mapComponents();
                 return;
             }
         }
@@ -69,11 +86,13 @@ public class PS4Controller {
         // If no PS4 controller found, use first available controller
         this.controller = controllers[0];
         logger.warn("PS4 Controller not found. Using: " + controller.getName());
+        mapComponents();
     }
     
     /**
      * Start polling the controller
      */
+    @Override
     public void start() {
         if (running) {
             logger.warn("Controller already running");
@@ -92,6 +111,7 @@ public class PS4Controller {
     /**
      * Stop polling the controller
      */
+    @Override
     public void stop() {
         running = false;
         logger.info("Stopping PS4 Controller polling...");
@@ -112,7 +132,6 @@ public class PS4Controller {
             }
             
             EventQueue queue = controller.getEventQueue();
-            Event event = new Event();
             
             while (queue.getNextEvent(event)) {
                 handleEvent(event);
@@ -134,106 +153,89 @@ public class PS4Controller {
     private void handleEvent(Event event) {
         Component component = event.getComponent();
         float value = event.getValue();
+        EVENTS_READ.increment();
         
         if (listener == null) {
             return;
         }
         
+        Integer id = componentIds.get(component);
+        if (id == null || id < 0) {
+            return;
+        }
+        
         // Handle buttons
         if (component.isAnalog() == false && value == 1.0f) {
-            handleButtonPress(component);
+            listener.onButtonPressed(id);
         } else if (component.isAnalog() == false && value == 0.0f) {
-            handleButtonRelease(component);
+            listener.onButtonReleased(id);
         }
         
         // Handle axes (analog sticks, triggers)
         if (component.isAnalog()) {
-            handleAxisMotion(component, value);
+            // JInput reports -1.0 .. 1.0; sticks are quantized to the raw range the curve is indexed by
+            listener.onAxisMotion(id, responseCurve.shapeAxis(id, value), System.nanoTime());
         }
     }
     
     /**
-     * Handle button press
+     * Resolve every component of the controller to a button or axis ID once,
+     * so that events are dispatched by identity instead of by matching names
      */
-    private void handleButtonPress(Component component) {
-        String name = component.getName().toLowerCase();
-        
-        if (name.contains("cross") || name.contains("0")) {
-            listener.onButtonPressed(BUTTON_CROSS);
-        } else if (name.contains("circle") || name.contains("1")) {
-            listener.onButtonPressed(BUTTON_CIRCLE);
-        } else if (name.contains("square") || name.contains("2")) {
-            listener.onButtonPressed(BUTTON_SQUARE);
-        } else if (name.contains("triangle") || name.contains("3")) {
-            listener.onButtonPressed(BUTTON_TRIANGLE);
-        } else if (name.contains("l1") || name.contains("lb")) {
-            listener.onButtonPressed(BUTTON_L1);
-        } else if (name.contains("r1") || name.contains("rb")) {
-            listener.onButtonPressed(BUTTON_R1);
-        } else if (name.contains("l2") || name.contains("lt")) {
-            listener.onButtonPressed(BUTTON_L2);
-        } else if (name.contains("r2") || name.contains("rt")) {
-            listener.onButtonPressed(BUTTON_R2);
-        } else if (name.contains("share")) {
-            listener.onButtonPressed(BUTTON_SHARE);
-        } else if (name.contains("options")) {
-            listener.onButtonPressed(BUTTON_OPTIONS);
+    private void mapComponents() {
+        for (Component component : controller.getComponents()) {
+            String name = component.getName().toLowerCase();
+            int id = component.isAnalog() ? axisFor(name) : buttonFor(name);
+            componentIds.put(component, id);
         }
     }
     
     /**
-     * Handle button release
+     * Button ID for a lowercased component name, or -1 if it is not mapped
      */
-    private void handleButtonRelease(Component component) {
-        String name = component.getName().toLowerCase();
-        
+    private static int buttonFor(String name) {
         if (name.contains("cross") || name.contains("0")) {
-            listener.onButtonReleased(BUTTON_CROSS);
+            return BUTTON_CROSS;
         } else if (name.contains("circle") || name.contains("1")) {
-            listener.onButtonReleased(BUTTON_CIRCLE);
+            return BUTTON_CIRCLE;
         } else if (name.contains("square") || name.contains("2")) {
-            listener.onButtonReleased(BUTTON_SQUARE);
+            return BUTTON_SQUARE;
         } else if (name.contains("triangle") || name.contains("3")) {
-            listener.onButtonReleased(BUTTON_TRIANGLE);
+            return BUTTON_TRIANGLE;
         } else if (name.contains("l1") || name.contains("lb")) {
-            listener.onButtonReleased(BUTTON_L1);
+            return BUTTON_L1;
         } else if (name.contains("r1") || name.contains("rb")) {
-            listener.onButtonReleased(BUTTON_R1);
+            return BUTTON_R1;
         } else if (name.contains("l2") || name.contains("lt")) {
-            listener.onButtonReleased(BUTTON_L2);
+            return BUTTON_L2;
         } else if (name.contains("r2") || name.contains("rt")) {
-            listener.onButtonReleased(BUTTON_R2);
+            return BUTTON_R2;
         } else if (name.contains("share")) {
-            listener.onButtonReleased(BUTTON_SHARE);
+            return BUTTON_SHARE;
         } else if (name.contains("options")) {
-            listener.onButtonReleased(BUTTON_OPTIONS);
+            return BUTTON_OPTIONS;
         }
+        return -1;
     }
     
     /**
-     * Handle analog stick and trigger motion
+     * Axis ID for a lowercased component name, or -1 if it is not mapped
      */
-    private void handleAxisMotion(Component component, float value) {
-        String name = component.getName().toLowerCase();
-        
-        // Ignore dead zone
-        if (Math.abs(value) < 0.1f) {
-            value = 0;
-        }
-        
+    private static int axisFor(String name) {
         if (name.contains("x") && name.contains("left")) {
-            listener.onAxisMotion(AXIS_LEFT_STICK_X, value);
+            return AXIS_LEFT_STICK_X;
         } else if (name.contains("y") && name.contains("left")) {
-            listener.onAxisMotion(AXIS_LEFT_STICK_Y, value);
+            return AXIS_LEFT_STICK_Y;
         } else if (name.contains("x") && name.contains("right")) {
-            listener.onAxisMotion(AXIS_RIGHT_STICK_X, value);
+            return AXIS_RIGHT_STICK_X;
         } else if (name.contains("y") && name.contains("right")) {
-            listener.onAxisMotion(AXIS_RIGHT_STICK_Y, value);
+            return AXIS_RIGHT_STICK_Y;
         } else if (name.contains("z") || (name.contains("trigger") && name.contains("left"))) {
-            listener.onAxisMotion(AXIS_L2_TRIGGER, value);
+            return AXIS_L2_TRIGGER;
         } else if (name.contains("rz") || (name.contains("trigger") && name.contains("right"))) {
-            listener.onAxisMotion(AXIS_R2_TRIGGER, value);
+            return AXIS_R2_TRIGGER;
         }
+        return -1;
     }
     
     /**
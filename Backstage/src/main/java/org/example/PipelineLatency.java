@@ -0,0 +1,69 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage latency histograms for the input-to-actuation pipeline.
+ *
+ * Each command carries the System.nanoTime() at which its input event happened.
+ * On the Backstage host that origin is passed through RobotController,
+ * NetworkRobotImpl and RobotNetworkServer; on the wire it becomes a wall-clock
+ * timestamp in microseconds (MotorCommandCodec.toTimestampMicros), which the Pi
+ * compares with its own clock.
+ *
+ * Host stages: INPUT (kernel event to read), MAPPING (read to NetworkRobotImpl
+ * sending the command, including waiting for the control tick), SERIALIZATION
+ * (encoding the broadcast) and SEND (encoded to written to the socket).
+ * Pi stages: TRANSIT (origin to received; minus the host stages this is the
+ * network time, and it needs NTP-synchronised clocks), ACTUATION (received to
+ * motors updated: the wait in the mailbox for the actuator tick plus the motor
+ * writes) and END_TO_END (origin to motors updated).
+ */
+public final class PipelineLatency {
+    private static final Logger logger = LoggerFactory.getLogger(PipelineLatency.class);
+
+    public static final LatencyHistogram INPUT = new LatencyHistogram("input");
+    public static final LatencyHistogram MAPPING = new LatencyHistogram("mapping");
+    public static final LatencyHistogram SERIALIZATION = new LatencyHistogram("serialization");
+    public static final LatencyHistogram SEND = new LatencyHistogram("send");
+    public static final LatencyHistogram TRANSIT = new LatencyHistogram("transit");
+    public static final LatencyHistogram ACTUATION = new LatencyHistogram("actuation");
+    public static final LatencyHistogram END_TO_END = new LatencyHistogram("end-to-end");
+
+    private static final LatencyHistogram[] STAGES = {
+        INPUT, MAPPING, SERIALIZATION, SEND, TRANSIT, ACTUATION, END_TO_END
+    };
+
+    private PipelineLatency() {
+    }
+
+    /**
+     * Log p50/p99/p999 of every stage with samples, then start a fresh window
+     */
+    public static void report() {
+        for (LatencyHistogram stage : STAGES) {
+            if (stage.getCount() > 0) {
+                logger.info("Latency {}", stage.summary());
+                stage.reset();
+            }
+        }
+    }
+
+    /**
+     * Report on a daemon thread every periodSeconds
+     */
+    public static ScheduledExecutorService startReporter(long periodSeconds) {
+        ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "PipelineLatency-Reporter");
+            t.setDaemon(true);
+            return t;
+        });
+        executor.scheduleAtFixedRate(PipelineLatency::report, periodSeconds, periodSeconds, TimeUnit.SECONDS);
+        return executor;
+    }
+}
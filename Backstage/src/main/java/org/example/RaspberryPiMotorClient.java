@@ -1,6 +1,7 @@
 package org.example;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
 import com.google.gson.JsonSyntaxException;
 import org.slf4j.Logger;
@@ -8,116 +9,934 @@ import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * Raspberry Pi 5 Robot Motor Controller
  * This client connects to the network server and receives motor control commands
  *
  * Run this on the Raspberry Pi with motor control libraries (e.g., Pi4J)
+ *
+ * Reader threads only decode: each accepted command is published to a
+ * MotorMailbox, and a separate actuator thread applies the latest left/right
+ * pair at a fixed rate. A slow motor driver therefore never holds up the
+ * network, and both motors always get speeds from the same command.
+ *
+ * With a robot ID set, every connection registers the ID and the robot's group
+ * tags with the server, which then sends this robot only the commands addressed
+ * to it, its groups or everyone.
+ *
+ * With a multicast group set, the robot also joins it and applies the
+ * fleet-wide commands sent there (see MulticastMotorTransport), counting the
+ * datagrams it missed from gaps in their channel sequence.
  */
 public class RaspberryPiMotorClient {
     private static final Logger logger = LoggerFactory.getLogger(RaspberryPiMotorClient.class);
 
+    // How often per-stage latency percentiles are logged by main()
+    private static final long LATENCY_REPORT_SECONDS = 10;
+
+    // Port main() serves metrics on, unless --no-metrics is given
+    private static final int DEFAULT_METRICS_PORT = 9556;
+
+    // Shared by every client in the process (one per simulated robot in a load test)
+    private static final Metrics.Counter COMMANDS_RECEIVED =
+        Metrics.counter("pi_commands_received_total", "Motor commands accepted from any server");
+    private static final Metrics.Counter COMMANDS_DISCARDED =
+        Metrics.counter("pi_commands_discarded_total", "Stale or duplicate motor commands discarded");
+    private static final Metrics.Counter COMMANDS_APPLIED =
+        Metrics.counter("pi_commands_applied_total", "Motor commands applied to the motors");
+    private static final Metrics.Counter MULTICAST_GAPS =
+        Metrics.counter("pi_multicast_gaps_total", "Multicast datagrams missed, from gaps in the channel sequence");
+    private static final Metrics.Counter RECONNECTS =
+        Metrics.counter("pi_reconnects_total", "Connections re-established after being lost");
+
     private String serverHost;
     private int serverPort;
-    private Socket socket;
-    private BufferedReader reader;
-    private PrintWriter writer;
-    private volatile boolean connected = false;
+    private volatile boolean running = false;
     private MotorController motorController;
 
+    // Reconnection: jittered exponential backoff between attempts, so a fleet
+    // that lost the server together does not reconnect in lockstep
+    private static final long RECONNECT_BASE_MS = 50;
+    static final long RECONNECT_MAX_MS = 5000;
+    private static final int CONNECT_TIMEOUT_MS = 1000;
+    // Resolve the server name again after this many failed attempts in a row
+    private static final int RESOLVE_AFTER_FAILURES = 5;
+    // A link that has been pinged and then goes silent this long is considered dead
+    private static final long DEAD_LINK_TIMEOUT_MS = 1500;
+    private static final long WATCHDOG_INTERVAL_MS = 250;
+    private boolean autoReconnect = false;
+    private final List<Thread> linkThreads = new CopyOnWriteArrayList<>();
+    private Thread watchdogThread;
+    private volatile long outageStartNanos = 0;
+    private volatile long lastRecoveryNanos = -1;
+    private volatile long reconnects = 0;
+
+    // One connection per server; the primary comes first
+    private final List<ServerLink> links = new CopyOnWriteArrayList<>();
+    private final ServerLink primary;
+
+    // Optional datagram transport for the motor stream
+    private static final long UDP_HELLO_INTERVAL_MS = 1000;
+    private boolean udpEnabled = false;
+    private DatagramChannel udpChannel;
+    private Selector udpSelector;
+
+    // Optional multicast group carrying fleet-wide commands
+    private InetSocketAddress multicastGroup;
+    private NetworkInterface multicastInterface;
+    private DatagramChannel multicastChannel;
+    private volatile long multicastReceived = 0;
+    private volatile long multicastGaps = 0;
+
+    // Discards motor commands older than the last one applied, whichever server
+    // they came from. Also the lock that orders applying commands.
+    private final SequenceTracker sequenceTracker = new SequenceTracker();
+
+    private final Gson gson = new Gson();
+
+    // Identity announced to every server on connect; null sends no registration
+    private volatile String robotId;
+    private final List<String> groups = new CopyOnWriteArrayList<>();
+
+    // Decoded commands wait here for the actuator thread
+    private final MotorMailbox mailbox = new MotorMailbox();
+    private volatile int actuatorRateHz = ControlConfig.current().getActuatorRateHz();
+    private volatile ControlLoop actuator;
+    // While connected, a configuration reload sets the actuator rate
+    private final Consumer<ControlConfig.Snapshot> configListener =
+        config -> setActuatorRateHz(config.getActuatorRateHz());
+    // Timing of the latest published command, for the latency stages only (a
+    // newer command may have replaced it by the time the pair is applied)
+    private volatile long pendingReceivedNanos;
+    private volatile long pendingTimestampMicros;
+
     public RaspberryPiMotorClient(String serverHost, int serverPort, MotorController motorController) {
         this.serverHost = serverHost;
         this.serverPort = serverPort;
         this.motorController = motorController;
+        this.primary = new ServerLink(serverHost, serverPort);
+        links.add(primary);
+    }
+
+    /**
+     * Receive motor commands as UDP datagrams in addition to the TCP connection.
+     * Must be called before connect(); the server needs MotorTransport.UDP.
+     */
+    public void setUdpEnabled(boolean udpEnabled) {
+        this.udpEnabled = udpEnabled;
     }
 
     /**
-     * Connect to the network server
+     * Join this multicast group for fleet-wide commands. Must be called before
+     * connect(); the server needs the same group set.
+     * @param networkInterface Interface to join on, or null to pick the first
+     *                         multicast-capable one that is up
+     */
+    public void setMulticastGroup(InetSocketAddress group, NetworkInterface networkInterface) {
+        this.multicastGroup = group;
+        this.multicastInterface = networkInterface;
+    }
+
+    /**
+     * Register with this robot ID on every connection, so servers can address
+     * commands to this robot. Must be called before connect().
+     */
+    public void setRobotId(String robotId) {
+        this.robotId = robotId;
+    }
+
+    /**
+     * Also register membership of this group. Must be called before connect().
+     */
+    public void addGroup(String group) {
+        groups.add(group);
+    }
+
+    /**
+     * How often the actuator thread applies the latest command to the motors.
+     * Takes effect immediately when connected; a later configuration reload
+     * replaces it with the file's ACTUATOR_RATE_HZ.
+     */
+    public void setActuatorRateHz(int actuatorRateHz) {
+        if (actuatorRateHz <= 0) {
+            throw new IllegalArgumentException("Actuator rate must be positive: " + actuatorRateHz);
+        }
+        this.actuatorRateHz = actuatorRateHz;
+        ControlLoop loop = actuator;
+        if (loop != null) {
+            loop.setRateHz(actuatorRateHz);
+        }
+    }
+
+    /**
+     * Keep reconnecting to servers whose connection is lost (or could not be
+     * opened), instead of disconnecting once no connection remains. Must be
+     * called before connect().
+     */
+    public void setAutoReconnect(boolean autoReconnect) {
+        this.autoReconnect = autoReconnect;
+    }
+
+    /**
+     * Also connect to a standby server sending the same command stream (with the
+     * same sequence numbers). Every command is applied from whichever connection
+     * delivers it first and the later copies are discarded, so losing one
+     * connection or network path costs no reconnect. The servers must share one
+     * sequence, i.e. be ports of one NetworkRobotImpl; must be called before connect().
+     */
+    public void addStandbyServer(String host, int port) {
+        links.add(new ServerLink(host, port));
+    }
+
+    /**
+     * Connect to the network server and any standby servers. Succeeds if at least
+     * one of them accepts the connection; with auto-reconnect the client keeps
+     * trying the others (or all of them) in the background.
      */
     public void connect() {
-        try {
-            logger.info("Connecting to robot control server at {}:{}", serverHost, serverPort);
-            socket = new Socket(serverHost, serverPort);
-            reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-            writer = new PrintWriter(socket.getOutputStream(), true);
-            connected = true;
+        running = true;
+        sequenceTracker.reset();
+        actuator = new ControlLoop("RaspberryPi-Actuator", actuatorRateHz, this::actuate);
+        actuator.start();
+        ControlConfig.addListener(configListener);
+        for (ServerLink link : links) {
+            try {
+                link.open();
+            } catch (IOException e) {
+                logger.error("Failed to connect to server at {}:{}", link.host, link.port, e);
+            }
+        }
 
-            logger.info("Connected to server");
+        if (!isConnected()) {
+            if (!autoReconnect) {
+                running = false;
+                ControlConfig.removeListener(configListener);
+                actuator.stop();
+                return;
+            }
+            outageStartNanos = System.nanoTime();
+        }
 
-            // Start listening for commands
-            Thread listenerThread = new Thread(this::listenForCommands);
-            listenerThread.setName("RaspberryPi-Listener");
+        if (udpEnabled) {
+            try {
+                startUdpListener();
+            } catch (IOException e) {
+                logger.error("Failed to open UDP listener for {}:{}", serverHost, serverPort, e);
+            }
+        }
+        if (multicastGroup != null) {
+            try {
+                startMulticastListener();
+            } catch (IOException e) {
+                logger.error("Failed to join multicast group {}", multicastGroup, e);
+            }
+        }
+
+        // Start listening for commands, one thread per server
+        for (int i = 0; i < links.size(); i++) {
+            ServerLink link = links.get(i);
+            if (!link.open && !autoReconnect) {
+                continue;
+            }
+            Thread listenerThread = new Thread(() -> superviseLink(link));
+            listenerThread.setName(i == 0 ? "RaspberryPi-Listener" : "RaspberryPi-Listener-" + i);
             listenerThread.setDaemon(false);
+            linkThreads.add(listenerThread);
             listenerThread.start();
+        }
+
+        watchdogThread = new Thread(this::watchLinks);
+        watchdogThread.setName("RaspberryPi-Watchdog");
+        watchdogThread.setDaemon(true);
+        watchdogThread.start();
+    }
+
+    /**
+     * Read commands from one server for as long as the client runs, reconnecting
+     * after the connection is lost if auto-reconnect is on
+     */
+    private void superviseLink(ServerLink link) {
+        int failures = 0;
+        while (running) {
+            if (!link.open) {
+                // Wait a random time up to the backoff ceiling (full jitter), even
+                // before the first attempt
+                try {
+                    Thread.sleep(reconnectDelayMillis(failures));
+                } catch (InterruptedException e) {
+                    break;
+                }
+                if (!running) {
+                    break;
+                }
+                try {
+                    if (failures >= RESOLVE_AFTER_FAILURES && failures % RESOLVE_AFTER_FAILURES == 0) {
+                        link.resolve();
+                    }
+                    link.open();
+                } catch (IOException e) {
+                    failures++;
+                    logger.debug("Reconnect to {}:{} failed ({} attempts): {}",
+                        link.host, link.port, failures, e.getMessage());
+                    continue;
+                }
+                failures = 0;
+                linkRestored(link);
+            }
+
+            listenForCommands(link);
+            if (!running) {
+                break;
+            }
+            linkLost(link);
+            if (!autoReconnect) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Backoff before a reconnect attempt after the given number of failures
+     */
+    static long reconnectDelayMillis(int failures) {
+        long ceiling = Math.min(RECONNECT_MAX_MS, RECONNECT_BASE_MS << Math.min(failures, 16));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
 
+    /**
+     * Listen for incoming motor control commands from one server until the
+     * connection ends. The server may send binary frames (see MotorCommandCodec)
+     * or JSON lines; the first byte of each message tells them apart.
+     */
+    private void listenForCommands(ServerLink link) {
+        try {
+            while (running && link.readCommand(link.input)) {
+                // each call handles one message
+            }
         } catch (IOException e) {
-            logger.error("Failed to connect to server at {}:{}", serverHost, serverPort, e);
-            connected = false;
+            if (running && link.open) {
+                logger.warn("Connection to {}:{} lost: {}", link.host, link.port, e.getMessage());
+            }
         }
     }
 
+    private void linkLost(ServerLink link) {
+        link.close();
+        long remaining = links.stream().filter(l -> l.open).count();
+        if (remaining > 0) {
+            logger.warn("Lost server {}:{}, {} connection(s) remaining", link.host, link.port, remaining);
+            return;
+        }
+        if (!autoReconnect) {
+            disconnect();
+            return;
+        }
+        if (outageStartNanos == 0) {
+            outageStartNanos = System.nanoTime();
+        }
+        logger.warn("Lost server {}:{}, reconnecting", link.host, link.port);
+    }
+
+    private void linkRestored(ServerLink link) {
+        reconnects++;
+        RECONNECTS.increment();
+        if (links.stream().filter(l -> l.open).count() == 1) {
+            // No other server kept the stream going: this is a new session, and the
+            // server may have restarted its sequence numbers
+            sequenceTracker.reset();
+        }
+        logger.info("Reconnected to {}:{}", link.host, link.port);
+    }
+
     /**
-     * Listen for incoming motor control commands
+     * Close links that were receiving heartbeats and went silent, so a dead
+     * connection (e.g. the robot left Wi-Fi range) is noticed without waiting for TCP
      */
-    private void listenForCommands() {
-        Gson gson = new Gson();
-        String line;
+    private void watchLinks() {
+        long timeoutNanos = TimeUnit.MILLISECONDS.toNanos(DEAD_LINK_TIMEOUT_MS);
+        while (running) {
+            try {
+                Thread.sleep(WATCHDOG_INTERVAL_MS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.nanoTime();
+            for (ServerLink link : links) {
+                if (link.open && link.pinged && now - link.lastReceivedNanos > timeoutNanos) {
+                    logger.warn("No data from {}:{} for {} ms, closing the connection",
+                        link.host, link.port, DEAD_LINK_TIMEOUT_MS);
+                    link.close();
+                }
+            }
+        }
+    }
+
+    /**
+     * Read and apply one message from the stream, as the primary server's reader
+     */
+    boolean readCommand(DataInputStream in) throws IOException {
+        return primary.readCommand(in);
+    }
+
+    /**
+     * Open the datagram channel and start the UDP listener thread
+     */
+    private void startUdpListener() throws IOException {
+        udpChannel = DatagramChannel.open();
+        udpChannel.connect(new InetSocketAddress(serverHost, serverPort));
+        udpChannel.configureBlocking(false);
+        udpSelector = Selector.open();
+        udpChannel.register(udpSelector, SelectionKey.OP_READ);
+
+        Thread udpThread = new Thread(this::listenForDatagrams);
+        udpThread.setName("RaspberryPi-UdpListener");
+        udpThread.setDaemon(true);
+        udpThread.start();
+        logger.info("Receiving motor commands over UDP from {}:{}", serverHost, serverPort);
+    }
+
+    /**
+     * Receive motor datagrams, applying only commands newer than the last one applied.
+     * Also sends the periodic hello that keeps this robot registered with the server.
+     */
+    private void listenForDatagrams() {
+        ByteBuffer buffer = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        ByteBuffer reply = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        long nextHelloMillis = 0;
 
         try {
-            while (connected && (line = reader.readLine()) != null) {
+            while (running) {
                 try {
-                    JsonObject command = gson.fromJson(line, JsonObject.class);
-
-                    if (command.has("type") && "motor".equals(command.get("type").getAsString())) {
-                        float leftVelocity = command.get("left").getAsFloat();
-                        float rightVelocity = command.get("right").getAsFloat();
+                    long now = System.currentTimeMillis();
+                    if (now >= nextHelloMillis) {
+                        sendDatagram(reply, MotorCommandCodec.TYPE_HELLO, 0);
+                        nextHelloMillis = now + UDP_HELLO_INTERVAL_MS;
+                    }
 
-                        logger.debug("Motor command received - Left: {}, Right: {}",
-                            String.format("%.2f", leftVelocity),
-                            String.format("%.2f", rightVelocity));
+                    udpSelector.select(UDP_HELLO_INTERVAL_MS);
+                    udpSelector.selectedKeys().clear();
 
-                        // Execute motor command
-                        if (motorController != null) {
-                            motorController.setMotorSpeed(MotorController.LEFT_MOTOR, leftVelocity);
-                            motorController.setMotorSpeed(MotorController.RIGHT_MOTOR, rightVelocity);
+                    buffer.clear();
+                    while (udpChannel.read(buffer) > 0) {
+                        buffer.flip();
+                        try {
+                            if (MotorCommandCodec.decode(buffer, frame)) {
+                                handleDatagram(frame, reply);
+                            }
+                        } catch (IllegalArgumentException e) {
+                            logger.debug("Ignoring malformed datagram: {}", e.getMessage());
                         }
+                        buffer.clear();
                     }
-                } catch (JsonSyntaxException e) {
-                    logger.warn("Invalid JSON received: {}", line);
+                } catch (PortUnreachableException e) {
+                    // Server UDP port not open (yet); keep sending hellos
+                    logger.debug("Server UDP port unreachable");
                 }
             }
         } catch (IOException e) {
-            logger.error("Error listening for commands", e);
-        } finally {
-            disconnect();
+            if (running) {
+                logger.error("Error receiving datagrams", e);
+            }
+        }
+    }
+
+    /**
+     * Join the multicast group and start its listener thread
+     */
+    private void startMulticastListener() throws IOException {
+        NetworkInterface networkInterface = multicastInterface != null
+            ? multicastInterface : defaultMulticastInterface();
+        if (networkInterface == null) {
+            throw new IOException("No multicast-capable network interface is up");
+        }
+        multicastChannel = DatagramChannel.open(StandardProtocolFamily.INET);
+        multicastChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        multicastChannel.bind(new InetSocketAddress(multicastGroup.getPort()));
+        multicastChannel.join(multicastGroup.getAddress(), networkInterface);
+
+        Thread multicastThread = new Thread(this::listenForMulticast);
+        multicastThread.setName("RaspberryPi-MulticastListener");
+        multicastThread.setDaemon(true);
+        multicastThread.start();
+        logger.info("Joined multicast group {} on {}", multicastGroup, networkInterface.getName());
+    }
+
+    private static NetworkInterface defaultMulticastInterface() throws SocketException {
+        for (NetworkInterface candidate : Collections.list(NetworkInterface.getNetworkInterfaces())) {
+            if (candidate.isUp() && candidate.supportsMulticast() && !candidate.isLoopback()) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Receive fleet-wide commands from the multicast group. Each datagram is a
+     * channel sequence number and a frame; a jump in the channel sequence is
+     * counted as missed datagrams, and the frame goes through the same sequence
+     * check as commands from the servers.
+     */
+    private void listenForMulticast() {
+        ByteBuffer buffer = ByteBuffer.allocate(MulticastMotorTransport.DATAGRAM_SIZE);
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        boolean first = true;
+        int expected = 0;
+
+        while (running) {
+            try {
+                buffer.clear();
+                multicastChannel.receive(buffer);
+                buffer.flip();
+                if (buffer.remaining() != MulticastMotorTransport.DATAGRAM_SIZE) {
+                    continue;
+                }
+                int channelSequence = buffer.getInt();
+                if (!MotorCommandCodec.decode(buffer, frame)) {
+                    continue;
+                }
+                int missed = channelSequence - expected;
+                if (!first && missed > 0) {
+                    multicastGaps += missed;
+                    MULTICAST_GAPS.add(missed);
+                    logger.debug("Missed {} multicast datagram(s) before {}", missed, channelSequence);
+                }
+                // A step back (reordering, or a restarted server) just resynchronizes
+                first = false;
+                expected = channelSequence + 1;
+                multicastReceived++;
+
+                if (frame.type == MotorCommandCodec.TYPE_MOTOR || frame.type == MotorCommandCodec.TYPE_STOP) {
+                    applySequenced(null, frame.sequence, frame.left, frame.right, frame.timestampMicros);
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IllegalArgumentException e) {
+                logger.debug("Ignoring malformed multicast datagram: {}", e.getMessage());
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Error receiving multicast datagram", e);
+                }
+            }
         }
     }
 
     /**
-     * Disconnect from the server
+     * Datagrams received from the multicast group
+     */
+    public long getMulticastReceivedCount() {
+        return multicastReceived;
+    }
+
+    /**
+     * Multicast datagrams missed, from gaps in the channel sequence
+     */
+    public long getMulticastGapCount() {
+        return multicastGaps;
+    }
+
+    private void handleDatagram(MotorCommandCodec.Frame frame, ByteBuffer reply) throws IOException {
+        if (frame.type == MotorCommandCodec.TYPE_STOP) {
+            // Acknowledge every copy, even ones already applied, so the server stops retransmitting
+            sendDatagram(reply, MotorCommandCodec.TYPE_ACK, frame.sequence);
+        } else if (frame.type != MotorCommandCodec.TYPE_MOTOR) {
+            return;
+        }
+
+        applySequenced(null, frame.sequence, frame.left, frame.right, frame.timestampMicros);
+    }
+
+    private void sendDatagram(ByteBuffer buffer, byte type, int sequence) throws IOException {
+        buffer.clear();
+        MotorCommandCodec.encode(buffer, type, sequence, MotorCommandCodec.currentTimeMicros(), 0.0f, 0.0f);
+        buffer.flip();
+        udpChannel.write(buffer);
+    }
+
+    /**
+     * Apply a sequenced command unless a copy of it (or a newer command) was
+     * already applied. Accepting and applying happen under one lock so commands
+     * from different connections reach the motors in sequence order.
+     * @param link Connection it arrived on, or null for UDP
+     */
+    private void applySequenced(ServerLink link, int sequence, float leftVelocity, float rightVelocity,
+                                long timestampMicros) {
+        synchronized (sequenceTracker) {
+            if (!sequenceTracker.accept(sequence)) {
+                COMMANDS_DISCARDED.increment();
+                return;
+            }
+            COMMANDS_RECEIVED.increment();
+            if (link != null) {
+                link.firstArrivals++;
+            }
+            applyMotorCommand(leftVelocity, rightVelocity, timestampMicros);
+            noteRecovery();
+        }
+    }
+
+    /**
+     * After an outage, record how long it took until commands flowed again
+     */
+    private void noteRecovery() {
+        long since = outageStartNanos;
+        if (since != 0) {
+            outageStartNanos = 0;
+            lastRecoveryNanos = System.nanoTime() - since;
+            logger.info("Motor commands resumed {} ms after losing the server", lastRecoveryNanos / 1_000_000L);
+        }
+    }
+
+    /**
+     * Hand a decoded motor command to the actuator thread
+     * @param timestampMicros Origin timestamp from the server, or 0 if it sent none
+     */
+    private void applyMotorCommand(float leftVelocity, float rightVelocity, long timestampMicros) {
+        long receivedNanos = System.nanoTime();
+        if (timestampMicros != 0) {
+            PipelineLatency.TRANSIT.record(
+                (MotorCommandCodec.toTimestampMicros(receivedNanos) - timestampMicros) * 1000L);
+        }
+
+        if (logger.isDebugEnabled()) {
+            logger.debug("Motor command received - Left: {}, Right: {}",
+                String.format("%.2f", leftVelocity),
+                String.format("%.2f", rightVelocity));
+        }
+
+        pendingReceivedNanos = receivedNanos;
+        pendingTimestampMicros = timestampMicros;
+        mailbox.publish(leftVelocity, rightVelocity);
+    }
+
+    /**
+     * Apply the latest published command, if there is a new one. Runs on the actuator thread.
+     */
+    private void actuate() {
+        long pair = mailbox.take();
+        if (pair == MotorMailbox.EMPTY) {
+            return;
+        }
+        if (motorController != null) {
+            motorController.setMotorSpeed(MotorController.LEFT_MOTOR, MotorMailbox.left(pair));
+            motorController.setMotorSpeed(MotorController.RIGHT_MOTOR, MotorMailbox.right(pair));
+        }
+        COMMANDS_APPLIED.increment();
+
+        long appliedNanos = System.nanoTime();
+        PipelineLatency.ACTUATION.record(appliedNanos - pendingReceivedNanos);
+        long timestampMicros = pendingTimestampMicros;
+        if (timestampMicros != 0) {
+            PipelineLatency.END_TO_END.record(
+                (MotorCommandCodec.toTimestampMicros(appliedNanos) - timestampMicros) * 1000L);
+        }
+    }
+
+    /**
+     * Disconnect from all servers
      */
     public void disconnect() {
-        connected = false;
+        running = false;
 
-        try {
-            if (reader != null) reader.close();
-            if (writer != null) writer.close();
-            if (socket != null && !socket.isClosed()) {
-                socket.close();
+        for (ServerLink link : links) {
+            link.close();
+        }
+        for (Thread thread : linkThreads) {
+            if (thread != Thread.currentThread()) {
+                thread.interrupt();
             }
+        }
+        if (watchdogThread != null) {
+            watchdogThread.interrupt();
+        }
+        try {
+            if (udpSelector != null) udpSelector.close();
+            if (udpChannel != null) udpChannel.close();
+            if (multicastChannel != null) multicastChannel.close();
         } catch (IOException e) {
             logger.error("Error disconnecting from server", e);
         }
+        ControlConfig.removeListener(configListener);
+        if (actuator != null) {
+            actuator.stop();
+        }
 
-        logger.info("Disconnected from server");
+        logger.info("Disconnected from server ({} commands applied, {} overwritten before the actuator took them)",
+            mailbox.getTakenCount(), mailbox.getOverwrittenCount());
     }
 
     /**
-     * Check if connected to the server
+     * Number of servers currently connected
+     */
+    public int getConnectedServerCount() {
+        return (int) links.stream().filter(link -> link.open).count();
+    }
+
+    /**
+     * For each server (primary first), how many applied commands it delivered first
+     */
+    public long[] getFirstArrivalCounts() {
+        return links.stream().mapToLong(link -> link.firstArrivals).toArray();
+    }
+
+    /**
+     * Number of stale or duplicate motor commands that were discarded, including
+     * the later copies of commands received from several servers
+     */
+    public long getDiscardedCommandCount() {
+        return sequenceTracker.getDiscarded();
+    }
+
+    /**
+     * Commands applied to the motors by the actuator thread
+     */
+    public long getAppliedCommandCount() {
+        return mailbox.getTakenCount();
+    }
+
+    /**
+     * Commands replaced by a newer one before the actuator applied them
+     */
+    public long getOverwrittenCommandCount() {
+        return mailbox.getOverwrittenCount();
+    }
+
+    /**
+     * Check if connected to at least one server
      */
     public boolean isConnected() {
-        return connected;
+        return links.stream().anyMatch(link -> link.open);
+    }
+
+    /**
+     * True from connect() until disconnect(), or until the last connection is lost
+     * when auto-reconnect is off
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Connections re-established after being lost
+     */
+    public long getReconnectCount() {
+        return reconnects;
+    }
+
+    /**
+     * Time from losing the last server connection until a motor command was
+     * applied again, for the most recent outage; -1 if there was none
+     */
+    public long getLastRecoveryMillis() {
+        long recovery = lastRecoveryNanos;
+        return recovery < 0 ? -1 : recovery / 1_000_000L;
+    }
+
+    /**
+     * Connection to one server, with its own reader thread and decode state
+     */
+    private class ServerLink {
+        final String host;
+        final int port;
+        // Resolved once and reused, so reconnecting needs no name lookup
+        private InetSocketAddress address;
+        private Socket socket;
+        private DataInputStream input;
+        private OutputStream output;
+        private PrintWriter writer;
+        private volatile boolean open = false;
+        // Heartbeat tracking for the watchdog
+        private volatile boolean pinged = false;
+        private volatile long lastReceivedNanos;
+
+        // Applied commands this server delivered before any other, written under the apply lock
+        private volatile long firstArrivals = 0;
+
+        // Decode state, reused for every message
+        private final byte[] frameBytes = new byte[MotorCommandCodec.FRAME_SIZE];
+        private final ByteBuffer frameBuffer = ByteBuffer.wrap(frameBytes);
+        private final MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        private byte[] lineBytes = new byte[256];
+        private final byte[] pongBytes = new byte[MotorCommandCodec.FRAME_SIZE];
+        private final ByteBuffer pongBuffer = ByteBuffer.wrap(pongBytes);
+
+        ServerLink(String host, int port) {
+            this.host = host;
+            this.port = port;
+            this.address = new InetSocketAddress(host, port);
+        }
+
+        /**
+         * Look the server name up again, e.g. after its address changed
+         */
+        void resolve() {
+            address = new InetSocketAddress(host, port);
+        }
+
+        void open() throws IOException {
+            if (address.isUnresolved()) {
+                resolve();
+            }
+            logger.info("Connecting to robot control server at {}:{}", host, port);
+            Socket s = new Socket();
+            try {
+                s.setTcpNoDelay(true);
+                s.connect(address, CONNECT_TIMEOUT_MS);
+                input = new DataInputStream(new BufferedInputStream(s.getInputStream()));
+                output = s.getOutputStream();
+                writer = new PrintWriter(output, true);
+            } catch (IOException e) {
+                s.close();
+                throw e;
+            }
+            socket = s;
+            pinged = false;
+            lastReceivedNanos = System.nanoTime();
+            open = true;
+            logger.info("Connected to server {}:{}", host, port);
+            register();
+        }
+
+        /**
+         * Announce the robot ID and groups, if this robot has an ID
+         */
+        private void register() {
+            String id = robotId;
+            if (id == null) {
+                return;
+            }
+            JsonObject registration = new JsonObject();
+            registration.addProperty("type", "register");
+            registration.addProperty("robot", id);
+            JsonArray tags = new JsonArray();
+            for (String group : groups) {
+                tags.add(group);
+            }
+            registration.add("groups", tags);
+            writer.println(gson.toJson(registration));
+        }
+
+        void close() {
+            if (!open) {
+                return;
+            }
+            open = false;
+            try {
+                if (input != null) input.close();
+                if (writer != null) writer.close();
+                if (socket != null && !socket.isClosed()) {
+                    socket.close();
+                }
+            } catch (IOException e) {
+                logger.error("Error disconnecting from server {}:{}", host, port, e);
+            }
+        }
+
+        /**
+         * Read and apply one message from the stream. Heartbeat pings are answered
+         * straight away so the server can measure the link.
+         * @return false at end of stream or on an invalid frame
+         */
+        boolean readCommand(DataInputStream in) throws IOException {
+            int first = in.read();
+            if (first == -1) {
+                return false;
+            }
+            lastReceivedNanos = System.nanoTime();
+            if (first == '{') {
+                // JSON fallback: read the rest of the line
+                lineBytes[0] = (byte) first;
+                int length = 1;
+                int b;
+                while ((b = in.read()) != -1 && b != '\n') {
+                    if (length == lineBytes.length) {
+                        lineBytes = Arrays.copyOf(lineBytes, length * 2);
+                    }
+                    lineBytes[length++] = (byte) b;
+                }
+                handleJsonCommand(new String(lineBytes, 0, length, StandardCharsets.UTF_8));
+                return true;
+            }
+
+            frameBytes[0] = (byte) first;
+            in.readFully(frameBytes, 1, MotorCommandCodec.FRAME_SIZE - 1);
+            frameBuffer.clear();
+            try {
+                MotorCommandCodec.decode(frameBuffer, frame);
+            } catch (IllegalArgumentException e) {
+                logger.error("Invalid frame received, closing connection: {}", e.getMessage());
+                return false;
+            }
+            if (frame.type == MotorCommandCodec.TYPE_PING) {
+                pinged = true;
+                sendPong(frame.sequence, frame.timestampMicros);
+            } else if (frame.type == MotorCommandCodec.TYPE_MOTOR || frame.type == MotorCommandCodec.TYPE_STOP) {
+                applySequenced(this, frame.sequence, frame.left, frame.right, frame.timestampMicros);
+            }
+            return true;
+        }
+
+        /**
+         * Echo a ping's sequence number and timestamp back to the server
+         */
+        private void sendPong(int sequence, long timestampMicros) throws IOException {
+            if (output == null) {
+                return;
+            }
+            pongBuffer.clear();
+            MotorCommandCodec.encode(pongBuffer, MotorCommandCodec.TYPE_PONG, sequence, timestampMicros, 0.0f, 0.0f);
+            output.write(pongBytes, 0, MotorCommandCodec.FRAME_SIZE);
+            output.flush();
+        }
+
+        /**
+         * Handle one JSON line from the server
+         */
+        private void handleJsonCommand(String line) {
+            try {
+                JsonObject command = gson.fromJson(line, JsonObject.class);
+
+                if (command.has("type") && "ping".equals(command.get("type").getAsString())) {
+                    pinged = true;
+                    if (writer != null) {
+                        JsonObject pong = new JsonObject();
+                        pong.addProperty("type", "pong");
+                        pong.add("seq", command.get("seq"));
+                        pong.add("ts", command.get("ts"));
+                        writer.println(gson.toJson(pong));
+                    }
+                } else if (command.has("type") && "motor".equals(command.get("type").getAsString())) {
+                    long timestampMicros = command.has("ts") ? command.get("ts").getAsLong() : 0;
+                    float left = command.get("left").getAsFloat();
+                    float right = command.get("right").getAsFloat();
+                    if (command.has("seq")) {
+                        applySequenced(this, command.get("seq").getAsInt(), left, right, timestampMicros);
+                    } else {
+                        synchronized (sequenceTracker) {
+                            applyMotorCommand(left, right, timestampMicros);
+                            noteRecovery();
+                        }
+                    }
+                }
+            } catch (JsonSyntaxException e) {
+                logger.warn("Invalid JSON received: {}", line);
+            }
+        }
     }
 
     /**
@@ -152,7 +971,9 @@ public class RaspberryPiMotorClient {
 
     /**
      * Example main for testing the Raspberry Pi client
-     * Usage: java RaspberryPiMotorClient <serverHost> <serverPort>
+     * Usage: java RaspberryPiMotorClient <serverHost> <serverPort> [--udp] [--no-reconnect]
+     *        [--actuator-rate HZ] [--config FILE] [--standby host:port ...]
+     *        [--multicast group:port [--multicast-if NAME]]
      */
     public static void main(String[] args) {
         String serverHost = "localhost";
@@ -169,18 +990,91 @@ public class RaspberryPiMotorClient {
             }
         }
 
+        boolean udp = Arrays.asList(args).contains("--udp");
+
         logger.info("=== Raspberry Pi Motor Controller ===");
         logger.info("Connecting to server at {}:{}", serverHost, serverPort);
 
+        // Log per-stage latency percentiles periodically
+        PipelineLatency.startReporter(LATENCY_REPORT_SECONDS);
+
+        // Serve counters for a scraper, unless turned off
+        MetricsHttpServer metricsServer = null;
+        if (!Arrays.asList(args).contains("--no-metrics")) {
+            int metricsPort = DEFAULT_METRICS_PORT;
+            for (int i = 2; i + 1 < args.length; i++) {
+                if ("--metrics-port".equals(args[i])) {
+                    metricsPort = Integer.parseInt(args[++i]);
+                }
+            }
+            try {
+                metricsServer = new MetricsHttpServer(metricsPort);
+            } catch (IOException e) {
+                logger.warn("Metrics could not be served on port {}: {}", metricsPort, e.getMessage());
+            }
+        }
+
         // Create a mock motor controller for demonstration
         MotorController motorController = new MockMotorController();
 
         // Create and connect client
+        // Tuning values, reloaded whenever the file changes
+        ControlConfigWatcher configWatcher = null;
+        for (int i = 2; i + 1 < args.length; i++) {
+            if ("--config".equals(args[i])) {
+                try {
+                    configWatcher = new ControlConfigWatcher(Paths.get(args[++i]));
+                } catch (IOException | IllegalArgumentException e) {
+                    logger.error("Configuration could not be loaded: {}", e.getMessage());
+                    return;
+                }
+            }
+        }
+
         RaspberryPiMotorClient client = new RaspberryPiMotorClient(serverHost, serverPort, motorController);
+        client.setUdpEnabled(udp);
+        client.setAutoReconnect(!Arrays.asList(args).contains("--no-reconnect"));
+        for (int i = 2; i + 1 < args.length; i++) {
+            if ("--actuator-rate".equals(args[i])) {
+                client.setActuatorRateHz(Integer.parseInt(args[++i]));
+            }
+        }
+        try {
+            InetSocketAddress multicastGroup = null;
+            NetworkInterface multicastInterface = null;
+            for (int i = 2; i + 1 < args.length; i++) {
+                if ("--multicast".equals(args[i])) {
+                    String[] groupPort = args[++i].split(":");
+                    multicastGroup = new InetSocketAddress(groupPort[0], Integer.parseInt(groupPort[1]));
+                } else if ("--multicast-if".equals(args[i])) {
+                    multicastInterface = NetworkInterface.getByName(args[++i]);
+                }
+            }
+            if (multicastGroup != null) {
+                client.setMulticastGroup(multicastGroup, multicastInterface);
+            }
+        } catch (SocketException e) {
+            logger.error("Multicast interface could not be found: {}", e.getMessage());
+            return;
+        }
+        for (int i = 2; i + 1 < args.length; i++) {
+            if ("--robot-id".equals(args[i])) {
+                client.setRobotId(args[++i]);
+            } else if ("--group".equals(args[i])) {
+                client.addGroup(args[++i]);
+            }
+        }
+        for (int i = 2; i + 1 < args.length; i++) {
+            if ("--standby".equals(args[i])) {
+                String[] hostPort = args[++i].split(":");
+                client.addStandbyServer(hostPort[0], Integer.parseInt(hostPort[1]));
+                logger.info("Standby server {}:{}", hostPort[0], hostPort[1]);
+            }
+        }
         client.connect();
 
-        // Keep running until disconnected
-        while (client.isConnected()) {
+        // Keep running until disconnected (for good: lost connections are re-established)
+        while (client.isRunning()) {
             try {
                 Thread.sleep(1000);
             } catch (InterruptedException e) {
@@ -190,6 +1084,12 @@ public class RaspberryPiMotorClient {
         }
 
         client.disconnect();
+        if (configWatcher != null) {
+            configWatcher.close();
+        }
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
         logger.info("Motor controller stopped");
     }
 }
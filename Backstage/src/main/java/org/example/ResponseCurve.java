@@ -0,0 +1,148 @@
+package org.example;
+
+/**
+ * Stick shaping compiled into a lookup table indexed by the raw int16 axis value.
+ *
+ * The curve applies, in order: a dead zone (inputs inside it read 0, and the
+ * rest of the travel is rescaled so the output starts from 0 at its edge), an
+ * expo blend between linear and cubic (0 = linear, 1 = fully cubic, for finer
+ * control near the centre), sensitivity with clamping to -1.0 .. 1.0, and a
+ * max speed that scales the result. All of it is evaluated once per raw value
+ * when the curve is built, so shaping an event is a single array read.
+ *
+ * Every input backend shapes its stick axes with a curve (shapeAxis) before
+ * reporting them, so listeners receive values that are ready to use as motor
+ * speeds. Triggers and the D-pad are not sticks: they keep their linear travel.
+ */
+public final class ResponseCurve {
+    /** Raw axis range, as reported by the Linux joystick interface */
+    public static final int RAW_MIN = Short.MIN_VALUE;
+    public static final int RAW_MAX = Short.MAX_VALUE;
+
+    /** Curve built from the ControlConfig defaults */
+    public static final ResponseCurve DEFAULT = new ResponseCurve(
+        ControlConfig.DEAD_ZONE, ControlConfig.SENSITIVITY, ControlConfig.EXPO, ControlConfig.MAX_FORWARD_SPEED);
+
+    private final float deadZone;
+    private final float sensitivity;
+    private final float expo;
+    private final float maxSpeed;
+
+    // Shaped value for every raw value, at index raw - RAW_MIN
+    private final float[] table = new float[RAW_MAX - RAW_MIN + 1];
+
+    /**
+     * @param deadZone Fraction of travel around the centre that reads as 0 (0.0 to 1.0)
+     * @param sensitivity Multiplier applied after the expo curve
+     * @param expo Blend from linear (0.0) to cubic (1.0)
+     * @param maxSpeed Output at full deflection (0.0 to 1.0)
+     */
+    public ResponseCurve(float deadZone, float sensitivity, float expo, float maxSpeed) {
+        if (deadZone < 0 || deadZone >= 1) {
+            throw new IllegalArgumentException("Dead zone must be in [0, 1): " + deadZone);
+        }
+        if (expo < 0 || expo > 1) {
+            throw new IllegalArgumentException("Expo must be in [0, 1]: " + expo);
+        }
+        if (sensitivity < 0 || maxSpeed < 0 || maxSpeed > 1) {
+            throw new IllegalArgumentException("Sensitivity must not be negative and max speed must be in [0, 1]");
+        }
+        this.deadZone = deadZone;
+        this.sensitivity = sensitivity;
+        this.expo = expo;
+        this.maxSpeed = maxSpeed;
+        for (int raw = RAW_MIN; raw <= RAW_MAX; raw++) {
+            table[raw - RAW_MIN] = evaluate(raw / (float) RAW_MAX);
+        }
+    }
+
+    private float evaluate(float value) {
+        float magnitude = Math.min(Math.abs(value), 1.0f);
+        if (magnitude < deadZone) {
+            return 0.0f;
+        }
+        float x = (magnitude - deadZone) / (1.0f - deadZone);
+        x = (1.0f - expo) * x + expo * x * x * x;
+        x = Math.min(x * sensitivity, 1.0f) * maxSpeed;
+        return value < 0 ? -x : x;
+    }
+
+    /**
+     * Shape a raw axis value
+     * @param raw Axis value, RAW_MIN to RAW_MAX
+     */
+    public float shape(int raw) {
+        return table[raw - RAW_MIN];
+    }
+
+    /**
+     * Shape a normalized axis value, quantized to the raw resolution first
+     * @param value Axis value, -1.0 to 1.0
+     */
+    public float shape(float value) {
+        return table[toRaw(value) - RAW_MIN];
+    }
+
+    /**
+     * Whether this PS4Controller axis is shaped: only the four stick axes are
+     */
+    public static boolean isShaped(int axisId) {
+        switch (axisId) {
+            case PS4Controller.AXIS_LEFT_STICK_X:
+            case PS4Controller.AXIS_LEFT_STICK_Y:
+            case PS4Controller.AXIS_RIGHT_STICK_X:
+            case PS4Controller.AXIS_RIGHT_STICK_Y:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Shape a raw value from this PS4Controller axis if it is a stick, else
+     * scale it linearly to -1.0 .. 1.0
+     * @param raw Axis value, RAW_MIN to RAW_MAX
+     */
+    public float shapeAxis(int axisId, int raw) {
+        return isShaped(axisId) ? table[raw - RAW_MIN] : Math.max(-1.0f, raw / (float) RAW_MAX);
+    }
+
+    /**
+     * Shape a normalized value from this PS4Controller axis if it is a stick,
+     * else pass it on clamped to -1.0 .. 1.0
+     */
+    public float shapeAxis(int axisId, float value) {
+        return isShaped(axisId) ? shape(value) : Math.max(-1.0f, Math.min(1.0f, value));
+    }
+
+    /**
+     * Quantize a normalized axis value to the raw int16 range
+     */
+    public static int toRaw(float value) {
+        if (value >= 1.0f) return RAW_MAX;
+        if (value <= -1.0f) return -RAW_MAX;
+        return Math.round(value * RAW_MAX);
+    }
+
+    public float getDeadZone() {
+        return deadZone;
+    }
+
+    public float getSensitivity() {
+        return sensitivity;
+    }
+
+    public float getExpo() {
+        return expo;
+    }
+
+    public float getMaxSpeed() {
+        return maxSpeed;
+    }
+
+    @Override
+    public String toString() {
+        return String.format("ResponseCurve[deadZone=%.2f, sensitivity=%.2f, expo=%.2f, maxSpeed=%.2f]",
+            deadZone, sensitivity, expo, maxSpeed);
+    }
+}
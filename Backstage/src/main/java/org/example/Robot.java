@@ -11,6 +11,16 @@ public interface Robot {
      */
     void move(double leftVelocity, double rightVelocity);
 
+    /**
+     * Move the robot, carrying the time of the input that produced the command
+     * @param leftVelocity Left motor velocity (-1.0 to 1.0)
+     * @param rightVelocity Right motor velocity (-1.0 to 1.0)
+     * @param originNanos When the input happened, on the System.nanoTime() scale
+     */
+    default void move(double leftVelocity, double rightVelocity, long originNanos) {
+        move(leftVelocity, rightVelocity);
+    }
+
     /**
      * Rotate the robot in place
      * @param angularVelocity Rotation speed (-1.0 to 1.0)
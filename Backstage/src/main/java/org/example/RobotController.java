@@ -3,61 +3,243 @@ package org.example;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.util.function.Consumer;
+
 /**
  * Bridges PS4 controller input to robot movement.
  *
- * On Linux (Raspberry Pi) it uses LinuxPS4Controller which reads directly from
- * /dev/input/js* — no JInput native libraries required.
+ * On Linux (Raspberry Pi) it reads the controller directly — no JInput native
+ * libraries required — through LinuxEvdevController (/dev/input/event*) when a
+ * DS4 event device is found, otherwise LinuxPS4Controller (/dev/input/js*).
  * On Windows/macOS it falls back to the JInput-based PS4Controller.
+ * The backend can also be chosen explicitly with InputBackend.
+ *
+ * By default stick events only update the desired motor state, and a ControlLoop
+ * sends exactly one move per tick at ControlConfig.CONTROL_RATE_HZ. Passing a rate
+ * of 0 restores the original behaviour of one move per axis event.
+ *
+ * Axis values arrive already shaped by the backend's ResponseCurve (dead zone,
+ * sensitivity, expo, max speed), so they are used as motor speeds directly.
+ * While started, a configuration reload passes its curve to the backend and its
+ * control rate to the control loop.
+ *
+ * In DriveMode.TILT the robot is steered by tilting the controller instead of
+ * with the sticks: tilting it forward or back sets the speed and tilting it
+ * sideways turns. This needs the motion sensors, which only the hidraw backend
+ * reads, and a control loop: the sensors report up to 1000 times a second, so
+ * each sample only updates a low-pass filtered tilt, and the loop sends it at
+ * the control rate. Options stops the robot and returns to the sticks.
  */
 public class RobotController implements ControllerListener {
     private static final Logger logger = LoggerFactory.getLogger(RobotController.class);
 
     private Robot robot;
 
-    // One of these will be non-null depending on the platform
-    private PS4Controller ps4Controller;
-    private LinuxPS4Controller linuxController;
+    /**
+     * Which controller reader to use
+     */
+    public enum InputBackend {
+        /** evdev if a DS4 event device is found, else js on Linux; JInput elsewhere */
+        AUTO,
+        /** LinuxEvdevController: /dev/input/event*, microsecond timestamps, whole frames */
+        EVDEV,
+        /** LinuxPS4Controller: /dev/input/js*, millisecond timestamps */
+        JOYSTICK,
+        /** PS4Controller: JInput, any OS */
+        JINPUT,
+        /** LinuxHidrawController: /dev/hidraw*, raw DS4 reports with the motion sensors */
+        HIDRAW
+    }
+
+    /**
+     * What drives the motors
+     */
+    public enum DriveMode {
+        /** Left stick Y drives the left motor, right stick Y the right motor */
+        TANK,
+        /** Tilt forward and back for speed, sideways to turn */
+        TILT
+    }
+
+    // Tilt at which a motor reaches full speed, in degrees
+    private static final float TILT_FULL_SPEED_DEGREES = 30.0f;
+    // Time constant of the tilt low-pass filter
+    private static final long TILT_FILTER_NANOS = 50_000_000L;
+
+    // Null when the controller was created without an input device
+    private ControllerBackend controllerBackend;
 
-    // Current velocity states for independent motor control
-    private float currentLeftVelocity = 0.0f;
-    private float currentRightVelocity = 0.0f;
+    // Current velocity states for independent motor control.
+    // Written by the controller thread, read by the control loop.
+    private volatile float currentLeftVelocity = 0.0f;
+    private volatile float currentRightVelocity = 0.0f;
+    // Time of the stick event behind the current state (System.nanoTime() scale)
+    private volatile long lastInputNanos = System.nanoTime();
 
-    // Dead zone threshold for analog sticks
-    private static final float DEAD_ZONE = 0.15f;
+    // Sends one move per tick when enabled; null means send on every stick event
+    private ControlLoop controlLoop;
 
-    // Sensitivity multiplier for stick input
-    private static final float SENSITIVITY = 1.0f;
+    private final Consumer<ControlConfig.Snapshot> configListener = this::applyConfig;
+
+    private volatile DriveMode driveMode = DriveMode.TANK;
+    // Shapes tilt like the backend shapes the sticks
+    private volatile ResponseCurve tiltCurve = ControlConfig.current().getResponseCurve();
+    // Low-pass filtered acceleration, written by the controller thread only
+    private final float[] filteredAccel = new float[3];
+    private long lastMotionNanos = 0;
 
     public RobotController(Robot robot) throws ControllerException {
+        this(robot, ControlConfig.current().getControlRateHz());
+    }
+
+    /**
+     * @param robot Robot to drive
+     * @param controlRateHz Motor commands per second, or 0 to send one on every stick event
+     */
+    public RobotController(Robot robot, int controlRateHz) throws ControllerException {
+        this(robot, controlRateHz, InputBackend.AUTO, null);
+    }
+
+    /**
+     * @param robot Robot to drive
+     * @param controlRateHz Motor commands per second, or 0 to send one on every stick event
+     * @param backend Controller reader to use
+     * @param devicePath Device (or recorded event file) for the Linux backends, or null to search
+     */
+    public RobotController(Robot robot, int controlRateHz, InputBackend backend, String devicePath)
+            throws ControllerException {
+        this(robot, controlRateHz, (ControllerBackend) null);
+        this.controllerBackend = openBackend(backend, devicePath, this);
+    }
+
+    private RobotController(Robot robot, int controlRateHz, ControllerBackend controllerBackend) {
         this.robot = robot;
+        this.controllerBackend = controllerBackend;
+        if (controlRateHz > 0) {
+            this.controlLoop = new ControlLoop("RobotController-Tick", controlRateHz, this::tick);
+        }
+    }
 
-        String os = System.getProperty("os.name", "").toLowerCase();
-        if (os.contains("linux")) {
-            // Use native Linux joystick API — works on ARM64 / Raspberry Pi
-            String device = LinuxPS4Controller.findDevice();
-            if (device == null) {
-                throw new ControllerException(
-                    "No joystick device found under /dev/input/js*. " +
-                    "Make sure your PS4 controller is connected.");
+    /**
+     * Create a controller that is not attached to an input device. Events are fed
+     * by calling the ControllerListener methods directly, e.g. from a benchmark
+     * or a recorded session.
+     */
+    public static RobotController withoutController(Robot robot, int controlRateHz) {
+        return new RobotController(robot, controlRateHz, (ControllerBackend) null);
+    }
+
+    /**
+     * Attach an input source, such as an InputReplay or a backend whose events
+     * pass through an InputRecorder. It is started and stopped with this controller.
+     */
+    public void setControllerBackend(ControllerBackend controllerBackend) {
+        this.controllerBackend = controllerBackend;
+    }
+
+    /**
+     * Shape stick and trigger input with this curve from now on
+     */
+    public void setResponseCurve(ResponseCurve curve) {
+        tiltCurve = curve;
+        if (controllerBackend != null) {
+            controllerBackend.setResponseCurve(curve);
+        }
+    }
+
+    private void applyConfig(ControlConfig.Snapshot config) {
+        setResponseCurve(config.getResponseCurve());
+        if (controlLoop != null && config.getControlRateHz() > 0) {
+            controlLoop.setRateHz(config.getControlRateHz());
+        } else if ((controlLoop != null) != (config.getControlRateHz() > 0)) {
+            logger.warn("Switching between a control loop and per-event sends needs a restart");
+        }
+    }
+
+    /**
+     * Open the requested controller backend, reporting to the given listener
+     */
+    public static ControllerBackend openBackend(InputBackend backend, String devicePath,
+            ControllerListener listener) throws ControllerException {
+        boolean linux = System.getProperty("os.name", "").toLowerCase().contains("linux");
+        if (backend == InputBackend.AUTO) {
+            if (!linux) {
+                backend = InputBackend.JINPUT;
+            } else if (devicePath != null && devicePath.contains("hidraw")) {
+                backend = InputBackend.HIDRAW;
+            } else if (devicePath != null) {
+                backend = devicePath.contains("event") ? InputBackend.EVDEV : InputBackend.JOYSTICK;
+            } else {
+                backend = LinuxEvdevController.findDevice() != null ? InputBackend.EVDEV : InputBackend.JOYSTICK;
             }
-            logger.info("Linux detected — using native joystick device: {}", device);
-            linuxController = new LinuxPS4Controller(device, this);
-        } else {
-            // Windows / macOS — use JInput
-            logger.info("Non-Linux OS detected — using JInput PS4Controller");
-            ps4Controller = new PS4Controller(this);
         }
+
+        switch (backend) {
+            case HIDRAW:
+                String hidrawDevice = devicePath != null ? devicePath : LinuxHidrawController.findDevice();
+                if (hidrawDevice == null) {
+                    throw new ControllerException(
+                        "No PS4 controller hidraw device found under /dev/hidraw*. " +
+                        "Make sure your PS4 controller is connected and readable.");
+                }
+                logger.info("Using hidraw controller device: {}", hidrawDevice);
+                return new LinuxHidrawController(hidrawDevice, listener);
+            case EVDEV:
+                String eventDevice = devicePath != null ? devicePath : LinuxEvdevController.findDevice();
+                if (eventDevice == null) {
+                    throw new ControllerException(
+                        "No PS4 controller event device found under /dev/input/event*. " +
+                        "Make sure your PS4 controller is connected and readable.");
+                }
+                logger.info("Using evdev controller device: {}", eventDevice);
+                return new LinuxEvdevController(eventDevice, listener);
+            case JOYSTICK:
+                // Use native Linux joystick API — works on ARM64 / Raspberry Pi
+                String jsDevice = devicePath != null ? devicePath : LinuxPS4Controller.findDevice();
+                if (jsDevice == null) {
+                    throw new ControllerException(
+                        "No joystick device found under /dev/input/js*. " +
+                        "Make sure your PS4 controller is connected.");
+                }
+                logger.info("Using native joystick device: {}", jsDevice);
+                return new LinuxPS4Controller(jsDevice, listener);
+            default:
+                // Windows / macOS — use JInput
+                logger.info("Using JInput PS4Controller");
+                return new PS4Controller(listener);
+        }
+    }
+
+    /**
+     * Steer with the sticks or by tilting the controller. Tilt steering needs a
+     * control loop and a backend that reads the motion sensors (HIDRAW).
+     */
+    public void setDriveMode(DriveMode mode) {
+        if (mode == DriveMode.TILT && controlLoop == null) {
+            throw new IllegalStateException("Tilt steering needs a control loop (a control rate above 0)");
+        }
+        if (mode != driveMode) {
+            logger.info("Drive mode: {}", mode);
+        }
+        driveMode = mode;
+        currentLeftVelocity = 0.0f;
+        currentRightVelocity = 0.0f;
+    }
+
+    public DriveMode getDriveMode() {
+        return driveMode;
     }
 
     /**
      * Start the controller and robot control
      */
     public void start() {
-        if (linuxController != null) {
-            linuxController.start();
-        } else {
-            ps4Controller.start();
+        ControlConfig.addListener(configListener);
+        if (controlLoop != null) {
+            controlLoop.start();
+        }
+        if (controllerBackend != null) {
+            controllerBackend.start();
         }
         logger.info("Robot controller started");
     }
@@ -66,10 +248,12 @@ public class RobotController implements ControllerListener {
      * Stop the controller and robot control
      */
     public void stop() {
-        if (linuxController != null) {
-            linuxController.stop();
-        } else if (ps4Controller != null) {
-            ps4Controller.stop();
+        ControlConfig.removeListener(configListener);
+        if (controllerBackend != null) {
+            controllerBackend.stop();
+        }
+        if (controlLoop != null) {
+            controlLoop.stop();
         }
         robot.stop();
         logger.info("Robot controller stopped");
@@ -106,7 +290,10 @@ public class RobotController implements ControllerListener {
                 break;
             case PS4Controller.BUTTON_OPTIONS:
                 logger.info("Options pressed - Stopping robot");
-                robot.stop();
+                if (driveMode == DriveMode.TILT) {
+                    setDriveMode(DriveMode.TANK);
+                }
+                stopRobot();
                 break;
         }
     }
@@ -118,30 +305,63 @@ public class RobotController implements ControllerListener {
 
     @Override
     public void onAxisMotion(int axisId, float value) {
-        // Apply dead zone
-        if (Math.abs(value) < DEAD_ZONE) {
-            value = 0;
+        onAxisMotion(axisId, value, System.nanoTime());
+    }
+
+    @Override
+    public void onAxisMotion(int axisId, float value, long timestampNanos) {
+        if (applyAxis(axisId, value, timestampNanos) && controlLoop == null) {
+            robot.move(currentLeftVelocity, currentRightVelocity, timestampNanos);
         }
+    }
 
-        // Apply sensitivity
-        value *= SENSITIVITY;
+    /**
+     * Apply every axis of a report before moving, so both sticks take effect in
+     * the same command
+     */
+    @Override
+    public void onAxisFrame(int changedAxes, float[] values, long timestampNanos) {
+        boolean motorsChanged = false;
+        for (int axis = 0; axis < values.length; axis++) {
+            if ((changedAxes & (1 << axis)) != 0) {
+                motorsChanged |= applyAxis(axis, values[axis], timestampNanos);
+            }
+        }
+        if (motorsChanged && controlLoop == null) {
+            robot.move(currentLeftVelocity, currentRightVelocity, timestampNanos);
+        }
+    }
 
+    /**
+     * Update the held state from one axis
+     * @return true if a motor velocity changed
+     */
+    private boolean applyAxis(int axisId, float value, long timestampNanos) {
+        if (driveMode == DriveMode.TILT
+                && (axisId == PS4Controller.AXIS_LEFT_STICK_Y || axisId == PS4Controller.AXIS_RIGHT_STICK_Y)) {
+            // The sticks do not drive while tilting does
+            return false;
+        }
         switch (axisId) {
             case PS4Controller.AXIS_LEFT_STICK_Y:
                 // Left joystick controls left motor (Y-axis, inverted)
-                handleLeftMotor(-value);
-                break;
+                handleLeftMotor(-value, timestampNanos);
+                return true;
             case PS4Controller.AXIS_RIGHT_STICK_Y:
                 // Right joystick controls right motor (Y-axis, inverted)
-                handleRightMotor(-value);
-                break;
+                handleRightMotor(-value, timestampNanos);
+                return true;
             case PS4Controller.AXIS_LEFT_STICK_X:
                 // Left stick X - can be used for additional control
-                logger.debug("Left stick X: {}", String.format("%.2f", value));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Left stick X: {}", String.format("%.2f", value));
+                }
                 break;
             case PS4Controller.AXIS_RIGHT_STICK_X:
                 // Right stick X - can be used for additional control
-                logger.debug("Right stick X: {}", String.format("%.2f", value));
+                if (logger.isDebugEnabled()) {
+                    logger.debug("Right stick X: {}", String.format("%.2f", value));
+                }
                 break;
             case PS4Controller.AXIS_L2_TRIGGER:
                 // Left trigger
@@ -152,37 +372,99 @@ public class RobotController implements ControllerListener {
                 handleRightTrigger(value);
                 break;
         }
+        return false;
+    }
+
+    /**
+     * In tilt mode, filter the acceleration and turn the resulting tilt into
+     * motor speeds for the next control loop tick
+     */
+    @Override
+    public void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+        if (driveMode != DriveMode.TILT) {
+            lastMotionNanos = 0;
+            return;
+        }
+        if (lastMotionNanos == 0) {
+            System.arraycopy(accel, 0, filteredAccel, 0, 3);
+        } else {
+            long dt = Math.max(0, timestampNanos - lastMotionNanos);
+            float alpha = dt / (float) (TILT_FILTER_NANOS + dt);
+            for (int i = 0; i < 3; i++) {
+                filteredAccel[i] += alpha * (accel[i] - filteredAccel[i]);
+            }
+        }
+        lastMotionNanos = timestampNanos;
+
+        // Lying flat, gravity is along +Y; tilting forward moves it towards -Z, right towards +X
+        double pitch = Math.toDegrees(Math.atan2(-filteredAccel[2], filteredAccel[1]));
+        double roll = Math.toDegrees(Math.atan2(filteredAccel[0], filteredAccel[1]));
+        ResponseCurve curve = tiltCurve;
+        float speed = curve.shape((float) (pitch / TILT_FULL_SPEED_DEGREES));
+        float turn = curve.shape((float) (roll / TILT_FULL_SPEED_DEGREES));
+        currentLeftVelocity = Math.max(-1.0f, Math.min(1.0f, speed + turn));
+        currentRightVelocity = Math.max(-1.0f, Math.min(1.0f, speed - turn));
+        lastInputNanos = timestampNanos;
     }
 
     @Override
     public void onControllerDisconnected() {
         logger.warn("Controller disconnected!");
+        stopRobot();
+    }
+
+    /**
+     * Get the control loop, or null when commands are sent per event
+     */
+    public ControlLoop getControlLoop() {
+        return controlLoop;
+    }
+
+    /**
+     * Stop the robot and hold zero velocity until the sticks move again
+     */
+    private void stopRobot() {
+        currentLeftVelocity = 0.0f;
+        currentRightVelocity = 0.0f;
         robot.stop();
     }
 
+    /**
+     * Control loop tick: send the latest stick state as a single command
+     */
+    private void tick() {
+        robot.move(currentLeftVelocity, currentRightVelocity, lastInputNanos);
+    }
+
     /**
      * Handle left motor control from left joystick Y-axis
      */
-    private void handleLeftMotor(float leftValue) {
-        logger.debug("Left Motor: {}", String.format("%.2f", leftValue));
+    private void handleLeftMotor(float leftValue, long timestampNanos) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Left Motor: {}", String.format("%.2f", leftValue));
+        }
         currentLeftVelocity = leftValue;
-        robot.move(currentLeftVelocity, currentRightVelocity);
+        lastInputNanos = timestampNanos;
     }
 
     /**
      * Handle right motor control from right joystick Y-axis
      */
-    private void handleRightMotor(float rightValue) {
-        logger.debug("Right Motor: {}", String.format("%.2f", rightValue));
+    private void handleRightMotor(float rightValue, long timestampNanos) {
+        if (logger.isDebugEnabled()) {
+            logger.debug("Right Motor: {}", String.format("%.2f", rightValue));
+        }
         currentRightVelocity = rightValue;
-        robot.move(currentLeftVelocity, currentRightVelocity);
+        lastInputNanos = timestampNanos;
     }
 
     /**
      * Handle left trigger
      */
     private void handleLeftTrigger(float value) {
-        logger.debug("Left trigger: {}", String.format("%.2f", value));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Left trigger: {}", String.format("%.2f", value));
+        }
         // Can be used for specific actions like acceleration
     }
 
@@ -190,7 +472,9 @@ public class RobotController implements ControllerListener {
      * Handle right trigger
      */
     private void handleRightTrigger(float value) {
-        logger.debug("Right trigger: {}", String.format("%.2f", value));
+        if (logger.isDebugEnabled()) {
+            logger.debug("Right trigger: {}", String.format("%.2f", value));
+        }
         // Can be used for specific actions like deceleration
     }
 }
@@ -1,35 +1,324 @@
 package org.example;
 
 import com.google.gson.Gson;
+import com.google.gson.JsonArray;
 import com.google.gson.JsonObject;
+import com.google.gson.JsonParseException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.*;
 import java.net.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.Set;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * Network server for broadcasting robot control commands to Raspberry Pi 5
  * Listens for controller input and sends motor commands over TCP
+ *
+ * All sockets are non-blocking and serviced by a small number of selector event
+ * loops (one by default), so the number of robots is not limited by threads.
+ * Broadcasts only queue bytes; the event loops write them out.
+ *
+ * Each client is pinged periodically on the same connection to measure its
+ * round-trip time and heartbeat loss. A client whose link is congested gets
+ * motor commands at a lower rate (always the freshest one) instead of a backlog.
+ *
+ * Robots may register a robot ID and group tags with a JSON line
+ * {"type":"register","robot":"r1","groups":["stage-left"]}. The server keeps a
+ * routing table from each ID and tag to the clients that registered it, so a
+ * command for one robot or one group is a single map lookup and goes only to
+ * those clients (see Target). Commands for everyone go to every client, as do
+ * all commands to robots that never register. Addressed commands always use the
+ * TCP connection; the UDP transport carries only commands for everyone. They
+ * also do not take the server's lock: each target has its own last command and
+ * frame pool, so senders driving different robots never wait on each other.
+ *
+ * Optionally (setMulticastGroup) commands for everyone are sent once to an IP
+ * multicast group instead of to each robot; every robot must then join the
+ * group. Stops are sent over TCP too.
  */
 public class RobotNetworkServer {
     private static final Logger logger = LoggerFactory.getLogger(RobotNetworkServer.class);
 
+    // Pending connections the kernel may queue while the accept loop is busy
+    private static final int ACCEPT_BACKLOG = 1024;
+
+    private static final ClientHandler[] NO_CLIENTS = new ClientHandler[0];
+    private static final String[] NO_GROUPS = new String[0];
+
+    // Shared by every server in the process (primary and standbys)
+    static final Metrics.Gauge CONNECTED_CLIENTS =
+        Metrics.gauge("robot_server_connected_clients", "Robots currently connected");
+    static final Metrics.Counter COMMANDS_SENT =
+        Metrics.counter("robot_server_commands_sent_total", "Motor commands written to robots, per robot");
+    static final Metrics.Counter BYTES_WRITTEN =
+        Metrics.counter("robot_server_bytes_written_total", "Bytes written to robots, TCP and UDP");
+    static final Metrics.Counter SEND_FAILURES =
+        Metrics.counter("robot_server_send_failures_total", "Writes to robots that failed with an I/O error");
+    static final Metrics.Counter MALFORMED_FRAMES =
+        Metrics.counter("robot_server_malformed_frames_total", "Robots disconnected for sending an undecodable frame");
+
     private int port;
-    private ServerSocket serverSocket;
+    private ServerSocketChannel serverChannel;
     private volatile boolean running = false;
-    private ExecutorService executorService;
+    private int eventLoopCount = 1;
+    private NioEventLoop[] eventLoops;
+    private final AtomicInteger nextEventLoop = new AtomicInteger();
     private CopyOnWriteArrayList<ClientHandler> connectedClients;
+    // Array copy of connectedClients, walked by index on the hot path so no iterator is allocated
+    private volatile ClientHandler[] clientArray = NO_CLIENTS;
+    // Routing table: robot ID or group tag to the clients that registered it. The
+    // arrays are replaced, never changed, so a lookup is one get() and no lock.
+    private final ConcurrentHashMap<String, ClientHandler[]> robotRoutes = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, ClientHandler[]> groupRoutes = new ConcurrentHashMap<>();
     private Gson gson;
+    private volatile WireFormat wireFormat = WireFormat.BINARY;
+    private MotorTransport motorTransport = MotorTransport.TCP;
+    private volatile UdpMotorTransport udpTransport;
+    private volatile MulticastMotorTransport multicastTransport;
+
+    // Outbound queue limits, applied to every client
+    private static final int DEFAULT_MAX_QUEUED_MESSAGES = 64;
+    private static final long DEFAULT_WRITE_DEADLINE_MS = 1000;
+    private static final long DEADLINE_CHECK_INTERVAL_MS = 50;
+    private volatile int maxQueuedMessages = DEFAULT_MAX_QUEUED_MESSAGES;
+    private volatile long writeDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(DEFAULT_WRITE_DEADLINE_MS);
+    private final AtomicLong evictedClients = new AtomicLong();
+
+    // Heartbeats, used to measure each client's link and adapt its command rate
+    private static final long DEFAULT_PING_INTERVAL_MS = 250;
+    private long pingIntervalMillis = DEFAULT_PING_INTERVAL_MS;
+    private volatile boolean adaptiveCommandRate = true;
+
+    // Motor command state for commands to everyone, guarded by this
+    private final ByteBuffer frameBuffer = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+    private final SharedFramePool framePool = new SharedFramePool();
+    private int nextSequence = 0;
+    // Last command sent to each target, resent to robots as they connect or register
+    private final ConcurrentHashMap<Target, LastCommand> lastCommands = new ConcurrentHashMap<>();
+    // Pool size for one robot or group; a frame is held by at most two of its clients' queues at once
+    private static final int TARGET_POOLED_FRAMES = 1024;
+
+    /**
+     * Encoding used for motor commands sent to the robots
+     */
+    public enum WireFormat {
+        /** Fixed-size binary frames, see MotorCommandCodec */
+        BINARY,
+        /** One JSON object per line (original protocol) */
+        JSON
+    }
+
+    /**
+     * Who a command is for: every robot, the robots registered with one ID, or
+     * the robots registered with one group tag. Targets are immutable; keep the
+     * ones used per command rather than creating them each time.
+     */
+    public static final class Target {
+        /** Every connected robot, registered or not */
+        public static final Target ALL = new Target(Kind.ALL, "*");
+
+        enum Kind { ALL, ROBOT, GROUP }
+
+        final Kind kind;
+        final String name;
+
+        private Target(Kind kind, String name) {
+            this.kind = kind;
+            this.name = name;
+        }
+
+        /** The robot (or robots) registered with this ID */
+        public static Target robot(String robotId) {
+            return new Target(Kind.ROBOT, robotId);
+        }
+
+        /** Every robot registered with this group tag */
+        public static Target group(String group) {
+            return new Target(Kind.GROUP, group);
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (!(o instanceof Target)) {
+                return false;
+            }
+            Target other = (Target) o;
+            return kind == other.kind && name.equals(other.name);
+        }
+
+        @Override
+        public int hashCode() {
+            return kind.hashCode() * 31 + name.hashCode();
+        }
+
+        @Override
+        public String toString() {
+            switch (kind) {
+                case ROBOT:
+                    return "robot " + name;
+                case GROUP:
+                    return "group " + name;
+                default:
+                    return "all robots";
+            }
+        }
+    }
+
+    /**
+     * The last command sent to one target, updated in place and guarded by
+     * itself, and the pool its commands are encoded into
+     */
+    private static final class LastCommand {
+        final SharedFramePool framePool;
+        byte type;
+        int sequence;
+        float leftVelocity;
+        float rightVelocity;
+        volatile long sentNanos;
+
+        LastCommand(SharedFramePool framePool) {
+            this.framePool = framePool;
+        }
+    }
+
+    /**
+     * Transport used for the motor command stream
+     */
+    public enum MotorTransport {
+        /** Motor commands share the TCP connection with everything else */
+        TCP,
+        /** Motor commands go out as datagrams on the same port number (always binary) */
+        UDP
+    }
 
     public RobotNetworkServer(int port) {
         this.port = port;
-        this.executorService = Executors.newFixedThreadPool(10);
         this.connectedClients = new CopyOnWriteArrayList<>();
         this.gson = new Gson();
     }
 
+    /**
+     * Set the number of selector event loops. Must be called before start().
+     * Loop 0 also accepts connections; clients are spread round-robin.
+     */
+    public void setEventLoopCount(int eventLoopCount) {
+        if (running) {
+            throw new IllegalStateException("Event loop count must be set before the server starts");
+        }
+        if (eventLoopCount < 1) {
+            throw new IllegalArgumentException("At least one event loop is required");
+        }
+        this.eventLoopCount = eventLoopCount;
+    }
+
+    /**
+     * Maximum number of non-motor messages queued per client. A client that falls
+     * further behind is disconnected. Motor commands never queue: a newer one
+     * replaces the unsent older one.
+     */
+    public void setMaxQueuedMessages(int maxQueuedMessages) {
+        this.maxQueuedMessages = maxQueuedMessages;
+    }
+
+    /**
+     * How long a client may go without draining its pending output before it is
+     * disconnected as a slow consumer
+     */
+    public void setWriteDeadlineMillis(long writeDeadlineMillis) {
+        this.writeDeadlineNanos = TimeUnit.MILLISECONDS.toNanos(writeDeadlineMillis);
+    }
+
+    /**
+     * How often each client is pinged, or 0 to disable heartbeats (and with them
+     * the adaptive command rate). Must be called before start().
+     */
+    public void setPingIntervalMillis(long pingIntervalMillis) {
+        if (running) {
+            throw new IllegalStateException("Ping interval must be set before the server starts");
+        }
+        this.pingIntervalMillis = pingIntervalMillis;
+    }
+
+    /**
+     * Lower the motor command rate for clients on a congested link (the default).
+     * When disabled every client gets every command, coalescing only when its
+     * socket is full.
+     */
+    public void setAdaptiveCommandRate(boolean adaptiveCommandRate) {
+        this.adaptiveCommandRate = adaptiveCommandRate;
+    }
+
+    /**
+     * Select the wire format for motor commands. Use JSON for clients that
+     * predate the binary protocol.
+     */
+    public void setWireFormat(WireFormat wireFormat) {
+        this.wireFormat = wireFormat;
+        logger.info("Motor command wire format: {}", wireFormat);
+    }
+
+    public WireFormat getWireFormat() {
+        return wireFormat;
+    }
+
+    /**
+     * Select the transport for motor commands. Must be called before start().
+     * The TCP connection is still used for the welcome message and control traffic.
+     */
+    public void setMotorTransport(MotorTransport motorTransport) {
+        if (running) {
+            throw new IllegalStateException("Motor transport must be set before the server starts");
+        }
+        this.motorTransport = motorTransport;
+    }
+
+    public MotorTransport getMotorTransport() {
+        return motorTransport;
+    }
+
+    /**
+     * Send commands for everyone to this multicast group from now on, instead of
+     * to each robot. May be called while running.
+     * @param networkInterface Interface to send from, or null for the system default
+     */
+    public synchronized void setMulticastGroup(InetSocketAddress group, NetworkInterface networkInterface)
+            throws IOException {
+        MulticastMotorTransport previous = multicastTransport;
+        multicastTransport = new MulticastMotorTransport(group, networkInterface);
+        if (previous != null) {
+            previous.close();
+        }
+    }
+
+    /**
+     * The multicast sender, or null when commands for everyone go to each robot
+     */
+    public MulticastMotorTransport getMulticastTransport() {
+        return multicastTransport;
+    }
+
+    /**
+     * The UDP transport, or null when motor commands use TCP
+     */
+    public UdpMotorTransport getUdpTransport() {
+        return udpTransport;
+    }
+
     /**
      * Start the network server
      */
@@ -42,11 +331,44 @@ public class RobotNetworkServer {
         running = true;
         logger.info("Starting robot network server on port {}", port);
 
-        // Accept connections in a separate thread
-        Thread acceptThread = new Thread(this::acceptConnections);
-        acceptThread.setName("RobotNetworkServer-Accept");
-        acceptThread.setDaemon(true);
-        acceptThread.start();
+        if (motorTransport == MotorTransport.UDP) {
+            udpTransport = new UdpMotorTransport(port);
+            try {
+                udpTransport.start();
+            } catch (IOException e) {
+                logger.error("Failed to start UDP motor transport, falling back to TCP", e);
+                udpTransport.stop();
+                udpTransport = null;
+            }
+        }
+
+        try {
+            eventLoops = new NioEventLoop[eventLoopCount];
+            for (int i = 0; i < eventLoopCount; i++) {
+                NioEventLoop loop = new NioEventLoop("RobotNetworkServer-IO-" + i);
+                loop.schedulePeriodic(() -> checkWriteDeadlines(loop), DEADLINE_CHECK_INTERVAL_MS);
+                if (pingIntervalMillis > 0) {
+                    loop.schedulePeriodic(() -> sendPings(loop), pingIntervalMillis);
+                }
+                loop.start();
+                eventLoops[i] = loop;
+            }
+
+            serverChannel = ServerSocketChannel.open();
+            serverChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            serverChannel.bind(new InetSocketAddress(port), ACCEPT_BACKLOG);
+            NioEventLoop acceptLoop = eventLoops[0];
+            acceptLoop.execute(() -> {
+                try {
+                    acceptLoop.register(serverChannel, SelectionKey.OP_ACCEPT, new Acceptor());
+                    logger.info("Server listening on port {} ({} event loop(s))", port, eventLoopCount);
+                } catch (IOException e) {
+                    logger.error("Server socket error", e);
+                }
+            });
+        } catch (IOException e) {
+            logger.error("Server socket error", e);
+        }
     }
 
     /**
@@ -56,68 +378,171 @@ public class RobotNetworkServer {
         running = false;
         logger.info("Stopping robot network server");
 
+        // Stop accepting first, so a robot that reconnects as soon as it is
+        // dropped is refused instead of being accepted by a server that is going away
+        closeServerChannel();
+
         // Disconnect all clients
         for (ClientHandler client : connectedClients) {
             client.disconnect();
         }
         connectedClients.clear();
+        refreshClientArray();
 
-        // Close server socket
-        try {
-            if (serverSocket != null && !serverSocket.isClosed()) {
-                serverSocket.close();
+        if (udpTransport != null) {
+            udpTransport.stop();
+        }
+        synchronized (this) {
+            if (multicastTransport != null) {
+                multicastTransport.close();
+                multicastTransport = null;
             }
-        } catch (IOException e) {
-            logger.error("Error closing server socket", e);
         }
 
-        executorService.shutdown();
+        if (eventLoops != null) {
+            for (NioEventLoop loop : eventLoops) {
+                if (loop != null) {
+                    loop.stop();
+                }
+            }
+        }
+
+        logger.info("Robot network server stopped");
+    }
+
+    /**
+     * Close the listening socket, on the accept loop while it runs so that the
+     * socket stops taking connections before this returns
+     */
+    private void closeServerChannel() {
+        if (serverChannel == null || !serverChannel.isOpen()) {
+            return;
+        }
+        NioEventLoop acceptLoop = eventLoops != null ? eventLoops[0] : null;
+        if (acceptLoop == null || acceptLoop.inLoop()) {
+            try {
+                serverChannel.close();
+            } catch (IOException e) {
+                logger.error("Error closing server socket", e);
+            }
+            return;
+        }
+        CountDownLatch closed = new CountDownLatch(1);
+        acceptLoop.execute(() -> {
+            try {
+                acceptLoop.closeNow(serverChannel);
+            } catch (IOException e) {
+                logger.error("Error closing server socket", e);
+            } finally {
+                closed.countDown();
+            }
+        });
         try {
-            if (!executorService.awaitTermination(5, TimeUnit.SECONDS)) {
-                executorService.shutdownNow();
+            if (!closed.await(1, TimeUnit.SECONDS)) {
+                serverChannel.close();
             }
         } catch (InterruptedException e) {
-            executorService.shutdownNow();
             Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            logger.error("Error closing server socket", e);
         }
+    }
 
-        logger.info("Robot network server stopped");
+    /**
+     * Number of robots currently connected over TCP
+     */
+    public int getConnectedClientCount() {
+        return connectedClients.size();
     }
 
     /**
-     * Accept incoming client connections
+     * Connected clients, for reading their per-client counters
      */
-    private void acceptConnections() {
-        try {
-            serverSocket = new ServerSocket(port);
-            logger.info("Server listening on port {}", port);
+    public List<ClientHandler> getClients() {
+        return Collections.unmodifiableList(connectedClients);
+    }
 
-            while (running) {
-                try {
-                    Socket clientSocket = serverSocket.accept();
-                    logger.info("New client connected: {}", clientSocket.getInetAddress());
+    /**
+     * Robot IDs currently registered by connected clients
+     */
+    public Set<String> getRegisteredRobotIds() {
+        return Collections.unmodifiableSet(robotRoutes.keySet());
+    }
+
+    /**
+     * Clients a command for this target would be sent to
+     */
+    public List<ClientHandler> getClients(Target target) {
+        return Collections.unmodifiableList(Arrays.asList(clientsFor(target)));
+    }
 
-                    ClientHandler handler = new ClientHandler(clientSocket, this);
-                    connectedClients.add(handler);
-                    executorService.execute(handler);
+    /**
+     * Total clients disconnected for falling behind since the server started
+     */
+    public long getEvictedClientCount() {
+        return evictedClients.get();
+    }
 
-                } catch (SocketTimeoutException e) {
-                    // Timeout, continue accepting
-                } catch (IOException e) {
-                    if (running) {
-                        logger.error("Error accepting client connection", e);
-                    }
-                }
+    /**
+     * Disconnect clients on this loop whose output has been stalled past the deadline
+     */
+    private void checkWriteDeadlines(NioEventLoop loop) {
+        long now = System.nanoTime();
+        long deadline = writeDeadlineNanos;
+        ClientHandler[] clients = clientArray;
+        for (int i = 0; i < clients.length; i++) {
+            ClientHandler client = clients[i];
+            if (client.loop == loop && client.isStalledLongerThan(now, deadline)) {
+                logger.warn("Client {} missed its {} ms write deadline, disconnecting",
+                    client.getRemoteAddress(), TimeUnit.NANOSECONDS.toMillis(deadline));
+                evict(client);
             }
-        } catch (IOException e) {
-            logger.error("Server socket error", e);
-        } finally {
-            try {
-                if (serverSocket != null && !serverSocket.isClosed()) {
-                    serverSocket.close();
-                }
-            } catch (IOException e) {
-                logger.error("Error closing server socket", e);
+        }
+    }
+
+    /**
+     * Ping every client on this loop
+     */
+    private void sendPings(NioEventLoop loop) {
+        ClientHandler[] clients = clientArray;
+        for (int i = 0; i < clients.length; i++) {
+            if (clients[i].loop == loop) {
+                clients[i].ping();
+            }
+        }
+    }
+
+    private void evict(ClientHandler client) {
+        if (client.evicted.compareAndSet(false, true)) {
+            evictedClients.incrementAndGet();
+            client.disconnect();
+        }
+    }
+
+    /**
+     * Accepts incoming client connections on event loop 0
+     */
+    private class Acceptor implements NioEventLoop.Handler {
+        @Override
+        public void handleReady(SelectionKey key) throws IOException {
+            SocketChannel channel;
+            while ((channel = serverChannel.accept()) != null) {
+                logger.info("New client connected: {}", channel.socket().getInetAddress());
+                channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+
+                NioEventLoop loop = eventLoops[Math.floorMod(nextEventLoop.getAndIncrement(), eventLoops.length)];
+                ClientHandler handler = new ClientHandler(channel, loop, RobotNetworkServer.this);
+                connectedClients.add(handler);
+                CONNECTED_CLIENTS.increment();
+                refreshClientArray();
+                loop.execute(handler::register);
+            }
+        }
+
+        @Override
+        public void handleError(Exception e) {
+            if (running) {
+                logger.error("Error accepting client connection", e);
             }
         }
     }
@@ -125,22 +550,289 @@ public class RobotNetworkServer {
     /**
      * Broadcast motor command to all connected robots
      */
-    public void broadcastMotorCommand(float leftVelocity, float rightVelocity) {
-        JsonObject command = new JsonObject();
-        command.addProperty("type", "motor");
-        command.addProperty("left", leftVelocity);
-        command.addProperty("right", rightVelocity);
+    public synchronized void broadcastMotorCommand(float leftVelocity, float rightVelocity) {
+        sendCommand(Target.ALL, MotorCommandCodec.TYPE_MOTOR, nextSequence++, leftVelocity, rightVelocity,
+            System.nanoTime());
+    }
 
-        String json = gson.toJson(command);
-        broadcastToClients(json);
+    /**
+     * Broadcast motor command to all connected robots
+     * @param originNanos When the input behind this command happened (System.nanoTime() scale)
+     */
+    public synchronized void broadcastMotorCommand(float leftVelocity, float rightVelocity, long originNanos) {
+        sendCommand(Target.ALL, MotorCommandCodec.TYPE_MOTOR, nextSequence++, leftVelocity, rightVelocity,
+            originNanos);
     }
 
     /**
-     * Broadcast a message to all connected clients
+     * Broadcast a motor command with a sequence number chosen by the caller. Used
+     * when several servers send the same command stream to robots connected to
+     * all of them, which keep the first copy of each sequence number.
      */
-    private void broadcastToClients(String message) {
-        for (ClientHandler client : connectedClients) {
-            client.sendMessage(message);
+    public synchronized void broadcastMotorCommand(int sequence, float leftVelocity, float rightVelocity,
+                                                   long originNanos) {
+        sendCommand(Target.ALL, MotorCommandCodec.TYPE_MOTOR, sequence, leftVelocity, rightVelocity, originNanos);
+    }
+
+    /**
+     * Send a motor command, with a sequence number chosen by the caller, to the
+     * robots of one target only
+     */
+    public void sendMotorCommand(Target target, int sequence, float leftVelocity, float rightVelocity,
+                                 long originNanos) {
+        sendCommand(target, MotorCommandCodec.TYPE_MOTOR, sequence, leftVelocity, rightVelocity, originNanos);
+    }
+
+    /**
+     * Broadcast a stop command to all connected robots. On the UDP transport the
+     * stop is retransmitted until each robot acknowledges it.
+     */
+    public synchronized void broadcastStop() {
+        sendCommand(Target.ALL, MotorCommandCodec.TYPE_STOP, nextSequence++, 0.0f, 0.0f, System.nanoTime());
+    }
+
+    /**
+     * Broadcast a stop command with a sequence number chosen by the caller
+     */
+    public synchronized void broadcastStop(int sequence) {
+        sendCommand(Target.ALL, MotorCommandCodec.TYPE_STOP, sequence, 0.0f, 0.0f, System.nanoTime());
+    }
+
+    /**
+     * Send a stop command, with a sequence number chosen by the caller, to the
+     * robots of one target only
+     */
+    public void sendStop(Target target, int sequence) {
+        sendCommand(target, MotorCommandCodec.TYPE_STOP, sequence, 0.0f, 0.0f, System.nanoTime());
+    }
+
+    private void sendCommand(Target target, byte type, int sequence, float leftVelocity, float rightVelocity,
+                             long originNanos) {
+        if (target.kind == Target.Kind.ALL) {
+            synchronized (this) {
+                sendToAll(type, sequence, leftVelocity, rightVelocity, originNanos);
+            }
+            return;
+        }
+
+        // One robot or group: only this target's own state is touched
+        long encodeStart = System.nanoTime();
+        LastCommand last = remember(target, type, sequence, leftVelocity, rightVelocity, encodeStart);
+        SharedFrame frame = encodeShared(last.framePool, type, sequence,
+            MotorCommandCodec.toTimestampMicros(originNanos), leftVelocity, rightVelocity);
+        PipelineLatency.SERIALIZATION.record(frame.publishedNanos() - encodeStart);
+
+        ClientHandler[] clients = clientsFor(target);
+        for (int i = 0; i < clients.length; i++) {
+            clients[i].sendMotor(frame);
+        }
+        frame.release();
+    }
+
+    /**
+     * Record the command as the target's latest
+     */
+    private LastCommand remember(Target target, byte type, int sequence, float leftVelocity, float rightVelocity,
+                                 long sentNanos) {
+        LastCommand last = lastCommands.get(target);
+        if (last == null) {
+            last = lastCommands.computeIfAbsent(target, t -> new LastCommand(
+                t.kind == Target.Kind.ALL ? framePool : new SharedFramePool(TARGET_POOLED_FRAMES)));
+        }
+        synchronized (last) {
+            last.type = type;
+            last.sequence = sequence;
+            last.leftVelocity = leftVelocity;
+            last.rightVelocity = rightVelocity;
+            last.sentNanos = sentNanos;
+        }
+        return last;
+    }
+
+    /**
+     * Send a command for everyone, by multicast, UDP or each client's connection.
+     * Called with the server's lock held.
+     */
+    private void sendToAll(byte type, int sequence, float leftVelocity, float rightVelocity, long originNanos) {
+        long encodeStart = System.nanoTime();
+        long timestampMicros = MotorCommandCodec.toTimestampMicros(originNanos);
+        UdpMotorTransport udp = udpTransport;
+        remember(Target.ALL, type, sequence, leftVelocity, rightVelocity, encodeStart);
+
+        MulticastMotorTransport multicast = multicastTransport;
+        if (multicast != null) {
+            // One datagram for the whole fleet
+            frameBuffer.clear();
+            MotorCommandCodec.encode(frameBuffer, type, sequence, timestampMicros, leftVelocity, rightVelocity);
+            frameBuffer.flip();
+            multicast.send(frameBuffer);
+            if (type != MotorCommandCodec.TYPE_STOP) {
+                PipelineLatency.SERIALIZATION.record(System.nanoTime() - encodeStart);
+                return;
+            }
+            // A stop also goes out below, so a robot that missed the datagram still stops
+        } else if (udp != null) {
+            // Datagrams are sent synchronously, so the reusable buffer is enough
+            frameBuffer.clear();
+            MotorCommandCodec.encode(frameBuffer, type, sequence, timestampMicros, leftVelocity, rightVelocity);
+            frameBuffer.flip();
+            PipelineLatency.SERIALIZATION.record(System.nanoTime() - encodeStart);
+            if (type == MotorCommandCodec.TYPE_STOP) {
+                udp.sendReliable(frameBuffer, sequence);
+            } else {
+                udp.send(frameBuffer);
+            }
+            return;
+        }
+
+        // Encode once into a shared frame; every client writes the same bytes
+        SharedFrame frame = encodeShared(framePool, type, sequence, timestampMicros, leftVelocity, rightVelocity);
+        PipelineLatency.SERIALIZATION.record(frame.publishedNanos() - encodeStart);
+
+        ClientHandler[] clients = clientArray;
+        for (int i = 0; i < clients.length; i++) {
+            clients[i].sendMotor(frame);
+        }
+        frame.release();
+    }
+
+    /**
+     * The clients of a target: one table lookup, no scan
+     */
+    private ClientHandler[] clientsFor(Target target) {
+        switch (target.kind) {
+            case ROBOT:
+                return robotRoutes.getOrDefault(target.name, NO_CLIENTS);
+            case GROUP:
+                return groupRoutes.getOrDefault(target.name, NO_CLIENTS);
+            default:
+                return clientArray;
+        }
+    }
+
+    private SharedFrame encodeShared(SharedFramePool pool, byte type, int sequence, long timestampMicros,
+                                     float leftVelocity, float rightVelocity) {
+        SharedFrame frame = pool.acquire();
+        ByteBuffer data = frame.beginWrite(type);
+        if (wireFormat == WireFormat.BINARY) {
+            MotorCommandCodec.encode(data, type, sequence, timestampMicros, leftVelocity, rightVelocity);
+        } else {
+            JsonObject command = new JsonObject();
+            command.addProperty("type", "motor");
+            command.addProperty("seq", sequence);
+            command.addProperty("ts", timestampMicros);
+            command.addProperty("left", leftVelocity);
+            command.addProperty("right", rightVelocity);
+            data.put((gson.toJson(command) + "\n").getBytes(StandardCharsets.UTF_8));
+        }
+        frame.publish();
+        return frame;
+    }
+
+    /**
+     * Send a robot the most recent command meant for it, so a robot that
+     * reconnects resumes the current state at once instead of waiting for the
+     * next change or keepalive. Called when it connects (when only commands for
+     * everyone apply) and again when it registers. The timestamp is the current
+     * time: the command is still in force, not late. Runs on the client's loop
+     * thread without the server's lock, so a long broadcast never stalls the
+     * loop; a newer command that overtakes the replay makes the robot discard it
+     * by sequence number.
+     */
+    private void sendLastCommand(ClientHandler client) {
+        LastCommand latest = udpTransport == null ? lastCommands.get(Target.ALL) : null;
+        String robotId = client.robotId;
+        if (robotId != null) {
+            latest = newer(latest, lastCommands.get(Target.robot(robotId)));
+            for (String group : client.groups) {
+                latest = newer(latest, lastCommands.get(Target.group(group)));
+            }
+        }
+        if (latest == null) {
+            return;
+        }
+        SharedFrame frame;
+        synchronized (latest) {
+            frame = encodeShared(latest.framePool, latest.type, latest.sequence,
+                MotorCommandCodec.currentTimeMicros(), latest.leftVelocity, latest.rightVelocity);
+        }
+        client.sendMotor(frame);
+        frame.release();
+    }
+
+    private static LastCommand newer(LastCommand a, LastCommand b) {
+        if (a == null) {
+            return b;
+        }
+        return b != null && b.sentNanos - a.sentNanos > 0 ? b : a;
+    }
+
+    /**
+     * Enter a client's robot ID and group tags in the routing table, replacing
+     * any it registered before
+     */
+    private void route(ClientHandler client, String robotId, String[] groups) {
+        synchronized (client) {
+            unroute(client);
+            client.groups = groups;
+            client.robotId = robotId;
+            robotRoutes.compute(robotId, (id, clients) -> withClient(clients, client));
+            for (String group : groups) {
+                groupRoutes.compute(group, (g, clients) -> withClient(clients, client));
+            }
+        }
+        logger.info("Robot {} registered from {}{}", robotId, client.getRemoteAddress(),
+            groups.length > 0 ? " in groups " + String.join(", ", groups) : "");
+    }
+
+    /**
+     * Remove a client's routes, if it registered any
+     */
+    private void unroute(ClientHandler client) {
+        synchronized (client) {
+            String robotId = client.robotId;
+            if (robotId == null) {
+                return;
+            }
+            robotRoutes.computeIfPresent(robotId, (id, clients) -> withoutClient(clients, client));
+            for (String group : client.groups) {
+                groupRoutes.computeIfPresent(group, (g, clients) -> withoutClient(clients, client));
+            }
+            client.robotId = null;
+            client.groups = NO_GROUPS;
+        }
+    }
+
+    private static ClientHandler[] withClient(ClientHandler[] clients, ClientHandler client) {
+        if (clients == null) {
+            return new ClientHandler[] { client };
+        }
+        ClientHandler[] grown = Arrays.copyOf(clients, clients.length + 1);
+        grown[clients.length] = client;
+        return grown;
+    }
+
+    /**
+     * The array without the client, or null (removing the entry) if it was the last one
+     */
+    private static ClientHandler[] withoutClient(ClientHandler[] clients, ClientHandler client) {
+        int remaining = 0;
+        ClientHandler[] kept = new ClientHandler[clients.length];
+        for (ClientHandler c : clients) {
+            if (c != client) {
+                kept[remaining++] = c;
+            }
+        }
+        return remaining == 0 ? null : Arrays.copyOf(kept, remaining);
+    }
+
+    /**
+     * Copy the client list for the hot-path loops. Serialized so that a stale
+     * copy never replaces a newer one.
+     */
+    private void refreshClientArray() {
+        synchronized (connectedClients) {
+            clientArray = connectedClients.toArray(NO_CLIENTS);
         }
     }
 
@@ -148,59 +840,630 @@ public class RobotNetworkServer {
      * Remove a disconnected client from the list
      */
     protected void removeClient(ClientHandler handler) {
-        connectedClients.remove(handler);
+        if (connectedClients.remove(handler)) {
+            CONNECTED_CLIENTS.decrement();
+        }
+        unroute(handler);
+        refreshClientArray();
         logger.info("Client disconnected. Active connections: {}", connectedClients.size());
     }
 
     /**
-     * Handler for individual client connections
+     * Handler for individual client connections.
+     * All socket I/O happens on the client's event loop; other threads only queue
+     * outbound buffers and ask the loop to flush them.
+     *
+     * Outbound data is held in a bounded message queue plus a single motor slot.
+     * A new motor command replaces an unsent one in the slot (coalescing), so a
+     * slow robot receives the freshest command rather than a backlog.
+     *
+     * Pongs to the server's pings give a smoothed RTT (RFC 6298 style) and a
+     * heartbeat loss rate. When the RTT rises above its recent minimum by more
+     * than a target queueing delay, a ping goes unanswered, or the socket stalls,
+     * the minimum interval between motor commands doubles (up to 200 ms); on a
+     * clear link it shrinks again by one control period per ping. Commands
+     * arriving faster than the interval coalesce in the motor slot. Stops are
+     * never held back.
      */
-    protected static class ClientHandler implements Runnable {
+    public static class ClientHandler implements NioEventLoop.Handler {
         private static final Logger logger = LoggerFactory.getLogger(ClientHandler.class);
 
-        private Socket socket;
-        private PrintWriter writer;
-        private BufferedReader reader;
-        private RobotNetworkServer server;
-        private volatile boolean connected = true;
+        private static final int READ_BUFFER_SIZE = 1024;
+
+        // A ping not answered within this many ping intervals counts as lost
+        private static final int LOSS_TIMEOUT_PINGS = 4;
+        // Weight of the newest sample in the smoothed loss rate
+        private static final double LOSS_GAIN = 1.0 / 8;
+        // RTT above the recent minimum that is accepted before slowing down
+        private static final long TARGET_QUEUEING_DELAY_NANOS = TimeUnit.MILLISECONDS.toNanos(20);
+        // The minimum RTT is forgotten after this long, so route changes are picked up
+        private static final long MIN_RTT_WINDOW_NANOS = TimeUnit.SECONDS.toNanos(10);
+        // Command interval granularity: one control loop period
+        private static final long PACING_STEP_NANOS = TimeUnit.MILLISECONDS.toNanos(10);
+        private static final long MAX_COMMAND_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(200);
+
+        private final SocketChannel channel;
+        private final NioEventLoop loop;
+        private final RobotNetworkServer server;
+        private SelectionKey key;
+        private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+        private final MotorCommandCodec.Frame inboundFrame = new MotorCommandCodec.Frame();
+        private final Queue<ByteBuffer> outbound = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger queuedMessages = new AtomicInteger();
+        private final AtomicReference<SharedFrame> pendingMotor = new AtomicReference<>();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean(false);
+        private final NioEventLoop.ReusableTask flushTask = new NioEventLoop.ReusableTask() {
+            @Override
+            public void run() {
+                scheduledFlush();
+            }
+        };
+        private final NioEventLoop.ReusableTimer pacedFlushTimer = new NioEventLoop.ReusableTimer() {
+            @Override
+            public void run() {
+                pacedFlush();
+            }
+        };
+        private final AtomicBoolean connected = new AtomicBoolean(true);
+        private final AtomicBoolean evicted = new AtomicBoolean(false);
+
+        // Identity from the registration handshake, null until the robot registers
+        private volatile String robotId;
+        private volatile String[] groups = NO_GROUPS;
 
-        public ClientHandler(Socket socket, RobotNetworkServer server) {
-            this.socket = socket;
+        // Write state, only touched on the loop thread
+        private ByteBuffer inFlight;
+        private SharedFrame inFlightFrame;
+        private ByteBuffer[] frameViews = new ByteBuffer[16];
+        private volatile long stalledSinceNanos = 0;
+        private long lastMotorSentNanos = System.nanoTime() - MAX_COMMAND_INTERVAL_NANOS;
+        private boolean pacedFlushScheduled = false;
+        // Binary heartbeat, encoded in place; written ahead of the motor command when pending
+        private final ByteBuffer pingFrame = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        private boolean pingPending = false;
+
+        // Link state from heartbeats, only written on the loop thread
+        private int pingSequence = 0;
+        private long answeredPings = 0;  // bit (seq & 63) set once ping seq was answered
+        private long minRttSinceNanos;
+        private volatile long pingsSent = 0;
+        private volatile long pongsReceived = 0;
+        private volatile long smoothedRttNanos = -1;
+        private volatile long rttVariationNanos = 0;
+        private volatile long minRttNanos = -1;
+        private volatile double pingLossRate = 0.0;
+        private volatile long commandIntervalNanos = 0;
+
+        // Counters
+        private final AtomicLong coalescedCommands = new AtomicLong();
+        private volatile long messagesSent = 0;
+        private volatile long bytesSent = 0;
+
+        public ClientHandler(SocketChannel channel, NioEventLoop loop, RobotNetworkServer server) {
+            this.channel = channel;
+            this.loop = loop;
             this.server = server;
         }
 
+        /**
+         * Register with the event loop and send the welcome message. Runs on the loop thread.
+         */
+        void register() {
+            try {
+                key = loop.register(channel, SelectionKey.OP_READ, this);
+            } catch (IOException e) {
+                handleError(e);
+                return;
+            }
+
+            // Send welcome message
+            JsonObject welcome = new JsonObject();
+            welcome.addProperty("status", "connected");
+            welcome.addProperty("message", "Connected to robot control server");
+            sendMessage(new Gson().toJson(welcome));
+            server.sendLastCommand(this);
+        }
+
         @Override
-        public void run() {
+        public void handleReady(SelectionKey key) throws IOException {
+            if (key.isReadable()) {
+                read();
+            }
+            if (key.isValid() && key.isWritable()) {
+                flush();
+            }
+        }
+
+        @Override
+        public void handleError(Exception e) {
+            if (connected.get()) {
+                logger.error("Client communication error: {}", e.getMessage());
+            }
+            disconnect();
+        }
+
+        /**
+         * Read whatever the robot sent. Messages are JSON lines or binary frames.
+         */
+        private void read() throws IOException {
+            int n = channel.read(readBuffer);
+            if (n == -1) {
+                disconnect();
+                return;
+            }
+
+            readBuffer.flip();
+            while (readBuffer.hasRemaining()) {
+                int start = readBuffer.position();
+                if (readBuffer.get(start) == 0) {
+                    try {
+                        if (!MotorCommandCodec.decode(readBuffer, inboundFrame)) {
+                            break;
+                        }
+                    } catch (IllegalArgumentException e) {
+                        // The stream cannot be resynchronized; drop only this robot
+                        MALFORMED_FRAMES.increment();
+                        logger.warn("Disconnecting client that sent a malformed frame: {}", e.getMessage());
+                        disconnect();
+                        return;
+                    }
+                    if (inboundFrame.type == MotorCommandCodec.TYPE_PONG) {
+                        onPong(inboundFrame.sequence, inboundFrame.timestampMicros);
+                    } else {
+                        logger.debug("Received frame type {} from client", inboundFrame.type);
+                    }
+                } else {
+                    int end = indexOf(readBuffer, (byte) '\n');
+                    if (end < 0) {
+                        break;
+                    }
+                    String line = new String(readBuffer.array(), start, end - start, StandardCharsets.UTF_8);
+                    readBuffer.position(end + 1);
+                    handleLine(line);
+                }
+            }
+            readBuffer.compact();
+
+            if (!readBuffer.hasRemaining()) {
+                throw new IOException("Message from client exceeds " + READ_BUFFER_SIZE + " bytes");
+            }
+        }
+
+        /**
+         * Handle one JSON line from the robot: a pong or a registration
+         */
+        private void handleLine(String line) {
             try {
-                writer = new PrintWriter(socket.getOutputStream(), true);
-                reader = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-
-                // Send welcome message
-                JsonObject welcome = new JsonObject();
-                welcome.addProperty("status", "connected");
-                welcome.addProperty("message", "Connected to robot control server");
-                sendMessage(new Gson().toJson(welcome));
-
-                // Read incoming commands
-                String line;
-                while (connected && (line = reader.readLine()) != null) {
-                    logger.debug("Received from client: {}", line);
-                    // Process any incoming commands from Raspberry Pi if needed
+                JsonObject message = server.gson.fromJson(line, JsonObject.class);
+                String type = message != null && message.has("type") ? message.get("type").getAsString() : null;
+                if ("pong".equals(type) && message.has("seq") && message.has("ts")) {
+                    onPong(message.get("seq").getAsInt(), message.get("ts").getAsLong());
+                    return;
+                }
+                if ("register".equals(type) && message.has("robot")) {
+                    register(message);
+                    return;
                 }
+            } catch (JsonParseException | IllegalStateException | UnsupportedOperationException e) {
+                logger.debug("Invalid JSON from client: {}", e.getMessage());
+            }
+            logger.debug("Received from client: {}", line);
+        }
 
-            } catch (IOException e) {
-                logger.error("Client communication error", e);
-            } finally {
-                disconnect();
+        /**
+         * Route commands for the announced robot ID and groups to this client,
+         * then send it the latest command that applies to it
+         */
+        private void register(JsonObject message) {
+            String id = message.get("robot").getAsString();
+            String[] tags = NO_GROUPS;
+            if (message.has("groups")) {
+                JsonArray array = message.getAsJsonArray("groups");
+                tags = new String[array.size()];
+                for (int i = 0; i < tags.length; i++) {
+                    tags[i] = array.get(i).getAsString();
+                }
+            }
+            server.route(this, id, tags);
+            if (!connected.get()) {
+                // Lost a race with disconnect(), whose unroute may have run first
+                server.unroute(this);
+                return;
             }
+            server.sendLastCommand(this);
+        }
+
+        /**
+         * Robot ID this client registered, or null if it has not
+         */
+        public String getRobotId() {
+            return robotId;
+        }
+
+        /**
+         * Group tags this client registered
+         */
+        public List<String> getGroups() {
+            return Collections.unmodifiableList(Arrays.asList(groups));
+        }
+
+        /**
+         * Send the next heartbeat, first scoring the ping that has now timed out.
+         * Runs on the loop thread.
+         */
+        void ping() {
+            if (!connected.get()) {
+                return;
+            }
+            long now = System.nanoTime();
+            // Robots that never answered (older clients) are not scored or slowed down
+            if (pongsReceived > 0 && pingSequence >= LOSS_TIMEOUT_PINGS) {
+                int due = pingSequence - LOSS_TIMEOUT_PINGS;
+                boolean lost = (answeredPings & (1L << (due & 63))) == 0;
+                pingLossRate += ((lost ? 1.0 : 0.0) - pingLossRate) * LOSS_GAIN;
+                adaptCommandInterval(lost, now);
+            }
+
+            int sequence = pingSequence++;
+            answeredPings &= ~(1L << (sequence & 63));
+            long timestampMicros = MotorCommandCodec.toTimestampMicros(now);
+            if (server.wireFormat == WireFormat.BINARY) {
+                if (pingPending || inFlight == pingFrame) {
+                    // The last ping has not left yet; this one is scored as lost, as it should be
+                    return;
+                }
+                pingFrame.clear();
+                MotorCommandCodec.encode(pingFrame, MotorCommandCodec.TYPE_PING, sequence, timestampMicros, 0.0f, 0.0f);
+                pingFrame.flip();
+                pingPending = true;
+                scheduleFlush();
+            } else {
+                JsonObject ping = new JsonObject();
+                ping.addProperty("type", "ping");
+                ping.addProperty("seq", sequence);
+                ping.addProperty("ts", timestampMicros);
+                sendMessage(server.gson.toJson(ping));
+            }
+            pingsSent++;
+        }
+
+        /**
+         * Update the RTT estimates from an echoed ping
+         */
+        private void onPong(int sequence, long timestampMicros) {
+            int age = pingSequence - sequence;
+            if (age <= 0 || age > 64 || (answeredPings & (1L << (sequence & 63))) != 0) {
+                // Not an outstanding ping of ours
+                return;
+            }
+            long now = System.nanoTime();
+            long rtt = (MotorCommandCodec.toTimestampMicros(now) - timestampMicros) * 1000L;
+            if (rtt < 0) {
+                return;
+            }
+            answeredPings |= 1L << (sequence & 63);
+            pongsReceived++;
+
+            long srtt = smoothedRttNanos;
+            if (srtt < 0) {
+                rttVariationNanos = rtt / 2;
+                smoothedRttNanos = rtt;
+            } else {
+                rttVariationNanos += (Math.abs(srtt - rtt) - rttVariationNanos) / 4;
+                smoothedRttNanos = srtt + (rtt - srtt) / 8;
+            }
+            if (minRttNanos < 0 || rtt < minRttNanos || now - minRttSinceNanos > MIN_RTT_WINDOW_NANOS) {
+                minRttNanos = rtt;
+                minRttSinceNanos = now;
+            }
+        }
+
+        /**
+         * Widen the command interval on a congested link, narrow it on a clear one
+         */
+        private void adaptCommandInterval(boolean lost, long now) {
+            long interval = commandIntervalNanos;
+            if (!server.adaptiveCommandRate) {
+                interval = 0;
+            } else if (lost || stalledSinceNanos != 0
+                    || smoothedRttNanos - minRttNanos > TARGET_QUEUEING_DELAY_NANOS) {
+                interval = interval == 0 ? PACING_STEP_NANOS : Math.min(interval * 2, MAX_COMMAND_INTERVAL_NANOS);
+            } else {
+                interval = Math.max(0, interval - PACING_STEP_NANOS);
+            }
+
+            if (interval != commandIntervalNanos) {
+                if (commandIntervalNanos == 0) {
+                    logger.info("Link to {} congested (RTT {} ms, loss {}%), limiting motor commands",
+                        getRemoteAddress(), smoothedRttNanos / 1_000_000L, Math.round(pingLossRate * 100));
+                } else if (interval == 0) {
+                    logger.info("Link to {} recovered, motor commands at full rate", getRemoteAddress());
+                }
+                logger.debug("Command interval for {}: {} ms", getRemoteAddress(), interval / 1_000_000L);
+                commandIntervalNanos = interval;
+            }
+        }
+
+        private static int indexOf(ByteBuffer buffer, byte value) {
+            for (int i = buffer.position(); i < buffer.limit(); i++) {
+                if (buffer.get(i) == value) {
+                    return i;
+                }
+            }
+            return -1;
         }
 
         /**
          * Send a message to this client
          */
-        protected synchronized void sendMessage(String message) {
-            if (connected && writer != null) {
-                writer.println(message);
+        protected void sendMessage(String message) {
+            byte[] bytes = (message + "\n").getBytes(StandardCharsets.UTF_8);
+            sendFrame(ByteBuffer.wrap(bytes));
+        }
+
+        /**
+         * Queue an encoded buffer for this client. Never blocks the caller; a client
+         * whose queue is full is disconnected.
+         */
+        protected void sendFrame(ByteBuffer frame) {
+            if (!connected.get()) {
+                return;
+            }
+            if (queuedMessages.incrementAndGet() > server.maxQueuedMessages) {
+                queuedMessages.decrementAndGet();
+                logger.warn("Outbound queue full for {}, disconnecting", getRemoteAddress());
+                server.evict(this);
+                return;
+            }
+            outbound.offer(frame);
+            scheduleFlush();
+        }
+
+        /**
+         * Queue a shared motor frame, replacing any motor command not yet sent
+         */
+        protected void sendMotor(SharedFrame frame) {
+            if (!connected.get()) {
+                return;
+            }
+            frame.retain();
+            SharedFrame replaced = pendingMotor.getAndSet(frame);
+            if (replaced != null) {
+                replaced.release();
+                coalescedCommands.incrementAndGet();
+            }
+            if (!connected.get()) {
+                // Lost a race with disconnect(); its cleanup may already have run
+                releaseFrames(pendingMotor.getAndSet(null));
+                return;
+            }
+            scheduleFlush();
+        }
+
+        private void scheduleFlush() {
+            if (flushScheduled.compareAndSet(false, true)) {
+                loop.execute(flushTask);
+            }
+        }
+
+        private void scheduledFlush() {
+            flushScheduled.set(false);
+            try {
+                flush();
+            } catch (IOException e) {
+                handleError(e);
+            }
+        }
+
+        /**
+         * Write pending output until there is none left or the socket is full.
+         * Queued messages go first, then a heartbeat, then the latest motor command.
+         * Runs on the loop thread.
+         */
+        private void flush() throws IOException {
+            if (key == null || !key.isValid()) {
+                return;
+            }
+            while (true) {
+                if (inFlight == null) {
+                    inFlight = outbound.poll();
+                    if (inFlight != null) {
+                        queuedMessages.decrementAndGet();
+                    } else if (pingPending) {
+                        pingPending = false;
+                        inFlight = pingFrame;
+                    } else {
+                        SharedFrame next = pendingMotor.get();
+                        if (next == null || isPaced(next)) {
+                            break;
+                        }
+                        inFlightFrame = pendingMotor.getAndSet(null);
+                        lastMotorSentNanos = System.nanoTime();
+                        inFlight = inFlightFrame.reset(viewOf(inFlightFrame));
+                    }
+                }
+
+                int written;
+                try {
+                    written = channel.write(inFlight);
+                } catch (IOException e) {
+                    SEND_FAILURES.increment();
+                    throw e;
+                }
+                bytesSent += written;
+                BYTES_WRITTEN.add(written);
+                if (inFlight.hasRemaining()) {
+                    // Socket send buffer full; continue when it drains
+                    if (stalledSinceNanos == 0) {
+                        stalledSinceNanos = System.nanoTime();
+                    }
+                    key.interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    return;
+                }
+                inFlight = null;
+                if (inFlightFrame != null) {
+                    PipelineLatency.SEND.record(System.nanoTime() - inFlightFrame.publishedNanos());
+                    COMMANDS_SENT.increment();
+                    inFlightFrame.release();
+                    inFlightFrame = null;
+                }
+                messagesSent++;
+            }
+            stalledSinceNanos = 0;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * True if a motor command must wait for the command interval to pass. A
+         * flush is then scheduled for when it has; newer commands replace the held
+         * one meanwhile.
+         */
+        private boolean isPaced(SharedFrame frame) {
+            long interval = commandIntervalNanos;
+            if (interval == 0 || frame.type() == MotorCommandCodec.TYPE_STOP) {
+                return false;
+            }
+            long wait = lastMotorSentNanos + interval - System.nanoTime();
+            if (wait <= 0) {
+                return false;
+            }
+            if (!pacedFlushScheduled) {
+                pacedFlushScheduled = true;
+                loop.schedule(pacedFlushTimer, wait);
+            }
+            return true;
+        }
+
+        private void pacedFlush() {
+            pacedFlushScheduled = false;
+            try {
+                flush();
+            } catch (IOException e) {
+                handleError(e);
+            }
+        }
+
+        /**
+         * This client's read-only view of a shared frame, created on first use
+         */
+        private ByteBuffer viewOf(SharedFrame frame) {
+            if (frame.id < 0) {
+                return frame.newView();
+            }
+            if (frame.id >= frameViews.length) {
+                frameViews = Arrays.copyOf(frameViews, Math.max(frame.id + 1, frameViews.length * 2));
+            }
+            ByteBuffer view = frameViews[frame.id];
+            if (view == null) {
+                view = frame.newView();
+                frameViews[frame.id] = view;
+            }
+            return view;
+        }
+
+        private static void releaseFrames(SharedFrame pending) {
+            if (pending != null) {
+                pending.release();
+            }
+        }
+
+        /**
+         * Return frames still held by this client to the pool. Runs on the loop thread.
+         */
+        private void releaseFrames() {
+            releaseFrames(pendingMotor.getAndSet(null));
+            if (inFlightFrame != null) {
+                inFlightFrame.release();
+                inFlightFrame = null;
+            }
+            inFlight = null;
+        }
+
+        boolean isStalledLongerThan(long nowNanos, long deadlineNanos) {
+            long since = stalledSinceNanos;
+            return since != 0 && nowNanos - since > deadlineNanos;
+        }
+
+        /**
+         * Messages and motor commands waiting to be written, including a partly written one
+         */
+        public int getQueueDepth() {
+            return queuedMessages.get() + (pendingMotor.get() != null ? 1 : 0) + (pingPending ? 1 : 0)
+                + (inFlight != null ? 1 : 0);
+        }
+
+        /**
+         * Motor commands replaced by a newer one before they were sent
+         */
+        public long getCoalescedCommandCount() {
+            return coalescedCommands.get();
+        }
+
+        public long getMessagesSent() {
+            return messagesSent;
+        }
+
+        public long getBytesSent() {
+            return bytesSent;
+        }
+
+        /**
+         * Smoothed round-trip time from heartbeats, in microseconds, or -1 before the first pong
+         */
+        public long getSmoothedRttMicros() {
+            long srtt = smoothedRttNanos;
+            return srtt < 0 ? -1 : srtt / 1000;
+        }
+
+        /**
+         * Mean deviation of the round-trip time, in microseconds
+         */
+        public long getRttVariationMicros() {
+            return rttVariationNanos / 1000;
+        }
+
+        /**
+         * Lowest round-trip time seen recently, in microseconds, or -1 before the first pong
+         */
+        public long getMinRttMicros() {
+            long min = minRttNanos;
+            return min < 0 ? -1 : min / 1000;
+        }
+
+        /**
+         * Smoothed fraction of heartbeats not answered in time (0.0 to 1.0)
+         */
+        public double getPingLossRate() {
+            return pingLossRate;
+        }
+
+        public long getPingsSent() {
+            return pingsSent;
+        }
+
+        public long getPongsReceived() {
+            return pongsReceived;
+        }
+
+        /**
+         * Minimum time between motor commands to this client; 0 means full rate
+         */
+        public long getCommandIntervalMillis() {
+            return commandIntervalNanos / 1_000_000L;
+        }
+
+        /**
+         * True if this client was disconnected for falling behind
+         */
+        public boolean isEvicted() {
+            return evicted.get();
+        }
+
+        public SocketAddress getRemoteAddress() {
+            try {
+                return channel.getRemoteAddress();
+            } catch (IOException e) {
+                return null;
             }
         }
 
@@ -208,18 +1471,17 @@ public class RobotNetworkServer {
          * Disconnect this client
          */
         protected void disconnect() {
-            connected = false;
+            if (!connected.compareAndSet(true, false)) {
+                return;
+            }
             try {
-                if (reader != null) reader.close();
-                if (writer != null) writer.close();
-                if (socket != null && !socket.isClosed()) {
-                    socket.close();
-                }
+                channel.close();
             } catch (IOException e) {
                 logger.error("Error closing client connection", e);
             }
+            outbound.clear();
+            loop.execute(this::releaseFrames);
             server.removeClient(this);
         }
     }
 }
-
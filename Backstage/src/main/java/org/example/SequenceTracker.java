@@ -0,0 +1,57 @@
+package org.example;
+
+/**
+ * Latest-wins filter for sequenced motor commands.
+ *
+ * A command is accepted only if its sequence number is newer than the last
+ * accepted one (compared with wrap-around, like RTP sequence numbers). A jump
+ * backwards of more than MAX_MISORDER is treated as the sender having restarted
+ * its counter, and tracking resynchronises on the new value.
+ */
+public class SequenceTracker {
+    /** Older commands within this distance are considered reordered, not a restart */
+    public static final int MAX_MISORDER = 1024;
+
+    private boolean initialized = false;
+    private int lastAccepted;
+    private long accepted = 0;
+    private long discarded = 0;
+
+    /**
+     * @return true if the command should be applied
+     */
+    public synchronized boolean accept(int sequence) {
+        if (!initialized) {
+            initialized = true;
+            lastAccepted = sequence;
+            accepted++;
+            return true;
+        }
+
+        int delta = sequence - lastAccepted;
+        if (delta > 0 || delta < -MAX_MISORDER) {
+            lastAccepted = sequence;
+            accepted++;
+            return true;
+        }
+
+        discarded++;
+        return false;
+    }
+
+    /**
+     * Forget the last sequence number, e.g. after connecting to a new server session
+     */
+    public synchronized void reset() {
+        initialized = false;
+    }
+
+    public synchronized long getAccepted() {
+        return accepted;
+    }
+
+    /** Duplicate or out-of-date commands that were dropped */
+    public synchronized long getDiscarded() {
+        return discarded;
+    }
+}
@@ -0,0 +1,89 @@
+package org.example;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * An encoded message shared by every client it is broadcast to.
+ *
+ * The bytes live in one direct buffer and are never copied per client: each client
+ * writes through its own read-only view (see view()), which gives it an
+ * independent position. The frame is reference counted and goes back to its pool
+ * once the last client has finished writing it.
+ */
+final class SharedFrame {
+    /** Large enough for a JSON motor command line */
+    static final int CAPACITY = 256;
+
+    final int id;
+    private final SharedFramePool pool;
+    private final ByteBuffer data = ByteBuffer.allocateDirect(CAPACITY);
+    private final ByteBuffer readOnly = data.asReadOnlyBuffer();
+    private final AtomicInteger refCount = new AtomicInteger();
+    private byte type;
+    private int length;
+    private long publishedNanos;
+
+    SharedFrame(int id, SharedFramePool pool) {
+        this.id = id;
+        this.pool = pool;
+    }
+
+    /**
+     * Buffer to encode into; cleared. Call publish() when done.
+     * @param type MotorCommandCodec frame type of the message, whatever the wire format
+     */
+    ByteBuffer beginWrite(byte type) {
+        this.type = type;
+        data.clear();
+        refCount.set(1);
+        return data;
+    }
+
+    /**
+     * Finish encoding; the bytes between 0 and the write position become the frame
+     */
+    void publish() {
+        length = data.position();
+        publishedNanos = System.nanoTime();
+    }
+
+    byte type() {
+        return type;
+    }
+
+    int length() {
+        return length;
+    }
+
+    /** When encoding finished, on the System.nanoTime() scale */
+    long publishedNanos() {
+        return publishedNanos;
+    }
+
+    /**
+     * Create a new read-only view of the backing buffer for one client. Views are
+     * cached by the caller and reset with reset() before each write.
+     */
+    ByteBuffer newView() {
+        return readOnly.duplicate();
+    }
+
+    /**
+     * Position a cached view on this frame's bytes
+     */
+    ByteBuffer reset(ByteBuffer view) {
+        view.limit(length).position(0);
+        return view;
+    }
+
+    void retain() {
+        refCount.incrementAndGet();
+    }
+
+    void release() {
+        if (refCount.decrementAndGet() == 0 && pool != null) {
+            pool.recycle(this);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+package org.example;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Recycles SharedFrames so broadcasting does not allocate once the pool has grown
+ * to the working set (about two frames per client: one pending, one being written).
+ */
+final class SharedFramePool {
+    /** Frames beyond this many are allocated unpooled and left to the GC */
+    static final int MAX_POOLED_FRAMES = 16384;
+
+    private final ArrayBlockingQueue<SharedFrame> free;
+    private final AtomicInteger created = new AtomicInteger();
+    private final int maxPooledFrames;
+
+    SharedFramePool() {
+        this(MAX_POOLED_FRAMES);
+    }
+
+    /**
+     * @param maxPooledFrames Frames beyond this many are allocated unpooled
+     */
+    SharedFramePool(int maxPooledFrames) {
+        this.maxPooledFrames = maxPooledFrames;
+        this.free = new ArrayBlockingQueue<>(maxPooledFrames);
+    }
+
+    /**
+     * Take a free frame, creating one if none is available
+     */
+    SharedFrame acquire() {
+        SharedFrame frame = free.poll();
+        if (frame != null) {
+            return frame;
+        }
+        int id = created.getAndIncrement();
+        if (id < maxPooledFrames) {
+            return new SharedFrame(id, this);
+        }
+        created.decrementAndGet();
+        return new SharedFrame(-1, null);
+    }
+
+    void recycle(SharedFrame frame) {
+        free.offer(frame);
+    }
+
+    /**
+     * Number of pooled frames created so far
+     */
+    int size() {
+        return created.get();
+    }
+}
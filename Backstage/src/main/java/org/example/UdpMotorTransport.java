@@ -0,0 +1,240 @@
+package org.example;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.DatagramChannel;
+import java.util.Map;
+import java.util.concurrent.*;
+
+/**
+ * Datagram transport for the motor command stream.
+ *
+ * Robots register by sending TYPE_HELLO frames to the server's UDP port and keep
+ * doing so as a keepalive. Motor frames are fire-and-forget: a lost datagram is
+ * simply superseded by the next one, so a drop never delays newer commands the
+ * way a lost TCP segment does. Stop frames are retransmitted until the robot
+ * acknowledges them with TYPE_ACK.
+ */
+public class UdpMotorTransport {
+    private static final Logger logger = LoggerFactory.getLogger(UdpMotorTransport.class);
+
+    // Retransmit settings for reliable frames
+    private static final long RETRANSMIT_INTERVAL_MS = 20;
+    private static final int MAX_RETRANSMITS = 25;
+
+    // Peers that have not sent a hello for this long are dropped
+    private static final long PEER_TIMEOUT_MS = 5000;
+
+    private final int port;
+    private DatagramChannel channel;
+    private final Map<SocketAddress, Peer> peers = new ConcurrentHashMap<>();
+    private ScheduledExecutorService retransmitExecutor;
+    private volatile boolean running = false;
+
+    // Fraction of outgoing datagrams to drop on purpose, for loss testing
+    private volatile double simulatedLossRate = 0.0;
+
+    public UdpMotorTransport(int port) {
+        this.port = port;
+    }
+
+    /**
+     * Bind the datagram channel and start the receive and retransmit threads
+     */
+    public void start() throws IOException {
+        channel = DatagramChannel.open();
+        channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+        channel.bind(new InetSocketAddress(port));
+        running = true;
+
+        Thread receiveThread = new Thread(this::receiveLoop);
+        receiveThread.setName("UdpMotorTransport-Receive");
+        receiveThread.setDaemon(true);
+        receiveThread.start();
+
+        retransmitExecutor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "UdpMotorTransport-Retransmit");
+            t.setDaemon(true);
+            return t;
+        });
+        retransmitExecutor.scheduleAtFixedRate(this::retransmitPending,
+            RETRANSMIT_INTERVAL_MS, RETRANSMIT_INTERVAL_MS, TimeUnit.MILLISECONDS);
+
+        logger.info("UDP motor transport listening on port {}", port);
+    }
+
+    /**
+     * Stop the transport and forget all peers
+     */
+    public void stop() {
+        running = false;
+        if (retransmitExecutor != null) {
+            retransmitExecutor.shutdownNow();
+        }
+        try {
+            if (channel != null) {
+                channel.close();
+            }
+        } catch (IOException e) {
+            logger.error("Error closing UDP channel", e);
+        }
+        peers.clear();
+    }
+
+    /**
+     * Send an encoded frame to every registered peer, without acknowledgement.
+     * @param frame Frame bytes between position and limit; position is left unchanged
+     */
+    public void send(ByteBuffer frame) {
+        for (Peer peer : peers.values()) {
+            sendTo(peer.address, frame);
+        }
+    }
+
+    /**
+     * Send an encoded frame to every registered peer and retransmit it until each
+     * peer acknowledges its sequence number.
+     */
+    public void sendReliable(ByteBuffer frame, int sequence) {
+        byte[] copy = new byte[frame.remaining()];
+        frame.get(frame.position(), copy);
+        for (Peer peer : peers.values()) {
+            peer.pending = new PendingFrame(copy, sequence);
+            sendTo(peer.address, frame);
+        }
+    }
+
+    /**
+     * Drop this fraction (0.0 to 1.0) of outgoing datagrams, to exercise the
+     * latest-wins and retransmit paths on a loopback link
+     */
+    public void setSimulatedLossRate(double lossRate) {
+        this.simulatedLossRate = lossRate;
+    }
+
+    /**
+     * Number of robots currently registered
+     */
+    public int getPeerCount() {
+        return peers.size();
+    }
+
+    /**
+     * Send the bytes between position and limit, then put the position back, so
+     * one buffer serves every peer without a view per send
+     */
+    private void sendTo(SocketAddress address, ByteBuffer frame) {
+        double lossRate = simulatedLossRate;
+        if (lossRate > 0 && ThreadLocalRandom.current().nextDouble() < lossRate) {
+            return;
+        }
+        int start = frame.position();
+        try {
+            int sent = channel.send(frame, address);
+            RobotNetworkServer.BYTES_WRITTEN.add(sent);
+            RobotNetworkServer.COMMANDS_SENT.increment();
+        } catch (IOException e) {
+            RobotNetworkServer.SEND_FAILURES.increment();
+            if (running) {
+                logger.warn("Failed to send datagram to {}: {}", address, e.getMessage());
+            }
+        } finally {
+            frame.position(start);
+        }
+    }
+
+    /**
+     * Handle hello and ack frames from robots
+     */
+    private void receiveLoop() {
+        ByteBuffer buffer = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+
+        while (running) {
+            try {
+                buffer.clear();
+                SocketAddress sender = channel.receive(buffer);
+                buffer.flip();
+                if (!MotorCommandCodec.decode(buffer, frame)) {
+                    continue;
+                }
+
+                if (frame.type == MotorCommandCodec.TYPE_HELLO) {
+                    Peer peer = peers.computeIfAbsent(sender, address -> {
+                        logger.info("UDP robot registered: {}", address);
+                        return new Peer(address);
+                    });
+                    peer.lastSeenMillis = System.currentTimeMillis();
+                } else if (frame.type == MotorCommandCodec.TYPE_ACK) {
+                    Peer peer = peers.get(sender);
+                    PendingFrame pending = peer != null ? peer.pending : null;
+                    if (pending != null && pending.sequence == frame.sequence) {
+                        peer.pending = null;
+                    }
+                }
+            } catch (ClosedChannelException e) {
+                break;
+            } catch (IllegalArgumentException e) {
+                logger.debug("Ignoring malformed datagram: {}", e.getMessage());
+            } catch (IOException e) {
+                if (running) {
+                    logger.error("Error receiving datagram", e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Resend unacknowledged frames and expire silent peers
+     */
+    private void retransmitPending() {
+        long now = System.currentTimeMillis();
+        for (Peer peer : peers.values()) {
+            if (now - peer.lastSeenMillis > PEER_TIMEOUT_MS) {
+                peers.remove(peer.address);
+                logger.info("UDP robot timed out: {}", peer.address);
+                continue;
+            }
+
+            PendingFrame pending = peer.pending;
+            if (pending == null) {
+                continue;
+            }
+            if (++pending.attempts > MAX_RETRANSMITS) {
+                logger.warn("No ack from {} for frame {}", peer.address, pending.sequence);
+                peer.pending = null;
+                continue;
+            }
+            sendTo(peer.address, pending.frame);
+        }
+    }
+
+    private static class Peer {
+        final SocketAddress address;
+        volatile long lastSeenMillis = System.currentTimeMillis();
+        volatile PendingFrame pending;
+
+        Peer(SocketAddress address) {
+            this.address = address;
+        }
+    }
+
+    private static class PendingFrame {
+        // Only the retransmit thread sends from this view
+        final ByteBuffer frame;
+        final int sequence;
+        int attempts = 0;
+
+        PendingFrame(byte[] frame, int sequence) {
+            this.frame = ByteBuffer.wrap(frame);
+            this.sequence = sequence;
+        }
+    }
+}
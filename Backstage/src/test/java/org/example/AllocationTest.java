@@ -0,0 +1,191 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.locks.LockSupport;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks that the control path allocates nothing once it has warmed up.
+ *
+ * Stick events are shaped by the default ResponseCurve and fed to a
+ * RobotController ticking at the production control rate, which sends the
+ * current command through NetworkRobotImpl (with its keepalive timer) and
+ * RobotNetworkServer to a RaspberryPiMotorClient on loopback, whose actuator
+ * applies it to a motor controller that does nothing. Warm-up runs the
+ * controller at WARMUP_RATE_HZ, so that the path downstream of the tick, which
+ * otherwise runs only CONTROL_RATE_HZ times a second, is fully compiled within
+ * seconds. Then, back at the production rate, a measured pass of EVENTS events
+ * reads the bytes allocated by each thread on that path from the JVM's
+ * per-thread allocation counters. Any allocation fails
+ * the test, except that one pass may be retried, with a warning, in case the
+ * JIT recompiled part of the path during it.
+ *
+ * Debug logging must be off, as it is in production; with it on, the log
+ * messages themselves allocate.
+ */
+class AllocationTest {
+    private static final Logger logger = LoggerFactory.getLogger(AllocationTest.class);
+
+    // Threads on the event-to-wire and wire-to-motor path
+    private static final String[] HOT_THREAD_PREFIXES = {
+        "RobotController-Tick", "NetworkRobot-Keepalive", "RobotNetworkServer-IO-",
+        "RaspberryPi-Listener", "RaspberryPi-Actuator"
+    };
+
+    private static final int EVENTS = 100_000;
+    private static final int RATE = 50_000;
+    // Enough passes for the path to reach its final compiled form
+    private static final int WARMUP_PASSES = 3;
+    // At the production rate, methods called once per tick take about a minute to
+    // reach the optimizing compiler, and each recompile can allocate as it swaps code
+    private static final int WARMUP_RATE_HZ = 5_000;
+    // Time for the last commands to reach the motors before the counters are read
+    private static final long SETTLE_MS = 500;
+
+    private final com.sun.management.ThreadMXBean threads =
+        (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+    private final ResponseCurve curve = ResponseCurve.DEFAULT;
+
+    private NetworkRobotImpl robot;
+    private RaspberryPiMotorClient client;
+    private RobotController controller;
+    private int step = 0;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        Assumptions.assumeTrue(threads.isThreadAllocatedMemorySupported(),
+            "This JVM does not report per-thread allocation");
+        threads.setThreadAllocatedMemoryEnabled(true);
+
+        int port;
+        try (ServerSocket probe = new ServerSocket(0)) {
+            port = probe.getLocalPort();
+        }
+        robot = new NetworkRobotImpl(port);
+        client = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> { });
+        client.connect();
+        assertTrue(client.isConnected(), "client could not connect to port " + port);
+        controller = RobotController.withoutController(robot, ControlConfig.CONTROL_RATE_HZ);
+        controller.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        if (controller != null) {
+            controller.stop();
+        }
+        if (client != null) {
+            client.disconnect();
+        }
+        if (robot != null) {
+            robot.shutdown();
+        }
+    }
+
+    @Test
+    void controlPathDoesNotAllocateInSteadyState() throws Exception {
+        ControlLoop tick = controller.getControlLoop();
+        tick.setRateHz(WARMUP_RATE_HZ);
+        for (int i = 0; i < WARMUP_PASSES; i++) {
+            drive();
+        }
+        tick.setRateHz(ControlConfig.CONTROL_RATE_HZ);
+        Thread.sleep(SETTLE_MS);
+
+        List<Thread> hotThreads = findHotThreads();
+        for (String prefix : HOT_THREAD_PREFIXES) {
+            assertTrue(hotThreads.stream().anyMatch(t -> t.getName().startsWith(prefix)), "no thread " + prefix);
+        }
+
+        String allocations = measure(hotThreads);
+        if (!allocations.isEmpty()) {
+            // The JIT occasionally recompiles hot code mid-pass, and the interpreter it
+            // falls back to allocates the objects that compiled code keeps in registers.
+            // That costs a few hundred bytes once; a real allocation recurs every pass.
+            logger.warn("Measured pass allocated ({}); retrying once in case the JIT recompiled during it",
+                allocations);
+            allocations = measure(hotThreads);
+        }
+        assertEquals("", allocations, "control path allocated in both measured passes");
+    }
+
+    /**
+     * Feed EVENTS stick events at RATE, moving both sticks so that every event
+     * changes a motor command
+     */
+    private void drive() {
+        long interval = 1_000_000_000L / RATE;
+        long next = System.nanoTime();
+        for (int i = 0; i < EVENTS; i++) {
+            step = (step + 1) & 127;
+            int raw = (step - 64) * 512;
+            int axis = (i & 1) == 0 ? PS4Controller.AXIS_LEFT_STICK_Y : PS4Controller.AXIS_RIGHT_STICK_Y;
+            controller.onAxisMotion(axis, curve.shape(raw), System.nanoTime());
+
+            next += interval;
+            long remaining = next - System.nanoTime();
+            if (remaining > 0) {
+                LockSupport.parkNanos(remaining);
+            }
+        }
+    }
+
+    /**
+     * Drive one measured pass
+     * @return the threads that allocated and how much, empty if none did
+     */
+    private String measure(List<Thread> hotThreads) throws InterruptedException {
+        long[] ids = new long[hotThreads.size()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = hotThreads.get(i).getId();
+        }
+        long[] before = threads.getThreadAllocatedBytes(ids);
+        long driverBefore = threads.getCurrentThreadAllocatedBytes();
+
+        long appliedBefore = client.getAppliedCommandCount();
+        drive();
+        long driverBytes = threads.getCurrentThreadAllocatedBytes() - driverBefore;
+        Thread.sleep(SETTLE_MS);
+        long[] after = threads.getThreadAllocatedBytes(ids);
+        assertTrue(client.getAppliedCommandCount() > appliedBefore, "no commands reached the motors");
+
+        StringBuilder allocations = new StringBuilder();
+        append(allocations, Thread.currentThread().getName() + " (events)", driverBytes);
+        for (int i = 0; i < ids.length; i++) {
+            append(allocations, hotThreads.get(i).getName(), after[i] - before[i]);
+        }
+        return allocations.toString();
+    }
+
+    private static void append(StringBuilder allocations, String thread, long bytes) {
+        if (bytes > 0) {
+            if (allocations.length() > 0) {
+                allocations.append(", ");
+            }
+            allocations.append(thread).append(": ").append(bytes).append(" bytes");
+        }
+    }
+
+    private static List<Thread> findHotThreads() {
+        List<Thread> found = new ArrayList<>();
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            for (String prefix : HOT_THREAD_PREFIXES) {
+                if (thread.getName().startsWith(prefix)) {
+                    found.add(thread);
+                }
+            }
+        }
+        return found;
+    }
+}
@@ -0,0 +1,229 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Feeds recorded-style input_event streams through LinuxEvdevController.readBatch
+ */
+class LinuxEvdevControllerTest {
+
+    private static final int EV_SYN = 0x00;
+    private static final int EV_KEY = 0x01;
+    private static final int EV_ABS = 0x03;
+    private static final int SYN_REPORT = 0;
+    private static final int SYN_DROPPED = 3;
+    private static final int ABS_X = 0x00;
+    private static final int ABS_Y = 0x01;
+    private static final int ABS_Z = 0x02;
+    private static final int ABS_RY = 0x04;
+    private static final int ABS_HAT0X = 0x10;
+    private static final int BTN_SOUTH = 0x130;
+    private static final int BTN_TL = 0x136;
+
+    private static final boolean WIDE = !"32".equals(System.getProperty("sun.arch.data.model"));
+    private static final int EVENT_SIZE = WIDE ? 24 : 16;
+
+    private static final ResponseCurve LINEAR = new ResponseCurve(0.0f, 1.0f, 0.0f, 1.0f);
+
+    @Test
+    void framesAreDispatchedAtSynReport() throws Exception {
+        ByteBuffer stream = events(
+            event(EV_ABS, ABS_X, 255),
+            event(EV_ABS, ABS_RY, 0),
+            event(EV_ABS, ABS_Z, 255),
+            event(EV_ABS, ABS_HAT0X, -1),
+            event(EV_KEY, BTN_SOUTH, 1),
+            event(EV_SYN, SYN_REPORT, 0),
+            event(EV_KEY, BTN_SOUTH, 0),
+            event(EV_KEY, BTN_TL, 2),   // auto-repeat, ignored
+            event(EV_SYN, SYN_REPORT, 0));
+        Recorder recorder = new Recorder();
+        LinuxEvdevController controller = new LinuxEvdevController("fixture", recorder);
+        controller.setResponseCurve(LINEAR);
+
+        readAll(controller, new ChunkedChannel(stream, Integer.MAX_VALUE));
+
+        assertEquals(1, recorder.frames.size());
+        float[] frame = recorder.frames.get(0);
+        assertEquals(1 << PS4Controller.AXIS_LEFT_STICK_X | 1 << PS4Controller.AXIS_RIGHT_STICK_Y
+            | 1 << PS4Controller.AXIS_L2_TRIGGER | 1 << PS4Controller.AXIS_DPAD_X, recorder.changedAxes.get(0));
+        assertEquals(1.0f, frame[PS4Controller.AXIS_LEFT_STICK_X], 1e-4f);
+        assertEquals(-1.0f, frame[PS4Controller.AXIS_RIGHT_STICK_Y], 1e-4f);
+        assertEquals(1.0f, frame[PS4Controller.AXIS_L2_TRIGGER], 1e-4f);
+        assertEquals(-1.0f, frame[PS4Controller.AXIS_DPAD_X]);
+        assertEquals(List.of("+" + PS4Controller.BUTTON_CROSS, "-" + PS4Controller.BUTTON_CROSS), recorder.buttons);
+        assertEquals(9, controller.getEventsRead());
+        assertEquals(2, controller.getFramesDispatched());
+    }
+
+    @Test
+    void eventsSplitAcrossReadsAreReassembled() throws Exception {
+        ByteBuffer stream = events(
+            event(EV_ABS, ABS_Y, 0),
+            event(EV_SYN, SYN_REPORT, 0),
+            event(EV_ABS, ABS_Y, 255),
+            event(EV_SYN, SYN_REPORT, 0));
+        Recorder recorder = new Recorder();
+        LinuxEvdevController controller = new LinuxEvdevController("fixture", recorder);
+        controller.setResponseCurve(LINEAR);
+
+        // 7 bytes per read never lines up with an event boundary
+        readAll(controller, new ChunkedChannel(stream, 7));
+
+        assertEquals(2, recorder.frames.size());
+        assertEquals(-1.0f, recorder.frames.get(0)[PS4Controller.AXIS_LEFT_STICK_Y], 1e-4f);
+        assertEquals(1.0f, recorder.frames.get(1)[PS4Controller.AXIS_LEFT_STICK_Y], 1e-4f);
+    }
+
+    @Test
+    void framesAfterSynDroppedAreDiscardedUntilNextReport() throws Exception {
+        ByteBuffer stream = events(
+            event(EV_ABS, ABS_X, 0),
+            event(EV_SYN, SYN_DROPPED, 0),
+            event(EV_ABS, ABS_X, 255),
+            event(EV_SYN, SYN_REPORT, 0),
+            event(EV_ABS, ABS_Y, 255),
+            event(EV_SYN, SYN_REPORT, 0));
+        Recorder recorder = new Recorder();
+        LinuxEvdevController controller = new LinuxEvdevController("fixture", recorder);
+        controller.setResponseCurve(LINEAR);
+
+        readAll(controller, new ChunkedChannel(stream, Integer.MAX_VALUE));
+
+        assertEquals(1, recorder.frames.size());
+        assertEquals(1 << PS4Controller.AXIS_LEFT_STICK_Y, recorder.changedAxes.get(0));
+        assertEquals(1, controller.getDroppedFrames());
+    }
+
+    @Test
+    void onlySticksAreShaped() throws Exception {
+        ByteBuffer stream = events(
+            event(EV_ABS, ABS_Y, 255),
+            event(EV_ABS, ABS_Z, 191),
+            event(EV_SYN, SYN_REPORT, 0));
+        Recorder recorder = new Recorder();
+        LinuxEvdevController controller = new LinuxEvdevController("fixture", recorder);
+        controller.setResponseCurve(new ResponseCurve(0.2f, 1.0f, 1.0f, 0.5f));
+
+        readAll(controller, new ChunkedChannel(stream, Integer.MAX_VALUE));
+
+        float[] frame = recorder.frames.get(0);
+        assertEquals(0.5f, frame[PS4Controller.AXIS_LEFT_STICK_Y], 1e-4f);
+        // Three quarters of the travel, unaffected by dead zone, expo and max speed
+        assertEquals(127 / 255.0f, frame[PS4Controller.AXIS_L2_TRIGGER], 1e-3f);
+    }
+
+    private static void readAll(LinuxEvdevController controller, ReadableByteChannel channel) throws Exception {
+        while (controller.readBatch(channel)) {
+            // Read to the end of the fixture
+        }
+    }
+
+    private static ByteBuffer event(int type, int code, int value) {
+        ByteBuffer event = ByteBuffer.allocate(EVENT_SIZE).order(ByteOrder.nativeOrder());
+        if (WIDE) {
+            event.putLong(1_700_000_000L).putLong(123_456L);
+        } else {
+            event.putInt(1_700_000_000).putInt(123_456);
+        }
+        event.putShort((short) type).putShort((short) code).putInt(value);
+        event.flip();
+        return event;
+    }
+
+    private static ByteBuffer events(ByteBuffer... events) {
+        ByteBuffer stream = ByteBuffer.allocate(events.length * EVENT_SIZE);
+        for (ByteBuffer event : events) {
+            stream.put(event);
+        }
+        stream.flip();
+        return stream;
+    }
+
+    /**
+     * Returns at most chunk bytes per read, then end of stream
+     */
+    static final class ChunkedChannel implements ReadableByteChannel {
+        private final ByteBuffer data;
+        private final int chunk;
+
+        ChunkedChannel(ByteBuffer data, int chunk) {
+            this.data = data;
+            this.chunk = chunk;
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!data.hasRemaining()) {
+                return -1;
+            }
+            int n = Math.min(Math.min(chunk, data.remaining()), dst.remaining());
+            ByteBuffer slice = data.duplicate();
+            slice.limit(slice.position() + n);
+            dst.put(slice);
+            data.position(data.position() + n);
+            return n;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Keeps a copy of every frame, button event and motion sample
+     */
+    static final class Recorder implements ControllerListener {
+        final List<float[]> frames = new ArrayList<>();
+        final List<Integer> changedAxes = new ArrayList<>();
+        final List<String> buttons = new ArrayList<>();
+        final List<float[]> gyro = new ArrayList<>();
+        final List<float[]> accel = new ArrayList<>();
+        final List<Long> motionNanos = new ArrayList<>();
+
+        @Override
+        public void onButtonPressed(int buttonId) {
+            buttons.add("+" + buttonId);
+        }
+
+        @Override
+        public void onButtonReleased(int buttonId) {
+            buttons.add("-" + buttonId);
+        }
+
+        @Override
+        public void onAxisMotion(int axisId, float value) {
+            fail("report-based backends dispatch whole frames");
+        }
+
+        @Override
+        public void onAxisFrame(int changedAxes, float[] values, long timestampNanos) {
+            this.changedAxes.add(changedAxes);
+            frames.add(values.clone());
+        }
+
+        @Override
+        public void onMotion(float[] gyro, float[] accel, long timestampNanos) {
+            this.gyro.add(gyro.clone());
+            this.accel.add(accel.clone());
+            motionNanos.add(timestampNanos);
+        }
+
+        @Override
+        public void onControllerDisconnected() {
+        }
+    }
+}
@@ -0,0 +1,223 @@
+package org.example;
+
+import org.example.LinuxEvdevControllerTest.ChunkedChannel;
+import org.example.LinuxEvdevControllerTest.Recorder;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.ReadableByteChannel;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Feeds DualShock 4 input reports, laid out as the controller sends them over
+ * USB and Bluetooth, through LinuxHidrawController.readBatch
+ */
+class LinuxHidrawControllerTest {
+
+    private static final int ALL_AXES = (1 << PS4Controller.AXIS_COUNT) - 1;
+    // Hat value for "nothing pressed"
+    private static final int HAT_NEUTRAL = 8;
+    private static final int HAT_EAST = 2;
+
+    @Test
+    void usbReportIsDecoded() throws Exception {
+        ByteBuffer stream = stream(new Report()
+            .sticks(255, 0, 128, 128)
+            .triggers(191, 0)
+            .buttons(0x20 | HAT_EAST, 0x01, 0x01)   // cross, L1, PS
+            .motion(new int[] {1638, -1638, 0}, new int[] {0, 8192, -4096})
+            .usb());
+        Recorder recorder = new Recorder();
+        LinuxHidrawController controller = new LinuxHidrawController("fixture", recorder);
+        controller.setResponseCurve(new ResponseCurve(0.0f, 1.0f, 0.0f, 0.5f));
+
+        readAll(controller, new ChunkedChannel(stream, Integer.MAX_VALUE));
+
+        assertEquals(1, controller.getReportsRead());
+        assertEquals(ALL_AXES, recorder.changedAxes.get(0));
+        float[] frame = recorder.frames.get(0);
+        // Sticks are limited to the curve's max speed, triggers keep their full travel
+        assertEquals(0.5f, frame[PS4Controller.AXIS_LEFT_STICK_X], 1e-4f);
+        assertEquals(-0.5f, frame[PS4Controller.AXIS_LEFT_STICK_Y], 1e-4f);
+        assertEquals(0.0f, frame[PS4Controller.AXIS_RIGHT_STICK_X], 0.01f);
+        assertEquals(127 / 255.0f, frame[PS4Controller.AXIS_L2_TRIGGER], 1e-3f);
+        assertEquals(-1.0f, frame[PS4Controller.AXIS_R2_TRIGGER], 1e-4f);
+        assertEquals(1.0f, frame[PS4Controller.AXIS_DPAD_X]);
+        assertEquals(0.0f, frame[PS4Controller.AXIS_DPAD_Y]);
+
+        assertEquals(List.of("+" + PS4Controller.BUTTON_CROSS, "+" + PS4Controller.BUTTON_L1,
+            "+" + PS4Controller.BUTTON_PS), recorder.buttons);
+
+        assertArrayEquals(new float[] {100.0f, -100.0f, 0.0f}, recorder.gyro.get(0), 0.05f);
+        assertArrayEquals(new float[] {0.0f, 1.0f, -0.5f}, recorder.accel.get(0), 1e-4f);
+    }
+
+    @Test
+    void bluetoothReportsAreFoundAmongOtherBytes() throws Exception {
+        ByteBuffer stream = stream(
+            new byte[] {0x00, 0x42, 0x43},
+            new Report().sticks(0, 128, 128, 128).buttons(0x20 | HAT_NEUTRAL, 0, 0).ticks(100).bluetooth(),
+            new Report().sticks(0, 255, 128, 128).buttons(HAT_NEUTRAL, 0, 0).ticks(400).bluetooth());
+        Recorder recorder = new Recorder();
+        LinuxHidrawController controller = new LinuxHidrawController("fixture", recorder);
+        controller.setResponseCurve(new ResponseCurve(0.0f, 1.0f, 0.0f, 1.0f));
+
+        // 50 bytes per read splits both reports
+        readAll(controller, new ChunkedChannel(stream, 50));
+
+        assertEquals(2, controller.getReportsRead());
+        assertEquals(3, controller.getSkippedBytes());
+        assertEquals(2, recorder.frames.size());
+        assertEquals(-1.0f, recorder.frames.get(0)[PS4Controller.AXIS_LEFT_STICK_X], 1e-4f);
+        assertEquals(0.0f, recorder.frames.get(0)[PS4Controller.AXIS_DPAD_X]);
+        assertEquals(1 << PS4Controller.AXIS_LEFT_STICK_Y, recorder.changedAxes.get(1));
+        assertEquals(1.0f, recorder.frames.get(1)[PS4Controller.AXIS_LEFT_STICK_Y], 1e-4f);
+        assertEquals(List.of("+" + PS4Controller.BUTTON_CROSS, "-" + PS4Controller.BUTTON_CROSS), recorder.buttons);
+
+        // 300 sensor ticks of 5.33 us each
+        assertEquals(2, recorder.motionNanos.size());
+        assertEquals(1_600_000L, recorder.motionNanos.get(1) - recorder.motionNanos.get(0));
+    }
+
+    @Test
+    void shortDeviceReportsAreDroppedNotJoined() throws Exception {
+        // A Bluetooth DS4 before it is switched to full reports: 10-byte report
+        // 0x01, enough of them to fill a USB-sized report if they were buffered
+        List<byte[]> reads = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            byte[] basic = new byte[10];
+            basic[0] = 0x01;
+            basic[1] = (byte) 255;          // left X
+            basic[5] = (byte) (0x20 | HAT_NEUTRAL);
+            reads.add(basic);
+        }
+        reads.add(new Report().sticks(0, 128, 128, 128).bluetooth());
+        reads.add(new Report().sticks(0, 128, 128, 128).buttons(0x20 | HAT_NEUTRAL, 0, 0).usb());
+        Recorder recorder = new Recorder();
+        LinuxHidrawController controller = new LinuxHidrawController("fixture", recorder);
+        controller.setResponseCurve(new ResponseCurve(0.0f, 1.0f, 0.0f, 1.0f));
+
+        ReadableByteChannel device = new ReportChannel(reads);
+        while (controller.readReport(device)) {
+            // One report per read, as from /dev/hidraw
+        }
+
+        assertEquals(8, controller.getShortReports());
+        assertEquals(80, controller.getSkippedBytes());
+        assertEquals(2, controller.getReportsRead());
+        assertEquals(1, recorder.frames.size());
+        assertEquals(-1.0f, recorder.frames.get(0)[PS4Controller.AXIS_LEFT_STICK_X], 1e-4f);
+        assertEquals(List.of("+" + PS4Controller.BUTTON_CROSS), recorder.buttons);
+        assertEquals(2, recorder.gyro.size());
+    }
+
+    private static void readAll(LinuxHidrawController controller, ReadableByteChannel channel) throws Exception {
+        while (controller.readBatch(channel)) {
+            // Read to the end of the fixture
+        }
+    }
+
+    private static ByteBuffer stream(byte[]... parts) {
+        int size = 0;
+        for (byte[] part : parts) {
+            size += part.length;
+        }
+        ByteBuffer stream = ByteBuffer.allocate(size);
+        for (byte[] part : parts) {
+            stream.put(part);
+        }
+        stream.flip();
+        return stream;
+    }
+
+    /**
+     * Returns one whole report per read, as a hidraw device does
+     */
+    private static final class ReportChannel implements ReadableByteChannel {
+        private final Iterator<byte[]> reports;
+
+        ReportChannel(List<byte[]> reports) {
+            this.reports = reports.iterator();
+        }
+
+        @Override
+        public int read(ByteBuffer dst) {
+            if (!reports.hasNext()) {
+                return -1;
+            }
+            byte[] report = reports.next();
+            dst.put(report);
+            return report.length;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * One DS4 input report; the fields are the same for USB (report 0x01, 64
+     * bytes) and Bluetooth (report 0x11, 78 bytes), which has two more header bytes
+     */
+    private static final class Report {
+        private final ByteBuffer fields = ByteBuffer.allocate(24).order(ByteOrder.LITTLE_ENDIAN);
+
+        Report() {
+            sticks(128, 128, 128, 128);
+            buttons(HAT_NEUTRAL, 0, 0);
+        }
+
+        Report sticks(int leftX, int leftY, int rightX, int rightY) {
+            fields.put(0, (byte) leftX).put(1, (byte) leftY).put(2, (byte) rightX).put(3, (byte) rightY);
+            return this;
+        }
+
+        Report buttons(int buttons1, int buttons2, int buttons3) {
+            fields.put(4, (byte) buttons1).put(5, (byte) buttons2).put(6, (byte) buttons3);
+            return this;
+        }
+
+        Report triggers(int l2, int r2) {
+            fields.put(7, (byte) l2).put(8, (byte) r2);
+            return this;
+        }
+
+        Report ticks(int ticks) {
+            fields.putShort(9, (short) ticks);
+            return this;
+        }
+
+        Report motion(int[] gyro, int[] accel) {
+            for (int i = 0; i < 3; i++) {
+                fields.putShort(12 + 2 * i, (short) gyro[i]);
+                fields.putShort(18 + 2 * i, (short) accel[i]);
+            }
+            return this;
+        }
+
+        byte[] usb() {
+            return withHeader(64, (byte) 0x01);
+        }
+
+        byte[] bluetooth() {
+            return withHeader(78, (byte) 0x11, (byte) 0xC0, (byte) 0x00);
+        }
+
+        private byte[] withHeader(int size, byte... header) {
+            byte[] report = new byte[size];
+            System.arraycopy(header, 0, report, 0, header.length);
+            System.arraycopy(fields.array(), 0, report, header.length, fields.capacity());
+            return report;
+        }
+    }
+}
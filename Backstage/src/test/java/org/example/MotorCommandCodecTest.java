@@ -0,0 +1,75 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MotorCommandCodecTest {
+
+    @Test
+    void roundTripKeepsEveryField() {
+        ByteBuffer buffer = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        MotorCommandCodec.encode(buffer, MotorCommandCodec.TYPE_MOTOR, 123456, 1_700_000_000_123_456L, 0.5f, -0.25f);
+        assertEquals(MotorCommandCodec.FRAME_SIZE, buffer.position());
+        buffer.flip();
+
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        assertTrue(MotorCommandCodec.decode(buffer, frame));
+        assertEquals(MotorCommandCodec.TYPE_MOTOR, frame.type);
+        assertEquals(123456, frame.sequence);
+        assertEquals(1_700_000_000_123_456L, frame.timestampMicros);
+        assertEquals(0.5f, frame.left, 1.0f / 32767);
+        assertEquals(-0.25f, frame.right, 1.0f / 32767);
+        assertFalse(buffer.hasRemaining());
+    }
+
+    @Test
+    void wireLayoutIsFixed() {
+        ByteBuffer buffer = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        MotorCommandCodec.encode(buffer, MotorCommandCodec.TYPE_STOP, 0x01020304, 0x05060708090A0B0CL, 1.0f, -1.0f);
+        byte[] expected = {
+            0x00, 0x11,                                     // length 17
+            0x02,                                           // TYPE_STOP
+            0x01, 0x02, 0x03, 0x04,                         // sequence
+            0x05, 0x06, 0x07, 0x08, 0x09, 0x0A, 0x0B, 0x0C, // timestamp
+            0x7F, (byte) 0xFF,                              // left 32767
+            (byte) 0x80, 0x01                               // right -32767
+        };
+        assertArrayEquals(expected, buffer.array());
+    }
+
+    @Test
+    void velocitiesAreQuantizedAndClamped() {
+        assertEquals(32767, MotorCommandCodec.quantize(1.0f));
+        assertEquals(-32767, MotorCommandCodec.quantize(-1.0f));
+        assertEquals(32767, MotorCommandCodec.quantize(2.5f));
+        assertEquals(-32767, MotorCommandCodec.quantize(-7.0f));
+        assertEquals(0, MotorCommandCodec.quantize(0.0f));
+        assertEquals(1.0f, MotorCommandCodec.dequantize((short) 32767));
+        assertEquals(-1.0f, MotorCommandCodec.dequantize((short) -32767));
+        assertEquals(-1.0f, MotorCommandCodec.dequantize(Short.MIN_VALUE));
+    }
+
+    @Test
+    void partialFrameLeavesPositionUnchanged() {
+        ByteBuffer full = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        MotorCommandCodec.encode(full, MotorCommandCodec.TYPE_MOTOR, 1, 2L, 0.1f, 0.2f);
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+
+        for (int available = 0; available < MotorCommandCodec.FRAME_SIZE; available++) {
+            ByteBuffer partial = ByteBuffer.wrap(full.array(), 0, available);
+            assertFalse(MotorCommandCodec.decode(partial, frame), available + " bytes");
+            assertEquals(0, partial.position());
+        }
+    }
+
+    @Test
+    void badLengthPrefixIsRejected() {
+        ByteBuffer buffer = ByteBuffer.wrap(new byte[] {0x00, 0x05, 0x01, 0, 0, 0, 0, 0});
+        IllegalArgumentException e = assertThrows(IllegalArgumentException.class,
+            () -> MotorCommandCodec.decode(buffer, new MotorCommandCodec.Frame()));
+        assertTrue(e.getMessage().contains("5"));
+    }
+}
@@ -0,0 +1,166 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Assumptions;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.NetworkInterface;
+import java.net.ServerSocket;
+import java.net.SocketException;
+import java.net.StandardProtocolFamily;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.DatagramChannel;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Fleet-wide commands through RobotNetworkServer.setMulticastGroup to robots on
+ * this host. Skipped when no interface here delivers multicast to itself.
+ */
+class MulticastMotorTransportTest {
+
+    private static final long TIMEOUT_MS = 3000;
+    private static final String GROUP_ADDRESS = "239.255.42.99";
+
+    private RobotNetworkServer server;
+    private RaspberryPiMotorClient member;
+    private RaspberryPiMotorClient tcpOnly;
+    private DatagramChannel injector;
+
+    @AfterEach
+    void tearDown() throws IOException {
+        if (member != null) member.disconnect();
+        if (tcpOnly != null) tcpOnly.disconnect();
+        if (server != null) server.stop();
+        if (injector != null) injector.close();
+    }
+
+    @Test
+    void fleetCommandsArriveByMulticastAndStopsAlsoByTcp() throws Exception {
+        InetSocketAddress group = new InetSocketAddress(InetAddress.getByName(GROUP_ADDRESS), freeUdpPort());
+        NetworkInterface networkInterface = loopedBackInterface(group);
+        Assumptions.assumeTrue(networkInterface != null, "no interface delivers multicast on this host");
+
+        int port = freePort();
+        server = new RobotNetworkServer(port);
+        server.setMulticastGroup(group, networkInterface);
+        server.start();
+
+        List<Float> memberSpeeds = new CopyOnWriteArrayList<>();
+        member = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> {
+            if (motorId == RaspberryPiMotorClient.MotorController.LEFT_MOTOR) memberSpeeds.add(speed);
+        });
+        member.setMulticastGroup(group, networkInterface);
+        member.connect();
+        // A robot that did not join the group sees only what also goes over TCP
+        List<Float> tcpSpeeds = new CopyOnWriteArrayList<>();
+        tcpOnly = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> {
+            if (motorId == RaspberryPiMotorClient.MotorController.LEFT_MOTOR) tcpSpeeds.add(speed);
+        });
+        tcpOnly.connect();
+        waitFor(() -> server.getConnectedClientCount() == 2, "both robots connected");
+
+        // Channel sequence 0
+        server.broadcastMotorCommand(0.25f, 0.25f);
+        waitFor(() -> lastIs(memberSpeeds, 0.25f), "the multicast command");
+        assertEquals(1, member.getMulticastReceivedCount());
+        assertEquals(0, member.getMulticastGapCount());
+
+        // Channel sequence 3: datagrams 1 and 2 never arrived
+        injector = DatagramChannel.open(StandardProtocolFamily.INET);
+        injector.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+        injector.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+        ByteBuffer datagram = ByteBuffer.allocate(MulticastMotorTransport.DATAGRAM_SIZE);
+        datagram.putInt(3);
+        MotorCommandCodec.encode(datagram, MotorCommandCodec.TYPE_MOTOR, 1000,
+            MotorCommandCodec.currentTimeMicros(), 0.5f, 0.5f);
+        datagram.flip();
+        injector.send(datagram, group);
+        waitFor(() -> lastIs(memberSpeeds, 0.5f), "the command after the gap");
+        assertEquals(2, member.getMulticastGapCount());
+
+        server.broadcastStop(2000);
+        waitFor(() -> lastIs(tcpSpeeds, 0.0f), "the stop over TCP");
+        waitFor(() -> lastIs(memberSpeeds, 0.0f), "the stop at the group member");
+        // Motor commands went only to the group
+        assertEquals(List.of(0.0f), tcpSpeeds);
+    }
+
+    /**
+     * An up, multicast-capable interface (loopback first) on which a datagram
+     * sent to the group comes back to this host, or null
+     */
+    private static NetworkInterface loopedBackInterface(InetSocketAddress group) throws SocketException {
+        List<NetworkInterface> candidates = Collections.list(NetworkInterface.getNetworkInterfaces());
+        candidates.sort((a, b) -> Boolean.compare(!isLoopback(a), !isLoopback(b)));
+        for (NetworkInterface candidate : candidates) {
+            if (candidate.isUp() && (candidate.supportsMulticast() || candidate.isLoopback())
+                    && loopsBack(candidate, group)) {
+                return candidate;
+            }
+        }
+        return null;
+    }
+
+    private static boolean loopsBack(NetworkInterface networkInterface, InetSocketAddress group) {
+        try (DatagramChannel channel = DatagramChannel.open(StandardProtocolFamily.INET);
+             Selector selector = Selector.open()) {
+            channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+            channel.bind(new InetSocketAddress(group.getPort()));
+            channel.join(group.getAddress(), networkInterface);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_IF, networkInterface);
+            channel.setOption(StandardSocketOptions.IP_MULTICAST_LOOP, true);
+            channel.configureBlocking(false);
+            channel.register(selector, SelectionKey.OP_READ);
+            channel.send(ByteBuffer.wrap(new byte[] {1}), group);
+            return selector.select(500) > 0;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    private static boolean isLoopback(NetworkInterface networkInterface) {
+        try {
+            return networkInterface.isLoopback();
+        } catch (SocketException e) {
+            return false;
+        }
+    }
+
+    private static boolean lastIs(List<Float> speeds, float expected) {
+        return !speeds.isEmpty() && Math.abs(speeds.get(speeds.size() - 1) - expected) < 0.01f;
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+
+    private static int freeUdpPort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
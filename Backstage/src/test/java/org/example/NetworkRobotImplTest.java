@@ -0,0 +1,109 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NetworkRobotImplTest {
+
+    private static final long TIMEOUT_MS = 3000;
+    private static final long SEND_INTERVAL_MS = 5;
+    // Longest tolerated pause in applied commands when one port goes away
+    private static final long MAX_GAP_MS = 250;
+
+    private NetworkRobotImpl robot;
+    private RaspberryPiMotorClient client;
+    private Thread sender;
+    private volatile boolean sending = true;
+
+    @AfterEach
+    void tearDown() throws InterruptedException {
+        sending = false;
+        if (sender != null) sender.join(TIMEOUT_MS);
+        if (client != null) client.disconnect();
+        if (robot != null) robot.shutdown();
+    }
+
+    @Test
+    void robotKeepsApplyingCommandsWhenOnePortStops() throws Exception {
+        int primaryPort = freePort();
+        int standbyPort = freePort();
+        robot = new NetworkRobotImpl(primaryPort);
+        robot.addStandbyServer(standbyPort);
+
+        client = new RaspberryPiMotorClient("localhost", primaryPort, (motorId, speed) -> { });
+        client.setAutoReconnect(false);
+        client.addStandbyServer("localhost", standbyPort);
+        client.connect();
+        waitFor(() -> client.getConnectedServerCount() == 2, "client connected to both ports");
+
+        // Alternate speeds so the suppressor sends every command
+        sender = new Thread(() -> {
+            int i = 0;
+            while (sending) {
+                float speed = (i++ % 2 == 0) ? 0.5f : -0.5f;
+                robot.move(speed, speed);
+                sleep(SEND_INTERVAL_MS);
+            }
+        }, "TestSender");
+        sender.start();
+        waitFor(() -> client.getAppliedCommandCount() > 20, "commands applied through both ports");
+
+        robot.getNetworkServer().stop();
+        long gap = longestApplyGapMillis(500);
+
+        waitFor(() -> client.getConnectedServerCount() == 1, "client saw the primary go away");
+        assertTrue(gap < MAX_GAP_MS, "applied commands paused for " + gap + " ms");
+    }
+
+    /**
+     * Poll the applied-command count for this long and return the longest time it stood still
+     */
+    private long longestApplyGapMillis(long durationMs) {
+        long end = System.nanoTime() + durationMs * 1_000_000L;
+        long lastCount = client.getAppliedCommandCount();
+        long lastChange = System.nanoTime();
+        long longest = 0;
+        while (System.nanoTime() < end) {
+            long count = client.getAppliedCommandCount();
+            long now = System.nanoTime();
+            if (count != lastCount) {
+                lastCount = count;
+                lastChange = now;
+            }
+            longest = Math.max(longest, (now - lastChange) / 1_000_000L);
+            sleep(1);
+        }
+        return longest;
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
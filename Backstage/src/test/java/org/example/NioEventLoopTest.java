@@ -0,0 +1,76 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class NioEventLoopTest {
+    private NioEventLoop loop;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        loop = new NioEventLoop("NioEventLoopTest");
+        loop.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        loop.stop();
+    }
+
+    @Test
+    void timersRunInDueOrderThenInScheduleOrder() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        CountDownLatch done = new CountDownLatch(4);
+        NioEventLoop.ReusableTimer late = recording("late", ran, done);
+        NioEventLoop.ReusableTimer first = recording("first", ran, done);
+        NioEventLoop.ReusableTimer second = recording("second", ran, done);
+        NioEventLoop.ReusableTimer soon = recording("soon", ran, done);
+
+        loop.execute(() -> {
+            long ms = TimeUnit.MILLISECONDS.toNanos(1);
+            loop.schedule(late, 60 * ms);
+            loop.schedule(first, 30 * ms);
+            loop.schedule(second, 30 * ms);
+            loop.schedule(soon, 5 * ms);
+        });
+
+        assertTrue(done.await(2, TimeUnit.SECONDS), "timers did not all run");
+        assertEquals(List.of("soon", "first", "second", "late"), ran);
+    }
+
+    @Test
+    void timerCanRescheduleItselfWhileRunning() throws Exception {
+        CountDownLatch done = new CountDownLatch(3);
+        NioEventLoop.ReusableTimer repeating = new NioEventLoop.ReusableTimer() {
+            @Override
+            public void run() {
+                done.countDown();
+                if (done.getCount() > 0) {
+                    loop.schedule(this, TimeUnit.MILLISECONDS.toNanos(2));
+                }
+            }
+        };
+
+        loop.execute(() -> loop.schedule(repeating, TimeUnit.MILLISECONDS.toNanos(2)));
+
+        assertTrue(done.await(2, TimeUnit.SECONDS), "timer did not run three times");
+    }
+
+    private static NioEventLoop.ReusableTimer recording(String name, List<String> ran, CountDownLatch done) {
+        return new NioEventLoop.ReusableTimer() {
+            @Override
+            public void run() {
+                ran.add(name);
+                done.countDown();
+            }
+        };
+    }
+}
@@ -0,0 +1,79 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RaspberryPiMotorClientTest {
+
+    private static final long TIMEOUT_MS = 3000;
+    // Server downtime; short enough that the backoff stays well under its ceiling
+    private static final long OUTAGE_MS = 200;
+
+    private RobotNetworkServer server;
+    private RaspberryPiMotorClient client;
+    private volatile float leftSpeed;
+
+    @AfterEach
+    void tearDown() {
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void reconnectsAndResumesAfterServerRestart() throws Exception {
+        int port = freePort();
+        server = new RobotNetworkServer(port);
+        server.start();
+
+        client = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> {
+            if (motorId == RaspberryPiMotorClient.MotorController.LEFT_MOTOR) leftSpeed = speed;
+        });
+        client.setAutoReconnect(true);
+        client.connect();
+        waitFor(() -> client.getConnectedServerCount() == 1, "first connection", TIMEOUT_MS);
+        server.broadcastMotorCommand(0.25f, 0.25f);
+        waitFor(() -> Math.abs(leftSpeed - 0.25f) < 0.01f, "command before the restart", TIMEOUT_MS);
+
+        server.stop();
+        waitFor(() -> client.getConnectedServerCount() == 0, "client to notice the outage", TIMEOUT_MS);
+        Thread.sleep(OUTAGE_MS);
+
+        // The restarted server has a command waiting before the robot is back
+        server = new RobotNetworkServer(port);
+        server.start();
+        long restartNanos = System.nanoTime();
+        server.broadcastMotorCommand(0.75f, 0.75f);
+
+        long bound = RaspberryPiMotorClient.RECONNECT_MAX_MS + 500;
+        waitFor(() -> Math.abs(leftSpeed - 0.75f) < 0.01f, "resumed command after the restart", bound);
+        long recoveredMs = (System.nanoTime() - restartNanos) / 1_000_000L;
+
+        assertTrue(client.isRunning());
+        assertEquals(1, client.getReconnectCount());
+        assertTrue(recoveredMs < bound, "recovered " + recoveredMs + " ms after the restart");
+        assertTrue(client.getLastRecoveryMillis() >= OUTAGE_MS, "outage measured from the loss");
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what, long timeoutMs)
+            throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
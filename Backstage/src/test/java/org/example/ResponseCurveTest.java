@@ -0,0 +1,28 @@
+package org.example;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ResponseCurveTest {
+
+    private final ResponseCurve curve = new ResponseCurve(0.2f, 1.0f, 1.0f, 0.5f);
+
+    @Test
+    void sticksGoThroughTheCurve() {
+        assertEquals(0.0f, curve.shapeAxis(PS4Controller.AXIS_LEFT_STICK_Y, ResponseCurve.RAW_MAX / 10));
+        assertEquals(0.5f, curve.shapeAxis(PS4Controller.AXIS_RIGHT_STICK_Y, ResponseCurve.RAW_MAX), 1e-6f);
+        assertEquals(-0.5f, curve.shapeAxis(PS4Controller.AXIS_LEFT_STICK_X, -1.0f), 1e-6f);
+    }
+
+    @Test
+    void triggersKeepLinearTravel() {
+        for (int axis : new int[] {PS4Controller.AXIS_L2_TRIGGER, PS4Controller.AXIS_R2_TRIGGER}) {
+            assertEquals(-1.0f, curve.shapeAxis(axis, ResponseCurve.RAW_MIN));
+            assertEquals(0.1f, curve.shapeAxis(axis, ResponseCurve.RAW_MAX / 10), 1e-4f);
+            assertEquals(1.0f, curve.shapeAxis(axis, ResponseCurve.RAW_MAX));
+            assertEquals(0.3f, curve.shapeAxis(axis, 0.3f));
+            assertEquals(1.0f, curve.shapeAxis(axis, 1.5f));
+        }
+    }
+}
@@ -0,0 +1,135 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RobotNetworkServerTest {
+
+    private static final int TIMEOUT_MS = 2000;
+
+    private RobotNetworkServer server;
+
+    @AfterEach
+    void tearDown() {
+        if (server != null) server.stop();
+    }
+
+    @Test
+    void malformedFrameDisconnectsOnlyItsSender() throws Exception {
+        int port = freePort();
+        server = new RobotNetworkServer(port);
+        server.start();
+        long malformedBefore = RobotNetworkServer.MALFORMED_FRAMES.getValue();
+
+        try (Socket bad = connect(port)) {
+            BufferedReader badIn = reader(bad);
+            assertTrue(badIn.readLine().contains("connected"));
+
+            // Binary marker followed by a length no frame has
+            OutputStream out = bad.getOutputStream();
+            out.write(new byte[] {0, 5, 1, 2, 3, 4, 5, 6});
+            out.flush();
+            assertEquals(-1, drain(badIn), "the sender should be disconnected");
+        }
+
+        // The event loop survived: a new robot is still welcomed
+        try (Socket good = connect(port)) {
+            assertTrue(reader(good).readLine().contains("connected"));
+        }
+        assertEquals(malformedBefore + 1, RobotNetworkServer.MALFORMED_FRAMES.getValue());
+    }
+
+    @Test
+    void commandsForOneRobotDoNotWaitForTheServerLock() throws Exception {
+        int port = freePort();
+        server = new RobotNetworkServer(port);
+        server.setWireFormat(RobotNetworkServer.WireFormat.JSON);
+        server.start();
+        RobotNetworkServer.Target target = RobotNetworkServer.Target.robot("r1");
+
+        try (Socket robot = connect(port)) {
+            BufferedReader in = reader(robot);
+            assertTrue(in.readLine().contains("connected"));
+            robot.getOutputStream().write("{\"type\":\"register\",\"robot\":\"r1\"}\n".getBytes(StandardCharsets.UTF_8));
+            long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+            while (server.getClients(target).isEmpty()) {
+                assertTrue(System.currentTimeMillis() < deadline, "robot never registered");
+                Thread.sleep(5);
+            }
+
+            // Another sender holds the server's lock, e.g. a broadcast in progress
+            CountDownLatch held = new CountDownLatch(1);
+            CountDownLatch release = new CountDownLatch(1);
+            Thread holder = new Thread(() -> {
+                synchronized (server) {
+                    held.countDown();
+                    try {
+                        release.await();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+            }, "LockHolder");
+            holder.start();
+            held.await();
+            try {
+                assertTimeoutPreemptively(Duration.ofMillis(TIMEOUT_MS),
+                    () -> server.sendMotorCommand(target, 7, 0.5f, 0.5f, System.nanoTime()));
+                String line;
+                do {
+                    line = in.readLine();
+                } while (!line.contains("\"motor\""));
+                assertTrue(line.contains("\"seq\":7"), line);
+            } finally {
+                release.countDown();
+                holder.join();
+            }
+        }
+    }
+
+    private static Socket connect(int port) throws Exception {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (true) {
+            try {
+                Socket socket = new Socket(InetAddress.getLoopbackAddress(), port);
+                socket.setSoTimeout(TIMEOUT_MS);
+                return socket;
+            } catch (IOException e) {
+                if (System.currentTimeMillis() > deadline) throw e;
+                Thread.sleep(10);
+            }
+        }
+    }
+
+    private static BufferedReader reader(Socket socket) throws IOException {
+        return new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+    }
+
+    /** Read until end of stream; a read timeout fails the test */
+    private static int drain(BufferedReader in) throws IOException {
+        int c;
+        do {
+            c = in.read();
+        } while (c != -1);
+        return c;
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
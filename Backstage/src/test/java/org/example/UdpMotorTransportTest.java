@@ -0,0 +1,225 @@
+package org.example;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.net.SocketAddress;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.BooleanSupplier;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class UdpMotorTransportTest {
+
+    private static final int FRAMES = 20;
+    private static final long DELIVERY_TIMEOUT_MS = 2000;
+
+    // Motor command stream for the latency runs: one command a millisecond
+    private static final int COMMANDS = 1000;
+    private static final long COMMAND_INTERVAL_NANOS = 1_000_000L;
+    private static final double LOSS_RATE = 0.2;
+    // Lost commands are replaced by the next one, never waited for, so the p99
+    // of the commands that arrive may only move by scheduling noise
+    private static final long FLAT_MARGIN_NANOS = 5_000_000L;
+
+    private UdpMotorTransport transport;
+    private DatagramSocket robot;
+    private volatile boolean robotRunning = true;
+    private RobotNetworkServer server;
+    private RaspberryPiMotorClient client;
+
+    @AfterEach
+    void tearDown() {
+        robotRunning = false;
+        if (client != null) client.disconnect();
+        if (server != null) server.stop();
+        if (robot != null) robot.close();
+        if (transport != null) transport.stop();
+    }
+
+    @Test
+    void reliableFramesArriveDespiteLoss() throws Exception {
+        int port = freePort();
+        transport = new UdpMotorTransport(port);
+        transport.start();
+        transport.setSimulatedLossRate(0.5);
+
+        // A robot that acknowledges every stop frame it receives
+        robot = new DatagramSocket(0, InetAddress.getLoopbackAddress());
+        robot.setSoTimeout(50);
+        InetSocketAddress server = new InetSocketAddress(InetAddress.getLoopbackAddress(), port);
+        Set<Integer> received = ConcurrentHashMap.newKeySet();
+        Thread robotThread = new Thread(() -> runRobot(server, received), "TestRobot");
+        robotThread.setDaemon(true);
+        robotThread.start();
+
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (transport.getPeerCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(5);
+        }
+        assertEquals(1, transport.getPeerCount());
+
+        // A newer reliable frame replaces a pending one, so send each after the last arrived
+        ByteBuffer frame = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        for (int sequence = 1; sequence <= FRAMES; sequence++) {
+            frame.clear();
+            MotorCommandCodec.encode(frame, MotorCommandCodec.TYPE_STOP, sequence,
+                MotorCommandCodec.currentTimeMicros(), 0.0f, 0.0f);
+            frame.flip();
+            transport.sendReliable(frame, sequence);
+            assertEquals(0, frame.position());
+
+            deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+            while (!received.contains(sequence) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(1);
+            }
+            assertTrue(received.contains(sequence), "frame " + sequence + " never arrived");
+        }
+        assertEquals(FRAMES, received.size());
+    }
+
+    @Test
+    void motorCommandLatencyStaysFlatUnderLoss() throws Exception {
+        int port = freePort();
+        server = new RobotNetworkServer(port);
+        server.setMotorTransport(RobotNetworkServer.MotorTransport.UDP);
+        server.start();
+        client = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> { });
+        client.setUdpEnabled(true);
+        client.connect();
+        UdpMotorTransport udp = server.getUdpTransport();
+        waitFor(() -> udp.getPeerCount() == 1, "the robot's hello");
+
+        long cleanP99 = streamP99(udp, 0.0);
+        long sentBefore = RobotNetworkServer.COMMANDS_SENT.getValue();
+        long lossyP99 = streamP99(udp, LOSS_RATE);
+        long sent = RobotNetworkServer.COMMANDS_SENT.getValue() - sentBefore;
+
+        assertTrue(sent < COMMANDS * (1.0 - LOSS_RATE / 2), "only " + (COMMANDS - sent) + " datagrams dropped");
+        assertTrue(lossyP99 <= 2 * cleanP99 + FLAT_MARGIN_NANOS,
+            "p99 " + lossyP99 / 1000 + " us under loss against " + cleanP99 / 1000 + " us without");
+    }
+
+    @Test
+    void staleDatagramsAreDiscardedNotApplied() throws Exception {
+        // The robot's TCP session goes to a real server; its motor datagrams come
+        // from this socket on the same port number, in an order a network could produce
+        int port = freePort();
+        robot = new DatagramSocket(port, InetAddress.getLoopbackAddress());
+        robot.setSoTimeout((int) DELIVERY_TIMEOUT_MS);
+        server = new RobotNetworkServer(port);
+        server.start();
+        List<Float> applied = new CopyOnWriteArrayList<>();
+        client = new RaspberryPiMotorClient("localhost", port, (motorId, speed) -> {
+            if (motorId == RaspberryPiMotorClient.MotorController.LEFT_MOTOR) applied.add(speed);
+        });
+        client.setUdpEnabled(true);
+        client.connect();
+
+        byte[] in = new byte[MotorCommandCodec.FRAME_SIZE];
+        DatagramPacket hello = new DatagramPacket(in, in.length);
+        robot.receive(hello);
+        SocketAddress robotAddress = hello.getSocketAddress();
+
+        ByteBuffer out = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        int[] sequences = {10, 12, 11, 12, 3, 13};
+        float[] speeds = {0.1f, 0.3f, 0.2f, 0.3f, 0.05f, 0.4f};
+        for (int i = 0; i < sequences.length; i++) {
+            out.clear();
+            MotorCommandCodec.encode(out, MotorCommandCodec.TYPE_MOTOR, sequences[i],
+                MotorCommandCodec.currentTimeMicros(), speeds[i], speeds[i]);
+            robot.send(new DatagramPacket(out.array(), out.position(), robotAddress));
+            // Long enough for the actuator to apply anything accepted
+            Thread.sleep(30);
+        }
+        waitFor(() -> !applied.isEmpty() && Math.abs(applied.get(applied.size() - 1) - 0.4f) < 0.01f,
+            "the newest command");
+
+        // Late 11, duplicate 12 and stale 3
+        assertEquals(3, client.getDiscardedCommandCount());
+        for (float speed : applied) {
+            assertTrue(Math.abs(speed - 0.2f) > 0.01f && Math.abs(speed - 0.05f) > 0.01f,
+                "stale command applied: " + applied);
+        }
+        assertEquals(3, applied.size(), "applied " + applied);
+    }
+
+    /**
+     * Stream COMMANDS motor commands at the given loss rate and return the p99
+     * of the input-to-motor latency of those the robot applied
+     */
+    private long streamP99(UdpMotorTransport udp, double lossRate) throws InterruptedException {
+        udp.setSimulatedLossRate(lossRate);
+        PipelineLatency.END_TO_END.reset();
+        long next = System.nanoTime();
+        for (int i = 0; i < COMMANDS; i++) {
+            float speed = (i & 1) == 0 ? 0.5f : -0.5f;
+            server.broadcastMotorCommand(speed, speed, System.nanoTime());
+            next += COMMAND_INTERVAL_NANOS;
+            LockSupport.parkNanos(next - System.nanoTime());
+        }
+        Thread.sleep(100);
+        udp.setSimulatedLossRate(0.0);
+        assertTrue(PipelineLatency.END_TO_END.getCount() > 0, "no commands applied");
+        return PipelineLatency.END_TO_END.getValueAtQuantile(0.99);
+    }
+
+    private static void waitFor(BooleanSupplier condition, String what) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + DELIVERY_TIMEOUT_MS;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                fail("Timed out waiting for " + what);
+            }
+            Thread.sleep(5);
+        }
+    }
+
+    private void runRobot(InetSocketAddress server, Set<Integer> received) {
+        ByteBuffer out = ByteBuffer.allocate(MotorCommandCodec.FRAME_SIZE);
+        byte[] in = new byte[MotorCommandCodec.FRAME_SIZE];
+        DatagramPacket packet = new DatagramPacket(in, in.length);
+        MotorCommandCodec.Frame frame = new MotorCommandCodec.Frame();
+        try {
+            send(out, MotorCommandCodec.TYPE_HELLO, 0, server);
+            while (robotRunning) {
+                try {
+                    packet.setLength(in.length);
+                    robot.receive(packet);
+                } catch (SocketTimeoutException e) {
+                    send(out, MotorCommandCodec.TYPE_HELLO, 0, server);
+                    continue;
+                }
+                if (MotorCommandCodec.decode(ByteBuffer.wrap(in, 0, packet.getLength()), frame)
+                        && frame.type == MotorCommandCodec.TYPE_STOP) {
+                    received.add(frame.sequence);
+                    send(out, MotorCommandCodec.TYPE_ACK, frame.sequence, server);
+                }
+            }
+        } catch (IOException e) {
+            // Socket closed by tearDown
+        }
+    }
+
+    private void send(ByteBuffer out, byte type, int sequence, InetSocketAddress server) throws IOException {
+        out.clear();
+        MotorCommandCodec.encode(out, type, sequence, MotorCommandCodec.currentTimeMicros(), 0.0f, 0.0f);
+        robot.send(new DatagramPacket(out.array(), out.position(), server));
+    }
+
+    private static int freePort() throws IOException {
+        try (DatagramSocket socket = new DatagramSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}